@@ -0,0 +1,84 @@
+package com.project.shopapp.component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressable storage for image bytes. Blobs are named {@code <sha256>.<ext>} and
+ * every blob is a contiguous byte range of a local file, so callers can serve it with
+ * sendfile / FileChannel.transferTo whatever the backend. The backend is chosen with
+ * {@code product-image.store} ({@code filesystem} or {@code pack}).
+ */
+public interface BlobStore {
+    Pattern BLOB_NAME = Pattern.compile("[0-9a-f]{64}\\.[a-z0-9]{1,5}");
+
+    record Blob(String name, long size, String hash, boolean deduplicated) {
+    }
+
+    /**
+     * Where the bytes of a blob live: {@code size} bytes of {@code file} starting at {@code offset}.
+     */
+    record BlobLocation(Path file, long offset, long size, long lastModified) {
+    }
+
+    /**
+     * Streams the content into the store while hashing it. Content that is already stored
+     * is not written again; its last-modified time is refreshed instead.
+     */
+    Blob store(InputStream inputStream, String extension) throws IOException;
+
+    /**
+     * Location of a blob, or null when it does not exist.
+     */
+    BlobLocation locate(String name) throws IOException;
+
+    /**
+     * Visits the names of all stored blobs.
+     */
+    void forEachBlob(Consumer<String> consumer) throws IOException;
+
+    /**
+     * Deletes the blob unless it was written or reused after the cutoff.
+     * Returns the freed bytes, or -1 when the blob was kept.
+     */
+    long deleteIfNotModifiedSince(String name, Instant cutoff) throws IOException;
+
+    /**
+     * Housekeeping after a GC run: temporary files, empty directories, pack compaction.
+     */
+    void maintain(Instant cutoff) throws IOException;
+
+    static boolean isBlobName(String name) {
+        return name != null && BLOB_NAME.matcher(name).matches();
+    }
+
+    static String hashOf(String blobName) {
+        return blobName.substring(0, blobName.indexOf('.'));
+    }
+
+    /**
+     * Reads the whole blob (or any file range given as a location) into memory;
+     * only meant for small blobs.
+     */
+    default byte[] read(BlobLocation location) throws IOException {
+        if (location.size() > Integer.MAX_VALUE) {
+            throw new IOException("Blob is too large to read into memory");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) location.size());
+        try (FileChannel channel = FileChannel.open(location.file(), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, location.offset() + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of blob file " + location.file());
+                }
+            }
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,141 @@
+package com.project.shopapp.component;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Stores each blob as its own file under a two-level directory tree taken from the hash
+ * prefix ({@code ab/cd/abcd...}), so no directory grows beyond a few thousand entries.
+ */
+@Component
+@ConditionalOnProperty(name = "product-image.store", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemBlobStore implements BlobStore {
+    private static final String TEMP_DIR = ".tmp";
+
+    private final Path root;
+    private final Path tempDir;
+
+    public FileSystemBlobStore(@Value("${product-image.upload-dir:uploads}") String uploadDir) {
+        this.root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.tempDir = root.resolve(TEMP_DIR);
+    }
+
+    // Ghi ra file tạm và tính hash cùng lúc, sau đó rename về đúng địa chỉ theo nội dung
+    @Override
+    public Blob store(InputStream inputStream, String extension) throws IOException {
+        Files.createDirectories(tempDir);
+        Path temp = Files.createTempFile(tempDir, "upload-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (InputStream input = new DigestInputStream(inputStream, digest)) {
+                size = Files.copy(input, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            String name = hash + "." + extension;
+            Path target = blobPath(name);
+            if (Files.exists(target)) {
+                // Cập nhật mtime để GC không xoá blob vừa được dùng lại trong thời gian ân hạn
+                Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+                return new Blob(name, size, hash, true);
+            }
+            // Rename nguyên tử: hai upload cùng nội dung chạy song song vẫn cho ra cùng một file
+            try {
+                Files.createDirectories(target.getParent());
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException e) {
+                // GC vừa xoá thư mục shard rỗng: tạo lại và thử thêm một lần
+                Files.createDirectories(target.getParent());
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return new Blob(name, size, hash, false);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public BlobLocation locate(String name) throws IOException {
+        if (!BlobStore.isBlobName(name)) return null;
+        Path path = blobPath(name);
+        if (!Files.isRegularFile(path)) return null;
+        return new BlobLocation(path, 0, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+    }
+
+    @Override
+    public void forEachBlob(Consumer<String> consumer) throws IOException {
+        if (!Files.isDirectory(root)) return;
+        try (Stream<Path> paths = Files.walk(root, 3)) {
+            paths.filter(path -> root.relativize(path).getNameCount() == 3)
+                    .map(path -> path.getFileName().toString())
+                    .filter(BlobStore::isBlobName)
+                    .forEach(consumer);
+        }
+    }
+
+    @Override
+    public long deleteIfNotModifiedSince(String name, Instant cutoff) throws IOException {
+        if (!BlobStore.isBlobName(name)) return -1;
+        Path blob = blobPath(name);
+        if (!Files.exists(blob) || Files.getLastModifiedTime(blob).toInstant().isAfter(cutoff)) {
+            return -1;
+        }
+        long size = Files.size(blob);
+        if (!Files.deleteIfExists(blob)) return -1;
+        deleteEmptyShards(blob.getParent());
+        return size;
+    }
+
+    // Xoá file tạm của các upload bị dừng giữa chừng
+    @Override
+    public void maintain(Instant cutoff) throws IOException {
+        if (!Files.isDirectory(tempDir)) return;
+        try (Stream<Path> paths = Files.list(tempDir)) {
+            for (Path path : paths.toList()) {
+                if (Files.getLastModifiedTime(path).toInstant().isBefore(cutoff)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    private void deleteEmptyShards(Path shard) {
+        for (Path dir = shard; dir != null && !dir.equals(root) && dir.startsWith(root); dir = dir.getParent()) {
+            try {
+                Files.delete(dir);
+            } catch (IOException e) {
+                // Thư mục còn file khác (DirectoryNotEmptyException) thì giữ lại
+                return;
+            }
+        }
+    }
+
+    private Path blobPath(String name) {
+        return root.resolve(name.substring(0, 2)).resolve(name.substring(2, 4)).resolve(name);
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
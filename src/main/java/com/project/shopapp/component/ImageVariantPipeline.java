@@ -0,0 +1,241 @@
+package com.project.shopapp.component;
+
+import com.project.shopapp.model.ProductImageVariant;
+import com.project.shopapp.repository.ProductImageVariantRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the resized variants of uploaded images on a small worker pool.
+ * The queue is bounded: when it is full the uploading thread renders the variants itself,
+ * which slows uploads down instead of letting the backlog grow without limit.
+ */
+@Component
+public class ImageVariantPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantPipeline.class);
+    // Bỏ qua ảnh quá lớn để tránh giải nén một file nhỏ thành ảnh vài GB trong bộ nhớ
+    private static final long MAX_SOURCE_PIXELS = 50_000_000L;
+
+    private final BlobStore blobStore;
+    private final ProductImageVariantRepository variantRepository;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final float jpegQuality;
+
+    private final Timer queueLatency;
+    private final Timer processingTime;
+    private final Counter callerRuns;
+    private final Counter failures;
+
+    public ImageVariantPipeline(
+            BlobStore blobStore,
+            ProductImageVariantRepository variantRepository,
+            MeterRegistry meterRegistry,
+            @Value("${image-variants.threads:2}") int threads,
+            @Value("${image-variants.queue-capacity:100}") int queueCapacity,
+            @Value("${image-variants.jpeg-quality:0.82}") float jpegQuality
+    ) {
+        this.blobStore = blobStore;
+        this.variantRepository = variantRepository;
+        this.jpegQuality = jpegQuality;
+        this.queueLatency = Timer.builder("image.variants.queue.latency")
+                .description("Time an image waits in the queue before processing starts")
+                .register(meterRegistry);
+        this.processingTime = Timer.builder("image.variants.processing")
+                .description("Time spent generating all variants of one image")
+                .register(meterRegistry);
+        this.callerRuns = Counter.builder("image.variants.caller.runs")
+                .description("Images processed on the uploading thread because the queue was full")
+                .register(meterRegistry);
+        this.failures = Counter.builder("image.variants.failures")
+                .register(meterRegistry);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-variants-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, pool) -> {
+                    // Hàng đợi đầy: chạy luôn trên thread gọi để tạo backpressure
+                    if (!pool.isShutdown()) {
+                        callerRuns.increment();
+                        runnable.run();
+                    }
+                });
+        Gauge.builder("image.variants.queue.size", executor, pool -> pool.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("image.variants.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues variant generation for a stored original. Images already queued are ignored.
+     */
+    public void submit(String sourceName) {
+        if (!inFlight.add(sourceName)) return;
+        long submittedAt = System.nanoTime();
+        executor.execute(() -> {
+            queueLatency.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+            try {
+                processingTime.record(() -> generate(sourceName));
+            } finally {
+                inFlight.remove(sourceName);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void generate(String sourceName) {
+        try {
+            List<ProductImageVariant> existing = variantRepository.findBySourceUrl(sourceName);
+            if (existing.size() >= ProductImageVariant.SIZES.size()) return;
+            BlobStore.BlobLocation location = blobStore.locate(sourceName);
+            BufferedImage source = location == null ? null : decode(blobStore.read(location));
+            if (source == null) {
+                // Định dạng JDK không đọc được (vd. WebP): luôn trả về ảnh gốc
+                logger.debug("No variants for {}: format not readable", sourceName);
+                return;
+            }
+            boolean hasAlpha = source.getColorModel().hasAlpha();
+            List<ProductImageVariant> variants = new ArrayList<>();
+            for (String size : ProductImageVariant.SIZES) {
+                if (existing.stream().anyMatch(variant -> variant.getSize().equals(size))) continue;
+                variants.add(render(sourceName, source, size, hasAlpha));
+            }
+            variantRepository.saveAll(variants);
+        } catch (DataIntegrityViolationException e) {
+            // Một node khác đã tạo variant cho ảnh này
+            logger.debug("Variants of {} already recorded", sourceName);
+        } catch (Exception e) {
+            failures.increment();
+            logger.warn("Cannot generate variants of {}: {}", sourceName, e.getMessage());
+        }
+    }
+
+    private ProductImageVariant render(String sourceName, BufferedImage source, String size, boolean hasAlpha)
+            throws IOException {
+        int maxDimension = ProductImageVariant.MAX_DIMENSIONS.get(size);
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (Math.max(width, height) <= maxDimension) {
+            // Ảnh gốc đã đủ nhỏ: variant chính là ảnh gốc, không phóng to
+            return ProductImageVariant.builder()
+                    .sourceUrl(sourceName)
+                    .size(size)
+                    .imageUrl(sourceName)
+                    .width(width)
+                    .height(height)
+                    .build();
+        }
+        double scale = (double) maxDimension / Math.max(width, height);
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        BufferedImage resized = resize(source, targetWidth, targetHeight, hasAlpha);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        String extension = hasAlpha ? "png" : "jpg";
+        if (hasAlpha) {
+            ImageIO.write(resized, "png", output);
+        } else {
+            writeJpeg(resized, output);
+        }
+        BlobStore.Blob blob = blobStore.store(new ByteArrayInputStream(output.toByteArray()), extension);
+        return ProductImageVariant.builder()
+                .sourceUrl(sourceName)
+                .size(size)
+                .imageUrl(blob.name())
+                .width(targetWidth)
+                .height(targetHeight)
+                .build();
+    }
+
+    private static BufferedImage decode(byte[] content) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+            if (input == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_SOURCE_PIXELS) {
+                    throw new IOException("Image is too large to resize");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Thu nhỏ từng bước một nửa để ảnh nhỏ không bị răng cưa khi chỉ dùng nội suy bilinear
+    private static BufferedImage resize(BufferedImage source, int targetWidth, int targetHeight, boolean hasAlpha) {
+        int type = hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, type);
+            Graphics2D graphics = next.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(current, 0, 0, width, height, null);
+            graphics.dispose();
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private void writeJpeg(BufferedImage image, ByteArrayOutputStream output) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(jpegQuality);
+        try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(imageOutput);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.project.shopapp.component;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The old flat upload directory: files named by the client, written before images went
+ * through a {@link BlobStore}. They stay readable until the migration job moves them.
+ */
+@Component
+public class LegacyImageDirectory {
+    // Ảnh mặc định khi không tìm thấy ảnh, nằm ở thư mục gốc và không bao giờ bị chuyển/xoá
+    public static final String PLACEHOLDER_IMAGE = "notfound.png";
+
+    private final Path root;
+
+    public LegacyImageDirectory(@Value("${product-image.upload-dir:uploads}") String uploadDir) {
+        this.root = Paths.get(uploadDir).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Path of a legacy file, or null for names that could point outside the directory.
+     */
+    public Path resolve(String name) {
+        if (name == null || name.isBlank() || name.startsWith(".")
+                || name.contains("/") || name.contains("\\") || name.contains("..")) {
+            return null;
+        }
+        Path path = root.resolve(name).normalize();
+        return path.startsWith(root) ? path : null;
+    }
+
+    /**
+     * Files still waiting to be migrated (the placeholder image is never migrated).
+     */
+    public List<Path> listFiles() throws IOException {
+        if (!Files.isDirectory(root)) return List.of();
+        try (Stream<Path> paths = Files.list(root)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> !path.getFileName().toString().startsWith("."))
+                    .filter(path -> !PLACEHOLDER_IMAGE.equals(path.getFileName().toString()))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
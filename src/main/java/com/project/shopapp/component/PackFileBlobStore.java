@@ -0,0 +1,455 @@
+package com.project.shopapp.component;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Appends blobs to large pack files instead of creating one file per image, which removes
+ * the per-file inode and directory overhead of millions of small images.
+ * <p>
+ * The location of every blob is kept in a memory-mapped index of fixed-size records
+ * (hash, extension, pack, offset, size, last-modified). Deleting a blob only marks its
+ * record; packs that become mostly dead are compacted by {@link #maintain(Instant)}.
+ * Blobs are read as a slice of the pack's read-only mapping, or sent with sendfile
+ * from the pack file at the blob's offset.
+ */
+@Component
+@ConditionalOnProperty(name = "product-image.store", havingValue = "pack")
+public class PackFileBlobStore implements BlobStore {
+    private static final Logger logger = LoggerFactory.getLogger(PackFileBlobStore.class);
+    private static final String INDEX_FILE = "index.dat";
+    private static final String TEMP_DIR = ".tmp";
+    private static final int INDEX_MAGIC = 0x424c4249; // "BLBI"
+    private static final int INDEX_VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 64;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Vị trí các trường trong một bản ghi index
+    private static final int HASH_OFFSET = 0;
+    private static final int EXTENSION_OFFSET = 32;
+    private static final int PACK_OFFSET = 40;
+    private static final int POSITION_OFFSET = 44;
+    private static final int SIZE_OFFSET = 52;
+    private static final int MODIFIED_OFFSET = 56;
+    private static final int EXTENSION_LENGTH = 8;
+
+    private final Path packDir;
+    private final Path tempDir;
+    private final long maxPackSize;
+    private final double compactThreshold;
+
+    // Bản ghi đã xoá lưu pack id dạng ~packId (số âm) để vẫn biết dung lượng chết của từng pack
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final Map<Integer, Long> deadBytes = new HashMap<>();
+    private final Map<Integer, MappedByteBuffer> packMappings = new ConcurrentHashMap<>();
+    private final List<Integer> retiredPacks = new ArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private int recordCount;
+    private int capacity;
+    private int currentPack;
+    private FileChannel currentPackChannel;
+    // Chỉ dùng khi khởi động
+    private Set<Integer> livePacks;
+
+    public PackFileBlobStore(
+            @Value("${product-image.pack-dir:uploads/packs}") String packDir,
+            @Value("${product-image.max-pack-size:1073741824}") long maxPackSize,
+            @Value("${product-image.pack-compact-threshold:0.5}") double compactThreshold
+    ) throws IOException {
+        this.packDir = Paths.get(packDir).toAbsolutePath().normalize();
+        this.tempDir = this.packDir.resolve(TEMP_DIR);
+        // Một pack phải map được trong một MappedByteBuffer (< 2GB)
+        this.maxPackSize = Math.min(maxPackSize, Integer.MAX_VALUE);
+        this.compactThreshold = compactThreshold;
+        Files.createDirectories(this.packDir);
+        openIndex();
+        openCurrentPack();
+    }
+
+    @Override
+    public Blob store(InputStream inputStream, String extension) throws IOException {
+        if (extension.length() > EXTENSION_LENGTH) {
+            throw new IOException("Extension is too long: " + extension);
+        }
+        Files.createDirectories(tempDir);
+        Path temp = Files.createTempFile(tempDir, "upload-", ".part");
+        try {
+            MessageDigest digest = FileSystemBlobStore.sha256();
+            long size;
+            try (InputStream input = new DigestInputStream(inputStream, digest)) {
+                size = Files.copy(input, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (size > maxPackSize) {
+                throw new IOException("Blob is larger than a pack file");
+            }
+            byte[] hash = digest.digest();
+            String name = HexFormat.of().formatHex(hash) + "." + extension;
+
+            lock.writeLock().lock();
+            try {
+                Integer existing = slots.get(name);
+                if (existing != null) {
+                    // Cập nhật thời điểm dùng lại để GC không xoá blob trong thời gian ân hạn
+                    index.putLong(recordPosition(existing) + MODIFIED_OFFSET, System.currentTimeMillis());
+                    return new Blob(name, size, HexFormat.of().formatHex(hash), true);
+                }
+                long offset = append(temp, size);
+                int slot = appendRecord(hash, extension, currentPack, offset, (int) size, System.currentTimeMillis());
+                slots.put(name, slot);
+                return new Blob(name, size, HexFormat.of().formatHex(hash), false);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public BlobLocation locate(String name) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(name);
+            if (slot == null) return null;
+            int position = recordPosition(slot);
+            return new BlobLocation(
+                    packPath(index.getInt(position + PACK_OFFSET)),
+                    index.getLong(position + POSITION_OFFSET),
+                    index.getInt(position + SIZE_OFFSET),
+                    index.getLong(position + MODIFIED_OFFSET));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads a blob as a copy of a slice of the pack's read-only mapping.
+     */
+    @Override
+    public byte[] read(BlobLocation location) throws IOException {
+        Integer pack = packIdOf(location.file());
+        if (pack == null) {
+            return BlobStore.super.read(location);
+        }
+        long end = location.offset() + location.size();
+        MappedByteBuffer mapping = packMappings.get(pack);
+        if (mapping == null || mapping.capacity() < end) {
+            // Pack đang ghi dài thêm: map lại theo kích thước hiện tại
+            try (FileChannel channel = FileChannel.open(location.file(), StandardOpenOption.READ)) {
+                mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            packMappings.put(pack, mapping);
+        }
+        byte[] content = new byte[(int) location.size()];
+        mapping.get((int) location.offset(), content);
+        return content;
+    }
+
+    @Override
+    public void forEachBlob(Consumer<String> consumer) {
+        List<String> names;
+        lock.readLock().lock();
+        try {
+            names = new ArrayList<>(slots.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+        names.forEach(consumer);
+    }
+
+    @Override
+    public long deleteIfNotModifiedSince(String name, Instant cutoff) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(name);
+            if (slot == null) return -1;
+            int position = recordPosition(slot);
+            if (Instant.ofEpochMilli(index.getLong(position + MODIFIED_OFFSET)).isAfter(cutoff)) {
+                return -1;
+            }
+            int pack = index.getInt(position + PACK_OFFSET);
+            int size = index.getInt(position + SIZE_OFFSET);
+            index.putInt(position + PACK_OFFSET, ~pack);
+            slots.remove(name);
+            deadBytes.merge(pack, (long) size, Long::sum);
+            return size;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes stale temporary files and packs retired by the previous run, then compacts
+     * sealed packs whose dead bytes reach the threshold. Retired packs are deleted one run
+     * later so requests that already resolved a location in them can still finish.
+     */
+    @Override
+    public void maintain(Instant cutoff) throws IOException {
+        if (Files.isDirectory(tempDir)) {
+            try (Stream<Path> paths = Files.list(tempDir)) {
+                for (Path path : paths.toList()) {
+                    if (Files.getLastModifiedTime(path).toInstant().isBefore(cutoff)) {
+                        Files.deleteIfExists(path);
+                    }
+                }
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            for (Integer pack : retiredPacks) {
+                packMappings.remove(pack);
+                Files.deleteIfExists(packPath(pack));
+            }
+            retiredPacks.clear();
+            for (Map.Entry<Integer, Long> dead : new ArrayList<>(deadBytes.entrySet())) {
+                int pack = dead.getKey();
+                if (pack == currentPack || !Files.exists(packPath(pack))) continue;
+                if (dead.getValue() >= Files.size(packPath(pack)) * compactThreshold) {
+                    compact(pack);
+                }
+            }
+            index.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            index.force();
+            indexChannel.close();
+            currentPackChannel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Chép các blob còn sống sang pack hiện tại rồi cho pack cũ nghỉ hưu
+    private void compact(int pack) throws IOException {
+        long moved = 0;
+        try (FileChannel source = FileChannel.open(packPath(pack), StandardOpenOption.READ)) {
+            for (int slot : slots.values()) {
+                int position = recordPosition(slot);
+                if (index.getInt(position + PACK_OFFSET) != pack) continue;
+                long offset = index.getLong(position + POSITION_OFFSET);
+                int size = index.getInt(position + SIZE_OFFSET);
+                rollIfFull(size);
+                long newOffset = currentPackChannel.size();
+                transfer(source, offset, size, newOffset);
+                index.putInt(position + PACK_OFFSET, currentPack);
+                index.putLong(position + POSITION_OFFSET, newOffset);
+                moved += size;
+            }
+        }
+        for (int slot = 0; slot < recordCount; slot++) {
+            int position = recordPosition(slot);
+            if (index.getInt(position + PACK_OFFSET) == ~pack) {
+                // Bản ghi đã xoá của pack này không còn ý nghĩa
+                index.putInt(position + PACK_OFFSET, Integer.MIN_VALUE);
+            }
+        }
+        deadBytes.remove(pack);
+        retiredPacks.add(pack);
+        logger.info("Compacted pack {}: moved {} live bytes", pack, moved);
+    }
+
+    private long append(Path temp, long size) throws IOException {
+        rollIfFull(size);
+        long offset = currentPackChannel.size();
+        try (FileChannel source = FileChannel.open(temp, StandardOpenOption.READ)) {
+            transfer(source, 0, size, offset);
+        }
+        return offset;
+    }
+
+    private void transfer(FileChannel source, long sourceOffset, long size, long targetOffset) throws IOException {
+        long copied = 0;
+        while (copied < size) {
+            long transferred = currentPackChannel.transferFrom(source.position(sourceOffset + copied),
+                    targetOffset + copied, size - copied);
+            if (transferred <= 0) {
+                throw new IOException("Cannot append blob to pack " + currentPack);
+            }
+            copied += transferred;
+        }
+    }
+
+    private void rollIfFull(long size) throws IOException {
+        if (currentPackChannel.size() + size <= maxPackSize) return;
+        currentPackChannel.force(false);
+        currentPackChannel.close();
+        currentPack++;
+        currentPackChannel = FileChannel.open(packPath(currentPack),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+    }
+
+    private int appendRecord(byte[] hash, String extension, int pack, long offset, int size, long modified)
+            throws IOException {
+        if (recordCount == capacity) {
+            mapIndex(capacity * 2);
+        }
+        int slot = recordCount;
+        int position = recordPosition(slot);
+        index.put(position + HASH_OFFSET, hash);
+        byte[] ext = new byte[EXTENSION_LENGTH];
+        byte[] extBytes = extension.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(extBytes, 0, ext, 0, extBytes.length);
+        index.put(position + EXTENSION_OFFSET, ext);
+        index.putInt(position + PACK_OFFSET, pack);
+        index.putLong(position + POSITION_OFFSET, offset);
+        index.putInt(position + SIZE_OFFSET, size);
+        index.putLong(position + MODIFIED_OFFSET, modified);
+        // Số bản ghi chỉ tăng sau khi bản ghi đã được ghi đầy đủ
+        recordCount++;
+        index.putInt(8, recordCount);
+        return slot;
+    }
+
+    private void openIndex() throws IOException {
+        Path indexPath = packDir.resolve(INDEX_FILE);
+        boolean exists = Files.exists(indexPath);
+        indexChannel = FileChannel.open(indexPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (!exists || indexChannel.size() < HEADER_SIZE) {
+            mapIndex(INITIAL_CAPACITY);
+            index.putInt(0, INDEX_MAGIC);
+            index.putInt(4, INDEX_VERSION);
+            index.putInt(8, 0);
+            livePacks = new HashSet<>();
+            return;
+        }
+        mapIndex((int) ((indexChannel.size() - HEADER_SIZE) / RECORD_SIZE));
+        if (index.getInt(0) != INDEX_MAGIC || index.getInt(4) != INDEX_VERSION) {
+            throw new IOException("Unsupported blob index " + indexPath);
+        }
+        recordCount = index.getInt(8);
+        livePacks = loadRecords();
+    }
+
+    // Dựng lại bảng tên -> bản ghi; bỏ qua bản ghi trỏ ra ngoài pack (ghi dở khi crash)
+    private Set<Integer> loadRecords() {
+        Map<Integer, Long> packSizes = new HashMap<>();
+        Set<Integer> livePacks = new HashSet<>();
+        byte[] hash = new byte[32];
+        byte[] ext = new byte[EXTENSION_LENGTH];
+        for (int slot = 0; slot < recordCount; slot++) {
+            int position = recordPosition(slot);
+            int pack = index.getInt(position + PACK_OFFSET);
+            long offset = index.getLong(position + POSITION_OFFSET);
+            int size = index.getInt(position + SIZE_OFFSET);
+            if (pack == Integer.MIN_VALUE) continue;
+            int livePack = pack >= 0 ? pack : ~pack;
+            long packSize = packSizes.computeIfAbsent(livePack, this::packSize);
+            if (offset + size > packSize) continue;
+            if (pack < 0) {
+                deadBytes.merge(livePack, (long) size, Long::sum);
+                continue;
+            }
+            livePacks.add(pack);
+            index.get(position + HASH_OFFSET, hash);
+            index.get(position + EXTENSION_OFFSET, ext);
+            int extLength = 0;
+            while (extLength < ext.length && ext[extLength] != 0) extLength++;
+            slots.put(HexFormat.of().formatHex(hash) + "." + new String(ext, 0, extLength, StandardCharsets.US_ASCII),
+                    slot);
+        }
+        logger.info("Loaded blob index with {} blobs in {}", slots.size(), packDir);
+        return livePacks;
+    }
+
+    private void openCurrentPack() throws IOException {
+        try (Stream<Path> paths = Files.list(packDir)) {
+            currentPack = paths.map(this::packIdOf)
+                    .filter(id -> id != null)
+                    .mapToInt(Integer::intValue)
+                    .max()
+                    .orElse(0);
+        }
+        currentPackChannel = FileChannel.open(packPath(currentPack),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        // Pack không còn blob sống (vd. đã compact nhưng chưa kịp xoá trước khi tắt): xoá ở lần maintain tới
+        try (Stream<Path> paths = Files.list(packDir)) {
+            paths.map(this::packIdOf)
+                    .filter(id -> id != null && id != currentPack && !livePacks.contains(id))
+                    .forEach(retiredPacks::add);
+        }
+        livePacks = null;
+    }
+
+    private void mapIndex(int newCapacity) throws IOException {
+        long length = HEADER_SIZE + (long) newCapacity * RECORD_SIZE;
+        if (indexChannel.size() < length) {
+            indexChannel.write(ByteBuffer.allocate(1), length - 1);
+        }
+        if (index != null) {
+            index.force();
+        }
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        capacity = newCapacity;
+    }
+
+    private long packSize(int pack) {
+        try {
+            Path path = packPath(pack);
+            return Files.exists(path) ? Files.size(path) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static int recordPosition(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private Path packPath(int pack) {
+        return packDir.resolve(String.format("pack-%06d.dat", pack));
+    }
+
+    private Integer packIdOf(Path path) {
+        if (!packDir.equals(path.getParent())) return null;
+        String name = path.getFileName().toString();
+        if (!name.startsWith("pack-") || !name.endsWith(".dat")) return null;
+        try {
+            return Integer.parseInt(name.substring(5, name.length() - 4));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.project.shopapp.component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.project.shopapp.event.ProductChangedEvent;
+import com.project.shopapp.response.ProductDetailResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of product detail snapshots keyed by product id.
+ * Entries are invalidated after the transaction that changed the product commits.
+ */
+@Component
+public class ProductDetailCache {
+    private final Cache<Long, ProductDetailResponse> cache;
+
+    public ProductDetailCache(
+            @Value("${product-cache.maximum-size:10000}") long maximumSize,
+            @Value("${product-cache.expire-after-write:10m}") Duration expireAfterWrite,
+            MeterRegistry meterRegistry
+    ) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "productDetail");
+    }
+
+    /**
+     * Returns the cached snapshot or computes it with the loader; a null result is not cached.
+     */
+    public ProductDetailResponse get(Long productId, Function<Long, ProductDetailResponse> loader) {
+        return cache.get(productId, loader);
+    }
+
+    /**
+     * Returns the cached snapshots for the given ids, loading all misses with a single loader call.
+     * Ids the loader does not return are absent from the result and are not cached.
+     */
+    public Map<Long, ProductDetailResponse> getAll(
+            Collection<Long> productIds,
+            Function<Set<? extends Long>, Map<Long, ProductDetailResponse>> loader
+    ) {
+        return cache.getAll(productIds, loader);
+    }
+
+    public ProductDetailResponse getIfPresent(Long productId) {
+        return cache.getIfPresent(productId);
+    }
+
+    public void invalidate(Long productId) {
+        cache.invalidate(productId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        invalidate(event.getProductId());
+    }
+}
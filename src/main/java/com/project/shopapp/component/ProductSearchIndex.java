@@ -0,0 +1,583 @@
+package com.project.shopapp.component;
+
+import com.project.shopapp.event.ProductChangedEvent;
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.event.ProductsImportedEvent;
+import com.project.shopapp.model.Product;
+import com.project.shopapp.repository.ProductFilter;
+import com.project.shopapp.repository.ProductRepository;
+import com.project.shopapp.response.ProductFacetsResponse;
+import com.project.shopapp.utils.PageCursor;
+import com.project.shopapp.utils.ProductSort;
+import com.project.shopapp.utils.TextNormalizer;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over product name and description.
+ * Terms are accent-folded so "dien thoai" matches "Điện thoại". Matches can be ranked by
+ * relevance or by any listing sort, so keyword listings never fall back to LIKE.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchIndex.class);
+    private static final int NAME_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final int REBUILD_BATCH_SIZE = 2000;
+    private static final int MAX_PREFIX_EXPANSION = 64;
+    // Từ cuối ngắn hơn thế này chỉ khớp chính xác: tiền tố 1 ký tự mở rộng ra gần hết từ điển
+    private static final int MIN_PREFIX_LENGTH = 2;
+    // Cận dưới của các khoảng giá (VND) dùng cho facet, khoảng cuối không giới hạn trên
+    private static final long[] PRICE_BUCKET_BOUNDS = {0, 1_000_000, 5_000_000, 10_000_000, 20_000_000};
+
+    private final ProductRepository productRepository;
+    private final TaskExecutor backgroundTaskExecutor;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean rebuildInProgress = new AtomicBoolean(false);
+    private IndexData data = new IndexData();
+    private IndexData rebuilding;
+    private final Set<Long> touchedDuringRebuild = new HashSet<>();
+    private volatile boolean ready = false;
+
+    /**
+     * {@code prefixTruncated} is set when the last keyword term matched more than
+     * {@value #MAX_PREFIX_EXPANSION} indexed terms and only the first of them were searched.
+     * {@code lastCursor} points after the last hit of the page, null when the page is empty.
+     */
+    public record SearchResult(List<Long> productIds, List<Long> scores, long totalElements,
+                               ProductFacetsResponse facets, boolean prefixTruncated, PageCursor lastCursor) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuildAsync();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.isDeleted()) {
+            remove(event.getProductId());
+        } else {
+            index(event.getProduct());
+        }
+    }
+
+    // Sản phẩm import hàng loạt không đi qua ProductChangedEvent: quét các id mới ở background
+    @EventListener
+    public void onProductsImported(ProductsImportedEvent event) {
+        backgroundTaskExecutor.execute(() -> indexAfterId(event.getAfterId()));
+    }
+
+    private void indexAfterId(long afterId) {
+        try {
+            long lastId = afterId;
+            while (true) {
+                List<Product> batch = productRepository.findBatchAfterId(lastId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+                if (batch.isEmpty()) break;
+                batch.forEach(this::index);
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+        } catch (Exception e) {
+            logger.warn("Indexing imported products failed, rebuild the search index to recover: {}", e.getMessage());
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean isRebuilding() {
+        return rebuildInProgress.get();
+    }
+
+    public boolean rebuildAsync() {
+        if (rebuildInProgress.get()) {
+            return false;
+        }
+        backgroundTaskExecutor.execute(this::rebuildQuietly);
+        return true;
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.warn("Product search index rebuild failed, keyword search falls back to database: {}", e.getMessage());
+        }
+    }
+
+    public void rebuild() {
+        if (!rebuildInProgress.compareAndSet(false, true)) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        IndexData fresh = new IndexData();
+        try {
+            lock.writeLock().lock();
+            try {
+                rebuilding = fresh;
+                touchedDuringRebuild.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            long lastId = 0;
+            while (true) {
+                List<Product> batch = productRepository.findBatchAfterId(lastId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+                if (batch.isEmpty()) break;
+                List<IndexedDocument> documents = batch.stream().map(ProductSearchIndex::toDocument).toList();
+                lock.writeLock().lock();
+                try {
+                    for (IndexedDocument document : documents) {
+                        // Bản ghi đã được cập nhật trong lúc rebuild thì giữ bản mới hơn
+                        if (!touchedDuringRebuild.contains(document.productId())) {
+                            fresh.put(document);
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+
+            lock.writeLock().lock();
+            try {
+                data = fresh;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("Product search index rebuilt: {} products, {} terms in {} ms",
+                    fresh.documents.size(), fresh.postings.size(), System.currentTimeMillis() - startedAt);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                rebuilding = null;
+                touchedDuringRebuild.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            rebuildInProgress.set(false);
+        }
+    }
+
+    public void index(Product product) {
+        if (product == null || product.getId() == null) return;
+        IndexedDocument document = toDocument(product);
+        lock.writeLock().lock();
+        try {
+            data.put(document);
+            if (rebuilding != null) {
+                rebuilding.put(document);
+                touchedDuringRebuild.add(document.productId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        if (productId == null) return;
+        lock.writeLock().lock();
+        try {
+            data.remove(productId);
+            if (rebuilding != null) {
+                rebuilding.remove(productId);
+                touchedDuringRebuild.add(productId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Matches of the keyword ranked by {@code sort}; RELEVANCE ranks by score. Returns null
+     * while the index is not ready so callers can fall back to the database query.
+     */
+    public SearchResult search(ProductFilter filter, ProductSort sort, int offset, int limit, boolean withFacets) {
+        return collect(filter, sort, null, offset, limit, withFacets);
+    }
+
+    /**
+     * Keyset variant of {@link #search}: returns hits ranked strictly after the cursor.
+     */
+    public SearchResult searchAfter(ProductFilter filter, ProductSort sort, PageCursor after, int limit,
+                                    boolean withFacets) throws InvalidParamException {
+        Hit afterHit = new Hit(after.getLastId(),
+                sort == ProductSort.RELEVANCE ? after.valueAsLong() : 0,
+                sort == ProductSort.PRICE_ASC || sort == ProductSort.PRICE_DESC ? ProductSort.cursorPrice(after) : null,
+                sort == ProductSort.NEWEST ? ProductSort.cursorCreatedAt(after) : null,
+                after.getValue());
+        return collect(filter, sort, afterHit, 0, limit, withFacets);
+    }
+
+    /**
+     * Facet counts for listings without a keyword, read from the precomputed counters.
+     * Returns null while the index is not ready.
+     */
+    public ProductFacetsResponse facets(Long categoryId) {
+        if (!ready) return null;
+        lock.readLock().lock();
+        try {
+            Map<Long, Integer> categoryCounts = new HashMap<>();
+            data.categoryCounters.forEach((id, counter) -> categoryCounts.put(id, counter.count));
+            int[] priceBuckets;
+            if (categoryId != null && categoryId != 0) {
+                CategoryCounter counter = data.categoryCounters.get(categoryId);
+                priceBuckets = counter != null ? counter.priceBuckets : new int[PRICE_BUCKET_BOUNDS.length];
+            } else {
+                priceBuckets = data.priceBuckets;
+            }
+            return toFacets(categoryCounts, priceBuckets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private SearchResult collect(ProductFilter filter, ProductSort sort, Hit after, int offset, int limit,
+                                 boolean withFacets) {
+        if (!ready) return null;
+        List<String> terms = new ArrayList<>(TextNormalizer.distinctTokens(filter.keyword()));
+        if (terms.isEmpty()) return null;
+
+        lock.readLock().lock();
+        try {
+            List<PostingList> lists = new ArrayList<>(terms.size());
+            boolean prefixTruncated = false;
+            for (int i = 0; i < terms.size(); i++) {
+                String term = terms.get(i);
+                boolean prefix = i == terms.size() - 1 && term.length() >= MIN_PREFIX_LENGTH;
+                PostingList postings = prefix ? data.prefixPostings(term) : data.postings.get(term);
+                if (prefix) prefixTruncated = data.isPrefixTruncated(term);
+                if (postings == null || postings.size == 0) {
+                    return new SearchResult(List.of(), List.of(), 0,
+                            withFacets ? toFacets(Map.of(), new int[PRICE_BUCKET_BOUNDS.length]) : null, false, null);
+                }
+                lists.add(postings);
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size));
+
+            boolean filterCategory = filter.hasCategory();
+            long categoryId = filterCategory ? filter.categoryId() : 0;
+            boolean filterPrice = filter.hasPriceRange();
+            int wanted = Math.max(0, offset) + Math.max(0, limit);
+            // Heap giữ lại top (offset + limit) kết quả, kết quả xếp sau cùng nằm ở đầu heap
+            Comparator<Hit> ranking = ranking(sort);
+            PriorityQueue<Hit> top = new PriorityQueue<>(Math.max(1, wanted), ranking.reversed());
+            // Sắp theo giá, ngày tạo, tên cần đọc document của mọi kết quả
+            boolean needsDocument = sort != ProductSort.RELEVANCE && sort != ProductSort.ID;
+            long total = 0;
+            // Facet được đếm trong cùng vòng lặp giao posting list, không cần truy vấn thêm
+            Map<Long, Integer> categoryCounts = withFacets ? new HashMap<>() : null;
+            int[] priceBuckets = withFacets ? new int[PRICE_BUCKET_BOUNDS.length] : null;
+
+            PostingList smallest = lists.get(0);
+            for (int i = 0; i < smallest.size; i++) {
+                long productId = smallest.ids[i];
+                IndexedDocument document = null;
+                // Lọc khoảng giá, và danh mục khi không cần facet, trước khi tính điểm để bỏ qua sớm
+                if (filterPrice || (filterCategory && !withFacets) || needsDocument) {
+                    document = data.documents.get(productId);
+                    if (document == null || !filter.acceptsPrice(document.price())) continue;
+                    if (filterCategory && !withFacets && document.categoryId() != categoryId) continue;
+                }
+                long score = smallest.weights[i];
+                boolean matched = true;
+                for (int j = 1; j < lists.size() && matched; j++) {
+                    int weight = lists.get(j).weightOf(productId);
+                    if (weight < 0) {
+                        matched = false;
+                    } else {
+                        score += weight;
+                    }
+                }
+                if (!matched) continue;
+
+                if (withFacets) {
+                    document = data.documents.get(productId);
+                    if (document == null) continue;
+                    categoryCounts.merge(document.categoryId(), 1, Integer::sum);
+                    if (filterCategory && document.categoryId() != categoryId) continue;
+                    if (document.priceBucket() >= 0) priceBuckets[document.priceBucket()]++;
+                }
+
+                Hit hit = document != null
+                        ? new Hit(productId, score, document.price(), document.createdAt(), document.name())
+                        : new Hit(productId, score, null, null, null);
+                if (after != null && ranking.compare(hit, after) <= 0) continue;
+                total++;
+                if (wanted == 0) continue;
+                if (top.size() < wanted) {
+                    top.add(hit);
+                } else if (ranking.compare(hit, top.peek()) < 0) {
+                    top.poll();
+                    top.add(hit);
+                }
+            }
+
+            List<Hit> ranked = new ArrayList<>(top);
+            ranked.sort(ranking);
+            List<Hit> page = ranked.subList(Math.min(Math.max(0, offset), ranked.size()), ranked.size());
+            PageCursor lastCursor = page.isEmpty() ? null : page.get(page.size() - 1).cursor(sort);
+            return new SearchResult(
+                    page.stream().map(Hit::productId).toList(),
+                    page.stream().map(Hit::score).toList(),
+                    total,
+                    withFacets ? toFacets(categoryCounts, priceBuckets) : null,
+                    prefixTruncated,
+                    lastCursor);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("ready", ready);
+            stats.put("rebuilding", rebuildInProgress.get());
+            stats.put("products", data.documents.size());
+            stats.put("terms", data.postings.size());
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static ProductFacetsResponse toFacets(Map<Long, Integer> categoryCounts, int[] priceBuckets) {
+        List<ProductFacetsResponse.CategoryFacet> categories = categoryCounts.entrySet()
+                .stream()
+                .filter(entry -> entry.getKey() != 0 && entry.getValue() > 0)
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .map(entry -> new ProductFacetsResponse.CategoryFacet(entry.getKey(), entry.getValue()))
+                .toList();
+        List<ProductFacetsResponse.PriceRangeFacet> priceRanges = new ArrayList<>(PRICE_BUCKET_BOUNDS.length);
+        for (int i = 0; i < PRICE_BUCKET_BOUNDS.length; i++) {
+            Long max = i + 1 < PRICE_BUCKET_BOUNDS.length ? PRICE_BUCKET_BOUNDS[i + 1] : null;
+            priceRanges.add(new ProductFacetsResponse.PriceRangeFacet(PRICE_BUCKET_BOUNDS[i], max, priceBuckets[i]));
+        }
+        return ProductFacetsResponse.builder()
+                .categories(categories)
+                .priceRanges(priceRanges)
+                .build();
+    }
+
+    private static int priceBucketOf(Float price) {
+        if (price == null || price < 0) return -1;
+        int bucket = 0;
+        while (bucket + 1 < PRICE_BUCKET_BOUNDS.length && price >= PRICE_BUCKET_BOUNDS[bucket + 1]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    // Thứ tự giống ORDER BY của ProductRepositoryImpl (NULL nhỏ nhất như MySQL), kết quả đứng trước là kết quả tốt hơn
+    private static Comparator<Hit> ranking(ProductSort sort) {
+        Comparator<Hit> byIdAsc = Comparator.comparingLong(Hit::productId);
+        Comparator<Hit> byIdDesc = byIdAsc.reversed();
+        return switch (sort) {
+            case RELEVANCE -> Comparator.comparingLong(Hit::score).reversed().thenComparing(byIdAsc);
+            case ID -> byIdAsc;
+            case PRICE_ASC -> Comparator.comparing(Hit::price, Comparator.nullsFirst(Comparator.<Float>naturalOrder()))
+                    .thenComparing(byIdAsc);
+            case PRICE_DESC -> Comparator.comparing(Hit::price, Comparator.nullsLast(Comparator.<Float>reverseOrder()))
+                    .thenComparing(byIdDesc);
+            case NEWEST -> Comparator.comparing(Hit::createdAt,
+                            Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+                    .thenComparing(byIdDesc);
+            case NAME -> Comparator.comparing(Hit::name, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+                    .thenComparing(byIdAsc);
+        };
+    }
+
+    private record Hit(long productId, long score, Float price, LocalDateTime createdAt, String name) {
+        PageCursor cursor(ProductSort sort) {
+            String value = sort == ProductSort.RELEVANCE
+                    ? String.valueOf(score)
+                    : sort.cursorValue(price, createdAt, name);
+            return new PageCursor(sort.getKey(), value, productId);
+        }
+    }
+
+    private static IndexedDocument toDocument(Product product) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String term : TextNormalizer.distinctTokens(product.getName())) {
+            weights.merge(term, NAME_WEIGHT, Integer::sum);
+        }
+        for (String term : TextNormalizer.distinctTokens(product.getDescription())) {
+            weights.merge(term, DESCRIPTION_WEIGHT, Integer::sum);
+        }
+        String[] terms = new String[weights.size()];
+        int[] termWeights = new int[weights.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            terms[i] = entry.getKey();
+            termWeights[i] = entry.getValue();
+            i++;
+        }
+        long categoryId = product.getCategory() != null && product.getCategory().getId() != null
+                ? product.getCategory().getId() : 0L;
+        return new IndexedDocument(product.getId(), categoryId, product.getPrice(), priceBucketOf(product.getPrice()),
+                product.getCreatedAt(), product.getName(), terms, termWeights);
+    }
+
+    private record IndexedDocument(long productId, long categoryId, Float price, int priceBucket,
+                                   LocalDateTime createdAt, String name, String[] terms, int[] weights) {
+    }
+
+    private static final class CategoryCounter {
+        private int count;
+        private final int[] priceBuckets = new int[PRICE_BUCKET_BOUNDS.length];
+    }
+
+    private static final class IndexData {
+        private final TreeMap<String, PostingList> postings = new TreeMap<>();
+        private final Map<Long, IndexedDocument> documents = new HashMap<>();
+        // Bộ đếm facet được cập nhật cùng lúc với posting list khi thêm/xoá sản phẩm
+        private final Map<Long, CategoryCounter> categoryCounters = new HashMap<>();
+        private final int[] priceBuckets = new int[PRICE_BUCKET_BOUNDS.length];
+
+        void put(IndexedDocument document) {
+            remove(document.productId());
+            for (int i = 0; i < document.terms().length; i++) {
+                postings.computeIfAbsent(document.terms()[i], term -> new PostingList())
+                        .put(document.productId(), document.weights()[i]);
+            }
+            documents.put(document.productId(), document);
+            count(document, 1);
+        }
+
+        void remove(long productId) {
+            IndexedDocument existing = documents.remove(productId);
+            if (existing == null) return;
+            for (String term : existing.terms()) {
+                PostingList list = postings.get(term);
+                if (list != null && list.remove(productId) && list.size == 0) {
+                    postings.remove(term);
+                }
+            }
+            count(existing, -1);
+        }
+
+        private void count(IndexedDocument document, int delta) {
+            CategoryCounter counter = categoryCounters.computeIfAbsent(document.categoryId(), id -> new CategoryCounter());
+            counter.count += delta;
+            if (document.priceBucket() >= 0) {
+                counter.priceBuckets[document.priceBucket()] += delta;
+                priceBuckets[document.priceBucket()] += delta;
+            }
+            if (counter.count == 0) {
+                categoryCounters.remove(document.categoryId());
+            }
+        }
+
+        // Từ cuối cùng được khớp theo tiền tố để hỗ trợ người dùng đang gõ dở
+        PostingList prefixPostings(String prefix) {
+            NavigableMap<String, PostingList> matches = prefixMatches(prefix);
+            Map.Entry<String, PostingList> first = matches.firstEntry();
+            if (first == null) return null;
+            if (matches.higherKey(first.getKey()) == null) return first.getValue();
+
+            // Từ khớp chính xác luôn nằm đầu subMap nên không bị giới hạn mở rộng loại bỏ
+            Map<Long, Integer> weights = new HashMap<>();
+            int expanded = 0;
+            for (PostingList list : matches.values()) {
+                if (expanded++ >= MAX_PREFIX_EXPANSION) break;
+                for (int i = 0; i < list.size; i++) {
+                    weights.merge(list.ids[i], list.weights[i], Math::max);
+                }
+            }
+            return PostingList.of(weights);
+        }
+
+        boolean isPrefixTruncated(String prefix) {
+            return prefixMatches(prefix).keySet().stream().skip(MAX_PREFIX_EXPANSION).findAny().isPresent();
+        }
+
+        private NavigableMap<String, PostingList> prefixMatches(String prefix) {
+            return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        }
+    }
+
+    /**
+     * Sorted product ids with a parallel weight array; appends in id order are O(1).
+     */
+    private static final class PostingList {
+        private long[] ids = new long[4];
+        private int[] weights = new int[4];
+        private int size;
+
+        void put(long productId, int weight) {
+            int index = size > 0 && ids[size - 1] < productId ? -(size + 1) : Arrays.binarySearch(ids, 0, size, productId);
+            if (index >= 0) {
+                weights[index] = weight;
+                return;
+            }
+            insertAt(-(index + 1), productId, weight);
+        }
+
+        static PostingList of(Map<Long, Integer> weights) {
+            PostingList list = new PostingList();
+            list.ids = weights.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            list.size = list.ids.length;
+            list.weights = new int[Math.max(list.size, 1)];
+            if (list.ids.length == 0) list.ids = new long[1];
+            for (int i = 0; i < list.size; i++) {
+                list.weights[i] = weights.get(list.ids[i]);
+            }
+            return list;
+        }
+
+        boolean remove(long productId) {
+            int index = Arrays.binarySearch(ids, 0, size, productId);
+            if (index < 0) return false;
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            System.arraycopy(weights, index + 1, weights, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        int weightOf(long productId) {
+            int index = Arrays.binarySearch(ids, 0, size, productId);
+            return index >= 0 ? weights[index] : -1;
+        }
+
+        private void insertAt(int position, long productId, int weight) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            System.arraycopy(weights, position, weights, position + 1, size - position);
+            ids[position] = productId;
+            weights[position] = weight;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package com.project.shopapp.component;
+
+import com.project.shopapp.event.ProductChangedEvent;
+import com.project.shopapp.event.ProductsImportedEvent;
+import com.project.shopapp.repository.OrderDetailRepository;
+import com.project.shopapp.repository.ProductNameView;
+import com.project.shopapp.repository.ProductQuantity;
+import com.project.shopapp.repository.ProductRepository;
+import com.project.shopapp.utils.TextNormalizer;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Typeahead over product names: a radix trie of accent-folded names where every node keeps
+ * the ids of its k most popular completions (popularity = units sold), so a lookup only
+ * walks the prefix and copies one precomputed list.
+ * <p>
+ * A name is indexed from the start of each of its first words, so "op lung iphone" is found
+ * by "op", "lung" and "iphone". Keys are truncated because completions are only shown for
+ * short prefixes.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductSuggestIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ProductSuggestIndex.class);
+    private static final int REBUILD_BATCH_SIZE = 5000;
+    private static final int MAX_WORD_STARTS = 3;
+    private static final int MAX_KEY_LENGTH = 32;
+    private static final long[] NO_IDS = new long[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final ProductRepository productRepository;
+    private final OrderDetailRepository orderDetailRepository;
+    private final TaskExecutor backgroundTaskExecutor;
+
+    @Value("${product-suggest.top-k:10}")
+    private int topK;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean rebuildInProgress = new AtomicBoolean(false);
+    private Trie data = new Trie();
+    private Trie rebuilding;
+    private final Set<Long> touchedDuringRebuild = new HashSet<>();
+    private volatile boolean ready = false;
+
+    public record Suggestion(long id, String name) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuildAsync();
+    }
+
+    // Độ phổ biến (số lượng đã bán) chỉ được làm mới khi rebuild
+    @Scheduled(cron = "${product-suggest.rebuild-cron:0 0 4 * * *}")
+    public void scheduledRebuild() {
+        rebuildQuietly();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.isDeleted()) {
+            remove(event.getProductId());
+        } else if (event.getProduct() != null) {
+            index(event.getProductId(), event.getProduct().getName());
+        }
+    }
+
+    @EventListener
+    public void onProductsImported(ProductsImportedEvent event) {
+        backgroundTaskExecutor.execute(() -> indexAfterId(event.getAfterId()));
+    }
+
+    private void indexAfterId(long afterId) {
+        try {
+            long lastId = afterId;
+            while (true) {
+                List<ProductNameView> batch = productRepository.findNamesAfterId(
+                        lastId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+                if (batch.isEmpty()) break;
+                batch.forEach(product -> index(product.getId(), product.getName()));
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+        } catch (Exception e) {
+            logger.warn("Indexing imported products for suggestions failed: {}", e.getMessage());
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean rebuildAsync() {
+        if (rebuildInProgress.get()) {
+            return false;
+        }
+        backgroundTaskExecutor.execute(this::rebuildQuietly);
+        return true;
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.warn("Product suggest index rebuild failed: {}", e.getMessage());
+        }
+    }
+
+    public void rebuild() {
+        if (!rebuildInProgress.compareAndSet(false, true)) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        Trie fresh = new Trie();
+        try {
+            for (ProductQuantity sold : orderDetailRepository.sumQuantityByProduct()) {
+                if (sold.getProductId() != null && sold.getQuantity() != null) {
+                    fresh.popularity.put(sold.getProductId(), sold.getQuantity());
+                }
+            }
+            lock.writeLock().lock();
+            try {
+                rebuilding = fresh;
+                touchedDuringRebuild.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            long lastId = 0;
+            while (true) {
+                List<ProductNameView> batch = productRepository.findNamesAfterId(
+                        lastId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+                if (batch.isEmpty()) break;
+                lock.writeLock().lock();
+                try {
+                    for (ProductNameView product : batch) {
+                        // Sản phẩm đã được cập nhật trong lúc rebuild thì giữ bản mới hơn
+                        if (!touchedDuringRebuild.contains(product.getId())) {
+                            fresh.put(product.getId(), product.getName());
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+
+            lock.writeLock().lock();
+            try {
+                data = fresh;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("Product suggest index rebuilt: {} products, {} nodes in {} ms",
+                    fresh.entries.size(), fresh.nodeCount, System.currentTimeMillis() - startedAt);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                rebuilding = null;
+                touchedDuringRebuild.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            rebuildInProgress.set(false);
+        }
+    }
+
+    public void index(Long productId, String name) {
+        if (productId == null) return;
+        lock.writeLock().lock();
+        try {
+            data.put(productId, name);
+            if (rebuilding != null) {
+                rebuilding.put(productId, name);
+                touchedDuringRebuild.add(productId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        if (productId == null) return;
+        lock.writeLock().lock();
+        try {
+            data.remove(productId);
+            if (rebuilding != null) {
+                rebuilding.remove(productId);
+                touchedDuringRebuild.add(productId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Most popular products whose name has a word starting with {@code prefix} (accents and case
+     * ignored). Returns null while the index is not ready.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        if (!ready) return null;
+        String key = keyOf(prefix);
+        if (key.isEmpty() || limit <= 0) return List.of();
+        lock.readLock().lock();
+        try {
+            long[] top = data.find(key);
+            List<Suggestion> suggestions = new ArrayList<>(Math.min(limit, top.length));
+            for (int i = 0; i < top.length && suggestions.size() < limit; i++) {
+                Entry entry = data.entries.get(top[i]);
+                suggestions.add(new Suggestion(entry.id, entry.name));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("ready", ready);
+            stats.put("rebuilding", rebuildInProgress.get());
+            stats.put("products", data.entries.size());
+            stats.put("nodes", data.nodeCount);
+            stats.put("top_k", topK);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Prefix người dùng gõ: chuẩn hoá như tên sản phẩm, giữ dấu cách cuối để "ao " không khớp "aokhoac"
+    private static String keyOf(String prefix) {
+        String key = String.join(" ", TextNormalizer.tokenize(prefix));
+        if (!key.isEmpty() && Character.isWhitespace(prefix.charAt(prefix.length() - 1))) {
+            key += " ";
+        }
+        return key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key;
+    }
+
+    private static Set<String> keysOf(String name) {
+        List<String> tokens = TextNormalizer.tokenize(name);
+        Set<String> keys = new LinkedHashSet<>();
+        for (int start = 0; start < Math.min(tokens.size(), MAX_WORD_STARTS); start++) {
+            String key = String.join(" ", tokens.subList(start, tokens.size()));
+            keys.add(key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key);
+        }
+        return keys;
+    }
+
+    private record Entry(long id, String name, long popularity) {
+    }
+
+    // Các mảng id trong node không bao giờ bị sửa tại chỗ, nên lá có thể dùng chung một mảng cho top và terminals
+    private static final class Node {
+        private String label;
+        private Node[] children = NO_CHILDREN;
+        private long[] terminals = NO_IDS;
+        private long[] top = NO_IDS;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        private int childIndex(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char c = children[mid].label.charAt(0);
+                if (c < first) low = mid + 1;
+                else if (c > first) high = mid - 1;
+                else return mid;
+            }
+            return -(low + 1);
+        }
+    }
+
+    private final class Trie {
+        private final Node root = new Node("");
+        private final Map<Long, Entry> entries = new HashMap<>();
+        private final Map<Long, Long> popularity = new HashMap<>();
+        private int nodeCount = 1;
+        // Điểm cao trước, cùng điểm thì id nhỏ trước
+        private final Comparator<Long> ranking = Comparator
+                .comparingLong((Long id) -> -entries.get(id).popularity())
+                .thenComparingLong(id -> id);
+
+        void put(long productId, String name) {
+            remove(productId);
+            Set<String> keys = keysOf(name);
+            if (keys.isEmpty()) return;
+            entries.put(productId, new Entry(productId, name, popularity.getOrDefault(productId, 0L)));
+            for (String key : keys) {
+                insert(key, productId);
+            }
+        }
+
+        void remove(long productId) {
+            Entry entry = entries.remove(productId);
+            if (entry == null) return;
+            // Khoá được tính lại từ tên: không giữ danh sách khoá của từng sản phẩm trong bộ nhớ
+            for (String key : keysOf(entry.name())) {
+                removeKey(root, key, 0, productId);
+            }
+        }
+
+        long[] find(String key) {
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                int index = node.childIndex(key.charAt(i));
+                if (index < 0) return NO_IDS;
+                Node child = node.children[index];
+                int length = Math.min(child.label.length(), key.length() - i);
+                if (!child.label.regionMatches(0, key, i, length)) return NO_IDS;
+                i += length;
+                node = child;
+            }
+            return node.top;
+        }
+
+        private void insert(String key, long productId) {
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                int index = node.childIndex(key.charAt(i));
+                if (index < 0) {
+                    Node leaf = new Node(key.substring(i));
+                    leaf.terminals = new long[]{productId};
+                    leaf.top = leaf.terminals;
+                    node.children = insertChild(node.children, -(index + 1), leaf);
+                    nodeCount++;
+                    return;
+                }
+                Node child = node.children[index];
+                int common = 0;
+                int max = Math.min(child.label.length(), key.length() - i);
+                while (common < max && child.label.charAt(common) == key.charAt(i + common)) common++;
+                if (common < child.label.length()) {
+                    // Tách cạnh: node giữa giữ phần chung của nhãn
+                    Node middle = new Node(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    middle.children = new Node[]{child};
+                    middle.top = child.top;
+                    node.children[index] = middle;
+                    nodeCount++;
+                    child = middle;
+                }
+                offer(child, productId);
+                node = child;
+                i += common;
+            }
+            node.terminals = append(node.terminals, productId);
+            offer(node, productId);
+        }
+
+        // Trả về true khi node không còn gì và có thể bỏ khỏi node cha
+        private boolean removeKey(Node node, String key, int i, long productId) {
+            if (i == key.length()) {
+                node.terminals = without(node.terminals, productId);
+            } else {
+                int index = node.childIndex(key.charAt(i));
+                if (index >= 0) {
+                    Node child = node.children[index];
+                    if (key.startsWith(child.label, i)
+                            && removeKey(child, key, i + child.label.length(), productId)) {
+                        node.children = removeChild(node.children, index);
+                        nodeCount--;
+                    }
+                }
+            }
+            if (contains(node.top, productId)) {
+                recomputeTop(node, productId);
+            }
+            return node != root && node.terminals.length == 0 && node.children.length == 0;
+        }
+
+        // Top-k của node = top-k trong (terminals của node + top-k của các node con)
+        private void recomputeTop(Node node, long excluded) {
+            Set<Long> candidates = new HashSet<>();
+            for (long id : node.terminals) {
+                if (id != excluded) candidates.add(id);
+            }
+            for (Node child : node.children) {
+                for (long id : child.top) {
+                    if (id != excluded) candidates.add(id);
+                }
+            }
+            node.top = candidates.stream()
+                    .sorted(ranking)
+                    .limit(topK)
+                    .mapToLong(Long::longValue)
+                    .toArray();
+        }
+
+        private void offer(Node node, long productId) {
+            long[] top = node.top;
+            if (contains(top, productId)) return;
+            if (top.length >= topK && ranking.compare(productId, top[top.length - 1]) > 0) return;
+            int position = 0;
+            while (position < top.length && ranking.compare(top[position], productId) < 0) position++;
+            int length = Math.min(top.length + 1, topK);
+            long[] updated = new long[length];
+            System.arraycopy(top, 0, updated, 0, Math.min(position, length));
+            if (position < length) {
+                updated[position] = productId;
+                System.arraycopy(top, position, updated, position + 1, length - position - 1);
+            }
+            node.top = updated;
+        }
+    }
+
+    private static boolean contains(long[] ids, long id) {
+        for (long value : ids) {
+            if (value == id) return true;
+        }
+        return false;
+    }
+
+    private static long[] append(long[] ids, long id) {
+        if (contains(ids, id)) return ids;
+        long[] updated = Arrays.copyOf(ids, ids.length + 1);
+        updated[ids.length] = id;
+        return updated;
+    }
+
+    private static long[] without(long[] ids, long id) {
+        if (!contains(ids, id)) return ids;
+        if (ids.length == 1) return NO_IDS;
+        return Arrays.stream(ids).filter(value -> value != id).toArray();
+    }
+
+    private static Node[] insertChild(Node[] children, int position, Node child) {
+        Node[] updated = new Node[children.length + 1];
+        System.arraycopy(children, 0, updated, 0, position);
+        updated[position] = child;
+        System.arraycopy(children, position, updated, position + 1, children.length - position);
+        return updated;
+    }
+
+    private static Node[] removeChild(Node[] children, int position) {
+        if (children.length == 1) return NO_CHILDREN;
+        Node[] updated = new Node[children.length - 1];
+        System.arraycopy(children, 0, updated, 0, position);
+        System.arraycopy(children, position + 1, updated, position, children.length - position - 1);
+        return updated;
+    }
+}
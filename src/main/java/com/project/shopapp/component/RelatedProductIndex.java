@@ -0,0 +1,165 @@
+package com.project.shopapp.component;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * "Frequently bought together" neighbours of every product, kept as flat primitive arrays:
+ * sorted product ids, an offset per product, and the related ids and order counts of all
+ * products back to back. About 12 bytes per neighbour plus 12 per product, without one
+ * object per entry. Readers use an immutable snapshot that writers replace as a whole.
+ */
+@Component
+public class RelatedProductIndex {
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile boolean ready = false;
+
+    public record Related(@JsonProperty("product_id") long productId,
+                          @JsonProperty("order_count") int orderCount) {
+    }
+
+    /**
+     * Neighbours of one product, best first. Empty arrays remove the product.
+     */
+    public record Neighbors(long[] productIds, int[] orderCounts) {
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns null while the index is not loaded.
+     */
+    public List<Related> get(long productId, int limit) {
+        if (!ready) return null;
+        Snapshot current = snapshot;
+        int index = Arrays.binarySearch(current.productIds, 0, current.size, productId);
+        if (index < 0) return List.of();
+        int start = current.offsets[index];
+        int end = Math.min(current.offsets[index + 1], start + Math.max(0, limit));
+        List<Related> related = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            related.add(new Related(current.relatedIds[i], current.orderCounts[i]));
+        }
+        return related;
+    }
+
+    public Builder newBuilder() {
+        return new Builder();
+    }
+
+    // Nạp toàn bộ: builder được dựng ở background rồi thay snapshot một lần
+    public synchronized void replace(Builder builder) {
+        snapshot = builder.build();
+        ready = true;
+    }
+
+    /**
+     * Merges new neighbour lists of some products into a copy of the current snapshot.
+     */
+    public synchronized void update(SortedMap<Long, Neighbors> changes) {
+        if (changes.isEmpty()) return;
+        Snapshot current = snapshot;
+        Builder builder = new Builder();
+        Iterator<Map.Entry<Long, Neighbors>> iterator = changes.entrySet().iterator();
+        Map.Entry<Long, Neighbors> change = iterator.next();
+        for (int i = 0; i < current.size; i++) {
+            long productId = current.productIds[i];
+            while (change != null && change.getKey() < productId) {
+                builder.add(change.getKey(), change.getValue());
+                change = iterator.hasNext() ? iterator.next() : null;
+            }
+            if (change != null && change.getKey() == productId) {
+                builder.add(productId, change.getValue());
+                change = iterator.hasNext() ? iterator.next() : null;
+            } else {
+                int start = current.offsets[i];
+                int end = current.offsets[i + 1];
+                builder.add(productId,
+                        Arrays.copyOfRange(current.relatedIds, start, end),
+                        Arrays.copyOfRange(current.orderCounts, start, end));
+            }
+        }
+        while (change != null) {
+            builder.add(change.getKey(), change.getValue());
+            change = iterator.hasNext() ? iterator.next() : null;
+        }
+        snapshot = builder.build();
+    }
+
+    public Map<String, Object> getStats() {
+        Snapshot current = snapshot;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", ready);
+        stats.put("products", current.size);
+        stats.put("neighbors", current.offsets[current.size]);
+        stats.put("bytes", (long) current.productIds.length * (Long.BYTES + Integer.BYTES)
+                + (long) current.relatedIds.length * (Long.BYTES + Integer.BYTES));
+        return stats;
+    }
+
+    private record Snapshot(long[] productIds, int[] offsets, long[] relatedIds, int[] orderCounts, int size) {
+        static final Snapshot EMPTY = new Snapshot(new long[0], new int[1], new long[0], new int[0], 0);
+    }
+
+    /**
+     * Collects neighbour lists in ascending product id order.
+     */
+    public static final class Builder {
+        private long[] productIds = new long[1024];
+        private int[] offsets = new int[1025];
+        private long[] relatedIds = new long[8192];
+        private int[] orderCounts = new int[8192];
+        private int size;
+        private int neighbors;
+
+        private Builder() {
+        }
+
+        public void add(long productId, Neighbors list) {
+            add(productId, list.productIds(), list.orderCounts());
+        }
+
+        public void add(long productId, long[] related, int[] counts) {
+            if (related.length == 0) return;
+            if (size > 0 && productIds[size - 1] >= productId) {
+                throw new IllegalArgumentException("Products must be added in ascending id order");
+            }
+            if (size == productIds.length) {
+                productIds = Arrays.copyOf(productIds, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2 + 1);
+            }
+            if (neighbors + related.length > relatedIds.length) {
+                int capacity = Math.max(relatedIds.length * 2, neighbors + related.length);
+                relatedIds = Arrays.copyOf(relatedIds, capacity);
+                orderCounts = Arrays.copyOf(orderCounts, capacity);
+            }
+            productIds[size] = productId;
+            offsets[size] = neighbors;
+            System.arraycopy(related, 0, relatedIds, neighbors, related.length);
+            System.arraycopy(counts, 0, orderCounts, neighbors, related.length);
+            neighbors += related.length;
+            size++;
+            offsets[size] = neighbors;
+        }
+
+        private Snapshot build() {
+            // Cắt bớt phần dư của các mảng để snapshot chỉ chiếm đúng dung lượng cần
+            return new Snapshot(
+                    Arrays.copyOf(productIds, size),
+                    Arrays.copyOf(offsets, size + 1),
+                    Arrays.copyOf(relatedIds, neighbors),
+                    Arrays.copyOf(orderCounts, neighbors),
+                    size);
+        }
+    }
+}
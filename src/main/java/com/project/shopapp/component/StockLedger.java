@@ -0,0 +1,75 @@
+package com.project.shopapp.component;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Available stock of every product that tracks stock, one lock-free counter per product.
+ * Reservations take stock with a compare-and-set and never block, so any number of orders
+ * can reserve the same product at once and lines of one order can be reserved in any order
+ * without deadlocks. Counters also count reservations of orders whose transaction has not
+ * committed yet; the committed stock is kept in the database by StockService.
+ * Products without a counter do not track stock and are never short.
+ */
+@Component
+public class StockLedger {
+    private final ConcurrentHashMap<Long, AtomicLong> counters = new ConcurrentHashMap<>();
+    private volatile boolean ready = false;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean isTracked(long productId) {
+        return counters.containsKey(productId);
+    }
+
+    /**
+     * Returns null when the product does not track stock.
+     */
+    public Long getAvailable(long productId) {
+        AtomicLong counter = counters.get(productId);
+        return counter == null ? null : counter.get();
+    }
+
+    /**
+     * Takes {@code quantity} units if that many are available.
+     */
+    public boolean tryReserve(long productId, int quantity) {
+        AtomicLong counter = counters.get(productId);
+        if (counter == null) return true;
+        while (true) {
+            long available = counter.get();
+            if (available < quantity) return false;
+            if (counter.compareAndSet(available, available - quantity)) return true;
+        }
+    }
+
+    public void release(long productId, int quantity) {
+        AtomicLong counter = counters.get(productId);
+        if (counter != null) {
+            counter.addAndGet(quantity);
+        }
+    }
+
+    /**
+     * Sets the available stock, starting to track the product if needed.
+     */
+    public void set(long productId, long quantity) {
+        counters.computeIfAbsent(productId, id -> new AtomicLong()).set(quantity);
+    }
+
+    // Nạp lại toàn bộ từ database: chỉ gọi khi không có đơn nào đang giữ hàng
+    public void load(Map<Long, Long> quantities) {
+        counters.clear();
+        quantities.forEach((productId, quantity) -> counters.put(productId, new AtomicLong(quantity)));
+        ready = true;
+    }
+
+    public int size() {
+        return counters.size();
+    }
+}
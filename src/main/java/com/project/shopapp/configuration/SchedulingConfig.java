@@ -0,0 +1,61 @@
+package com.project.shopapp.configuration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+    private static final Logger logger = LoggerFactory.getLogger(SchedulingConfig.class);
+
+    /**
+     * Shared pool for background jobs started on demand (index rebuilds, reconcilers, image store
+     * maintenance). Jobs still running on shutdown get {@code shutdown-timeout} to finish.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor backgroundTaskExecutor(
+            @Value("${background-tasks.threads:4}") int threads,
+            @Value("${background-tasks.shutdown-timeout:30s}") Duration shutdownTimeout) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("background-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationMillis(shutdownTimeout.toMillis());
+        // Lỗi không được bắt trong job chỉ được log, không làm chết thread của pool
+        executor.setTaskDecorator(task -> () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.error("Background task failed", e);
+            }
+        });
+        return executor;
+    }
+
+    /**
+     * Writer threads of the group-commit order pipeline. Each writer is a long-running task, so
+     * the pool is sized to {@code order-ingestion.writer-threads} and has no queue of its own;
+     * threads are only created once the pipeline starts them.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor orderWriterExecutor(
+            @Value("${order-ingestion.writer-threads:2}") int writerThreads,
+            @Value("${order-ingestion.shutdown-timeout:30s}") Duration shutdownTimeout) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(writerThreads);
+        executor.setMaxPoolSize(writerThreads);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("order-writer-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationMillis(shutdownTimeout.toMillis());
+        return executor;
+    }
+}
@@ -2,6 +2,7 @@ package com.project.shopapp.configuration;
 
 import com.project.shopapp.filter.JwtTokenFilter;
 import com.project.shopapp.model.Role;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -14,6 +15,9 @@ import org.springframework.security.config.annotation.web.configurers.AbstractHt
 import org.springframework.security.config.annotation.web.configurers.CorsConfigurer;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
+import org.springframework.security.web.util.matcher.DispatcherTypeRequestMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
@@ -23,6 +27,7 @@ import java.util.List;
 
 import static org.springframework.http.HttpMethod.DELETE;
 import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.HttpMethod.HEAD;
 import static org.springframework.http.HttpMethod.POST;
 import static org.springframework.http.HttpMethod.PUT;
 
@@ -40,7 +45,15 @@ public class WebSecurityConfig {
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http.csrf(AbstractHttpConfigurer::disable)
                 .addFilterBefore(jwtTokenFilter, UsernamePasswordAuthenticationFilter.class)
-                .authorizeHttpRequests(requests -> requests.requestMatchers(
+                .authorizeHttpRequests(requests -> requests
+                                // Kết quả async của POST /orders (group commit) đã được phân quyền ở lần dispatch đầu tiên;
+                                // phải đứng trước POST /orders/** vì JWT filter không chạy lại khi dispatch async
+                                .requestMatchers(new AndRequestMatcher(
+                                        new DispatcherTypeRequestMatcher(DispatcherType.ASYNC),
+                                        PathPatternRequestMatcher.withDefaults()
+                                                .matcher(POST, String.format("%s/orders", apiPrefix))))
+                                .permitAll()
+                                .requestMatchers(
                                         String.format("%s/users/register", apiPrefix),
                                         String.format("%s/users/login", apiPrefix)
                                 )
@@ -59,6 +72,10 @@ public class WebSecurityConfig {
                                         String.format("%s/products/**", apiPrefix)).permitAll()
                                 .requestMatchers(GET,
                                         String.format("%s/products/images/**", apiPrefix)).permitAll()
+                                .requestMatchers(HEAD,
+                                        String.format("%s/products/images/**", apiPrefix)).permitAll()
+                                .requestMatchers(POST,
+                                        String.format("%s/products/by-ids", apiPrefix)).permitAll()
                                 .requestMatchers(POST,
                                         String.format("%s/products/**", apiPrefix)).hasAnyRole(Role.ADMIN)
                                 .requestMatchers(PUT,
@@ -83,6 +100,9 @@ public class WebSecurityConfig {
                                         String.format("%s/order_details/**", apiPrefix)).hasRole(Role.ADMIN)
                                 .requestMatchers(GET,
                                         String.format("%s/health-check/**", apiPrefix)).permitAll()
+                                .requestMatchers("/actuator/**").hasRole(Role.ADMIN)
+                                // Request async (StreamingResponseBody) đã được phân quyền ở lần dispatch đầu tiên
+                                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                                 .anyRequest().authenticated()
                 ).csrf(AbstractHttpConfigurer::disable);
 
@@ -3,8 +3,11 @@ package com.project.shopapp.controller;
 import com.project.shopapp.component.LocalizationUtils;
 import com.project.shopapp.dto.CategoryDTO;
 import com.project.shopapp.model.Category;
+import com.project.shopapp.response.CategoryResponse;
+import com.project.shopapp.response.CategorySnapshot;
 import com.project.shopapp.response.ResponseObject;
 import com.project.shopapp.service.CategoryService;
+import com.project.shopapp.utils.HttpCacheUtils;
 import com.project.shopapp.utils.MessageKeys;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -22,6 +25,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -31,6 +35,7 @@ import java.util.List;
 public class CategoryController {
     private final CategoryService categoryService;
     private final LocalizationUtils localizationUtils;
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
 
     @PostMapping("")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
@@ -60,15 +65,25 @@ public class CategoryController {
 
     @GetMapping("")
     public ResponseEntity<ResponseObject> getAllCategories(
-            @RequestParam("page") int page,
-            @RequestParam("limit") int limit
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "0") int limit,
+            WebRequest webRequest
     ) {
-        List<Category> categories = categoryService.getAllCategories();
-        return ResponseEntity.ok(ResponseObject.builder()
-                .message("Get list of categories successfully")
-                .status(HttpStatus.OK)
-                .data(categories)
-                .build());
+        CategorySnapshot snapshot = categoryService.getCategorySnapshot();
+        // ETag theo version của snapshot: client gửi If-None-Match sẽ nhận 304 khi danh mục không đổi
+        String eTag = HttpCacheUtils.eTag(snapshot.getVersion(), page, limit);
+        if (HttpCacheUtils.checkNotModified(webRequest, eTag, null)) {
+            return HttpCacheUtils.notModified(HttpCacheUtils.PUBLIC_REVALIDATE);
+        }
+        List<CategoryResponse> categories = snapshot.page(page, limit);
+        return ResponseEntity.ok()
+                .cacheControl(HttpCacheUtils.PUBLIC_REVALIDATE)
+                .header(TOTAL_COUNT_HEADER, String.valueOf(snapshot.getTotalElements()))
+                .body(ResponseObject.builder()
+                        .message("Get list of categories successfully")
+                        .status(HttpStatus.OK)
+                        .data(categories)
+                        .build());
     }
 
     @GetMapping("/{id}")
@@ -1,26 +1,29 @@
 package com.project.shopapp.controller;
 
-import com.project.shopapp.model.Category;
-import com.project.shopapp.service.CategoryService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
+import javax.sql.DataSource;
+import java.sql.Connection;
 
 @RestController
 @RequestMapping("${api.prefix}/health-check")
 @RequiredArgsConstructor
 public class HealthCheckController {
-    private final CategoryService categoryService;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private final DataSource dataSource;
 
     @GetMapping("/health")
     public ResponseEntity<?> healthCheck() {
-        try {
-            List<Category> categories = categoryService.getAllCategories();
-            return ResponseEntity.ok("OK");
+        // Kiểm tra kết nối DB trực tiếp thay vì đọc danh mục (đã được cache trong bộ nhớ)
+        try (Connection connection = dataSource.getConnection()) {
+            if (connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                return ResponseEntity.ok("OK");
+            }
+            return ResponseEntity.badRequest().body("FAILED");
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("FAILED");
         }
@@ -3,13 +3,26 @@ package com.project.shopapp.controller;
 import com.project.shopapp.component.LocalizationUtils;
 import com.project.shopapp.component.SecurityUtils;
 import com.project.shopapp.dto.OrderDTO;
+import com.project.shopapp.exception.DataNotFoundException;
+import com.project.shopapp.exception.IdempotencyKeyMismatchException;
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.exception.OrderQueueFullException;
+import com.project.shopapp.exception.OutOfStockException;
+import com.project.shopapp.exception.RequestInProgressException;
 import com.project.shopapp.model.Order;
 import com.project.shopapp.model.User;
+import com.project.shopapp.repository.OrderListVersion;
+import com.project.shopapp.response.KeysetPage;
 import com.project.shopapp.response.OrderListResponse;
 import com.project.shopapp.response.OrderResponse;
 import com.project.shopapp.response.ResponseObject;
+import com.project.shopapp.service.IOrderIdempotencyService;
+import com.project.shopapp.service.IOrderIngestionService;
+import com.project.shopapp.service.OrderIdempotencyService;
 import com.project.shopapp.service.OrderService;
+import com.project.shopapp.utils.HttpCacheUtils;
 import com.project.shopapp.utils.MessageKeys;
+import com.project.shopapp.utils.PageCursor;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -26,25 +39,38 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("${api.prefix}/orders")
 @RequiredArgsConstructor
 public class OrderController {
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
     private final OrderService orderService;
+    private final IOrderIdempotencyService orderIdempotencyService;
+    private final IOrderIngestionService orderIngestionService;
     private final LocalizationUtils localizationUtils;
     private final SecurityUtils securityUtils;
 
+    /**
+     * Returns a {@code ResponseEntity}, or a {@code CompletableFuture<ResponseEntity>} when the order
+     * is queued for group commit, so only that mode goes through async dispatch.
+     */
     @PostMapping("")
     @PreAuthorize("hasRole('ROLE_ADMIN') or hasRole('ROLE_USER')")
-    public ResponseEntity<ResponseObject> createOrder(
+    public Object createOrder(
             @Valid @RequestBody OrderDTO orderDTO,
-            BindingResult result
+            BindingResult result,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey
     ) throws Exception {
         if (result.hasErrors()) {
             List<String> errorMessages = result.getFieldErrors()
@@ -61,20 +87,98 @@ public class OrderController {
         if (orderDTO.getUserId() == null) {
             orderDTO.setUserId(loginUser.getId());
         }
-        Order orderResponse = orderService.createOrder(orderDTO);
-        return ResponseEntity.ok(ResponseObject.builder()
-                .message("Insert order successfully")
-                .data(orderResponse)
-                .status(HttpStatus.OK)
+        if (idempotencyKey != null && (idempotencyKey.isBlank()
+                || idempotencyKey.length() > OrderIdempotencyService.MAX_KEY_LENGTH)) {
+            return ResponseEntity.badRequest().body(ResponseObject.builder()
+                    .message("Idempotency-Key must be 1 to " + OrderIdempotencyService.MAX_KEY_LENGTH + " characters")
+                    .status(HttpStatus.BAD_REQUEST)
+                    .build());
+        }
+        // Request có Idempotency-Key luôn đi đường đồng bộ để key được ghi cùng transaction với đơn
+        if (idempotencyKey == null && orderIngestionService.isEnabled()) {
+            return enqueueOrder(orderDTO);
+        }
+
+        Order orderResponse;
+        boolean replayed = false;
+        try {
+            if (idempotencyKey == null) {
+                orderResponse = orderService.createOrder(orderDTO);
+            } else {
+                IOrderIdempotencyService.Placement placement = orderIdempotencyService.createOrder(
+                        loginUser.getId(), idempotencyKey, orderDTO);
+                orderResponse = placement.order();
+                replayed = placement.replayed();
+            }
+        } catch (DataNotFoundException | InvalidParamException e) {
+            // Mọi sản phẩm không tồn tại được báo trong cùng một lỗi
+            return orderRejected(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (OutOfStockException e) {
+            return orderRejected(HttpStatus.CONFLICT, e.getMessage());
+        } catch (RequestInProgressException e) {
+            // Request đầu tiên với cùng key vẫn chưa xong: client thử lại sau
+            return orderRejected(HttpStatus.CONFLICT, e.getMessage());
+        } catch (IdempotencyKeyMismatchException e) {
+            // Cùng key nhưng nội dung khác: không trả lại đơn của request trước
+            return orderRejected(HttpStatus.UNPROCESSABLE_ENTITY, e.getMessage());
+        }
+        return orderCreated(orderResponse, replayed);
+    }
+
+    // Group commit: lỗi kiểm tra và hàng đợi đầy trả ngay, không qua dispatch async
+    private Object enqueueOrder(OrderDTO orderDTO) {
+        try {
+            return orderIngestionService.submit(orderDTO).handle((order, error) -> {
+                if (error == null) return orderCreated(order, false);
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                if (cause instanceof DataNotFoundException || cause instanceof InvalidParamException) {
+                    return orderRejected(HttpStatus.BAD_REQUEST, cause.getMessage());
+                }
+                if (cause instanceof OutOfStockException) {
+                    return orderRejected(HttpStatus.CONFLICT, cause.getMessage());
+                }
+                throw new CompletionException(cause);
+            });
+        } catch (InvalidParamException e) {
+            return orderRejected(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (OrderQueueFullException e) {
+            return orderRejected(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    private ResponseEntity<ResponseObject> orderCreated(Order order, boolean replayed) {
+        return ResponseEntity.ok()
+                .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(replayed))
+                .body(ResponseObject.builder()
+                        .message("Insert order successfully")
+                        .data(order)
+                        .status(HttpStatus.OK)
+                        .build());
+    }
+
+    private ResponseEntity<ResponseObject> orderRejected(HttpStatus status, String message) {
+        return ResponseEntity.status(status).body(ResponseObject.builder()
+                .message(message)
+                .status(status)
                 .build());
     }
 
     @GetMapping("/user/{user_id}")
-    public ResponseEntity<ResponseObject> getOrders(@Valid @PathVariable("user_id") Long userId) {
+    public ResponseEntity<ResponseObject> getOrders(@Valid @PathVariable("user_id") Long userId,
+                                                    WebRequest webRequest) {
         User loginUser = securityUtils.getLoggedInUser();
         boolean isUserIdBlank = userId == null || userId <= 0;
-        List<OrderResponse> orderResponses = orderService.findByUserId(isUserIdBlank ? loginUser.getId() : userId);
-        return ResponseEntity.ok(ResponseObject
+        Long ownerId = isUserIdBlank ? loginUser.getId() : userId;
+        // Version của danh sách: số đơn và updated_at lớn nhất, trả 304 trước khi load đơn và chi tiết
+        OrderListVersion version = orderService.getUserOrdersVersion(ownerId);
+        if (version.getLastModified() != null && HttpCacheUtils.checkNotModified(webRequest,
+                HttpCacheUtils.eTag("user-orders", ownerId, version.getCount(), version.getLastModified()),
+                version.getLastModified())) {
+            return HttpCacheUtils.notModified(HttpCacheUtils.PRIVATE_REVALIDATE);
+        }
+        List<OrderResponse> orderResponses = orderService.findByUserId(ownerId);
+        return ResponseEntity.ok().cacheControl(HttpCacheUtils.PRIVATE_REVALIDATE).body(ResponseObject
                 .builder()
                 .message("Get list of orders successfully")
                 .data(orderResponses)
@@ -83,10 +187,15 @@ public class OrderController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<ResponseObject> getOrder(@Valid @PathVariable("id") Long orderId) {
+    public ResponseEntity<ResponseObject> getOrder(@Valid @PathVariable("id") Long orderId, WebRequest webRequest) {
+        LocalDateTime lastModified = orderService.getOrderLastModified(orderId);
+        if (lastModified != null && HttpCacheUtils.checkNotModified(
+                webRequest, HttpCacheUtils.eTag("order", orderId, lastModified), lastModified)) {
+            return HttpCacheUtils.notModified(HttpCacheUtils.PRIVATE_REVALIDATE);
+        }
         Order existingOrder = orderService.getOrderById(orderId);
         OrderResponse orderResponse = OrderResponse.fromOrder(existingOrder);
-        return ResponseEntity.ok(new ResponseObject(
+        return ResponseEntity.ok().cacheControl(HttpCacheUtils.PRIVATE_REVALIDATE).body(new ResponseObject(
                 "Get order successfully",
                 HttpStatus.OK,
                 orderResponse
@@ -121,12 +230,46 @@ public class OrderController {
     public ResponseEntity<ResponseObject> getOrdersByKeyword(
             @RequestParam(defaultValue = "", required = false) String keyword,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "0") int limit) {
+            @RequestParam(defaultValue = "0") int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, name = "after_id") Long afterId,
+            WebRequest webRequest) throws Exception {
+        // Keyset mode: không dùng OFFSET và không chạy COUNT(*)
+        if (cursor != null || afterId != null) {
+            PageCursor pageCursor;
+            try {
+                pageCursor = cursor != null && !cursor.isBlank()
+                        ? PageCursor.decode(cursor)
+                        : afterId != null ? PageCursor.afterId(afterId) : null;
+            } catch (InvalidParamException e) {
+                return ResponseEntity.badRequest().body(ResponseObject.builder()
+                        .message(e.getMessage())
+                        .status(HttpStatus.BAD_REQUEST)
+                        .build());
+            }
+            KeysetPage<Order> orders = orderService
+                    .getOrdersByKeywordAfter(keyword, pageCursor, limit > 0 ? limit : 10);
+            if (isNotModified(webRequest, orders.getContent(), orders.getNextCursor())) {
+                return HttpCacheUtils.notModified(HttpCacheUtils.PRIVATE_REVALIDATE);
+            }
+            KeysetPage<OrderResponse> orderPage = orders.map(OrderResponse::fromOrder);
+            return ResponseEntity.ok().cacheControl(HttpCacheUtils.PRIVATE_REVALIDATE).body(ResponseObject.builder()
+                    .message("Get orders successfully")
+                    .status(HttpStatus.OK)
+                    .data(OrderListResponse.builder()
+                            .orders(orderPage.getContent())
+                            .nextCursor(orderPage.getNextCursor())
+                            .build())
+                    .build());
+        }
+
         PageRequest pageRequest = PageRequest.of(page, limit, Sort.by("id").ascending());
 
-        Page<OrderResponse> orderPage = orderService
-                .getOrdersByKeyword(keyword, pageRequest)
-                .map(OrderResponse::fromOrder);
+        Page<Order> orders = orderService.getOrdersByKeyword(keyword, pageRequest);
+        if (isNotModified(webRequest, orders.getContent(), orders.getTotalElements())) {
+            return HttpCacheUtils.notModified(HttpCacheUtils.PRIVATE_REVALIDATE);
+        }
+        Page<OrderResponse> orderPage = orders.map(OrderResponse::fromOrder);
 
         OrderListResponse response = OrderListResponse.builder()
                 .orders(orderPage.getContent())
@@ -134,10 +277,25 @@ public class OrderController {
                 .currentPage(page)
                 .build();
 
-        return ResponseEntity.ok().body(ResponseObject.builder()
+        return ResponseEntity.ok().cacheControl(HttpCacheUtils.PRIVATE_REVALIDATE).body(ResponseObject.builder()
                 .message("Get orders successfully")
                 .status(HttpStatus.OK)
                 .data(response)
                 .build());
     }
+
+    // Version của một trang: id các đơn và updated_at lớn nhất, kiểm tra trước khi load chi tiết đơn
+    private static boolean isNotModified(WebRequest webRequest, List<Order> orders, Object pageVersion) {
+        StringBuilder version = new StringBuilder();
+        LocalDateTime lastModified = null;
+        for (Order order : orders) {
+            version.append(order.getId()).append(',');
+            LocalDateTime updatedAt = order.getUpdatedAt();
+            if (updatedAt != null && (lastModified == null || updatedAt.isAfter(lastModified))) {
+                lastModified = updatedAt;
+            }
+        }
+        return HttpCacheUtils.checkNotModified(
+                webRequest, HttpCacheUtils.eTag("orders", version, lastModified, pageVersion), lastModified);
+    }
 }
@@ -1,29 +1,60 @@
 package com.project.shopapp.controller;
 
 import com.github.javafaker.Faker;
+import com.project.shopapp.component.LegacyImageDirectory;
 import com.project.shopapp.component.LocalizationUtils;
+import com.project.shopapp.component.ProductSearchIndex;
+import com.project.shopapp.component.ProductSuggestIndex;
+import com.project.shopapp.component.RelatedProductIndex;
 import com.project.shopapp.dto.ProductDTO;
-import com.project.shopapp.dto.ProductImageDTO;
+import com.project.shopapp.dto.ProductIdsDTO;
+import com.project.shopapp.exception.DataNotFoundException;
+import com.project.shopapp.exception.InvalidParamException;
 import com.project.shopapp.model.Product;
 import com.project.shopapp.model.ProductImage;
+import com.project.shopapp.model.ProductImageVariant;
+import com.project.shopapp.repository.ProductFilter;
+import com.project.shopapp.response.Bestseller;
+import com.project.shopapp.response.ProductBatchResponse;
+import com.project.shopapp.response.ProductDetailResponse;
+import com.project.shopapp.response.ProductImportReport;
 import com.project.shopapp.response.ProductListResponse;
-import com.project.shopapp.response.ProductResponse;
 import com.project.shopapp.response.ResponseObject;
+import com.project.shopapp.service.IImageStoreMaintenanceService;
+import com.project.shopapp.service.IProductExportService;
+import com.project.shopapp.service.IProductImageService;
+import com.project.shopapp.service.IProductImportService;
+import com.project.shopapp.service.IProductSalesService;
+import com.project.shopapp.service.IRelatedProductService;
+import com.project.shopapp.service.IStockService;
+import com.project.shopapp.service.IThumbnailReconcileService;
+import com.project.shopapp.service.ProductExportService;
+import com.project.shopapp.service.ProductImportService;
 import com.project.shopapp.service.ProductService;
+import com.project.shopapp.utils.HttpCacheUtils;
 import com.project.shopapp.utils.MessageKeys;
+import com.project.shopapp.utils.PageCursor;
+import com.project.shopapp.utils.ProductSort;
 import jakarta.validation.Valid;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.UrlResource;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -33,29 +64,65 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("${api.prefix}/products")
 @RequiredArgsConstructor
 public class ProductController {
     private static final Logger logger = LoggerFactory.getLogger(ProductController.class);
+    // Request attribute mà Tomcat dùng để gửi file bằng sendfile
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final CacheControl SUGGEST_CACHE = CacheControl.maxAge(60, TimeUnit.SECONDS).cachePublic();
+    // Danh sách liên quan chỉ đổi sau mỗi lần job chạy (mặc định 10 phút)
+    private static final CacheControl RELATED_CACHE = CacheControl.maxAge(10, TimeUnit.MINUTES).cachePublic();
+    private static final CacheControl BESTSELLERS_CACHE = CacheControl.maxAge(60, TimeUnit.SECONDS).cachePublic();
     private final ProductService productService;
     private final LocalizationUtils localizationUtils;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSuggestIndex productSuggestIndex;
+    private final IThumbnailReconcileService thumbnailReconcileService;
+    private final IProductImportService productImportService;
+    private final IProductExportService productExportService;
+    private final IProductImageService productImageService;
+    private final IImageStoreMaintenanceService imageStoreMaintenanceService;
+    private final IRelatedProductService relatedProductService;
+    private final IProductSalesService productSalesService;
+    private final IStockService stockService;
+
+    @Value("${product-import.max-body-size:100MB}")
+    private DataSize maxImportBodySize;
 
     @PostMapping(value = "")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
@@ -90,7 +157,6 @@ public class ProductController {
             @PathVariable("id") Long productId,
             @ModelAttribute("files") List<MultipartFile> files
     ) throws Exception {
-        Product existingProduct = productService.getProductById(productId);
         files = files == null ? new ArrayList<>() : files;
         if (files.size() > ProductImage.MAXIMUM_IMAGES_PER_PRODUCT) {
             return ResponseEntity.badRequest().body(
@@ -100,8 +166,12 @@ public class ProductController {
                             .build()
             );
         }
+        // Kiểm tra sản phẩm trước khi ghi file để không để lại blob mồ côi
+        if (!productService.existsProduct(productId)) {
+            return productNotFound(productId);
+        }
 
-        List<ProductImage> productImages = new ArrayList<>();
+        List<String> filenames = new ArrayList<>();
         for (MultipartFile file : files) {
             if (file.getSize() == 0) continue;
 
@@ -126,16 +196,35 @@ public class ProductController {
             }
 
             // Lưu file và cập nhật thumbnail trong DTO
-            String filename = storeFile(file);
-            // Lưu vào đối tượng product trong DB
-            ProductImage productImage = productService.createProductImage(
-                    existingProduct.getId(),
-                    ProductImageDTO.builder()
-                            .imageUrl(filename)
+            String filename;
+            try {
+                filename = productImageService.storeImage(file);
+            } catch (InvalidParamException e) {
+                return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+                        .body(ResponseObject.builder()
+                                .message(localizationUtils
+                                        .getLocalizedMessage(MessageKeys.UPLOAD_IMAGES_FILE_MUST_BE_IMAGE))
+                                .status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+                                .build());
+            }
+            filenames.add(filename);
+        }
+
+        // Ghi tất cả ảnh vào DB trong một transaction; file đã lưu nhưng bị từ chối sẽ được GC thu hồi
+        List<ProductImage> productImages;
+        try {
+            productImages = productService.createProductImages(productId, filenames);
+        } catch (DataNotFoundException e) {
+            // Sản phẩm bị xoá trong lúc upload: file đã ghi sẽ được GC thu hồi
+            return productNotFound(productId);
+        } catch (InvalidParamException e) {
+            return ResponseEntity.badRequest().body(
+                    ResponseObject.builder()
+                            .message(localizationUtils
+                                    .getLocalizedMessage(MessageKeys.UPLOAD_IMAGES_MAX_5))
+                            .status(HttpStatus.BAD_REQUEST)
                             .build()
             );
-
-            productImages.add(productImage);
         }
 
         return ResponseEntity.ok().body(ResponseObject.builder()
@@ -145,73 +234,196 @@ public class ProductController {
                 .build());
     }
 
-    @GetMapping("/images/{imageName}")
-    public ResponseEntity<?> viewImage(@PathVariable String imageName) {
-        try {
-            Path imagePath = Paths.get("uploads/" + imageName);
-            UrlResource resource = new UrlResource(imagePath.toUri());
-
-            if (resource.exists()) {
-                return ResponseEntity.ok()
-                        .contentType(MediaType.IMAGE_JPEG)
-                        .body(resource);
-            } else {
-                return ResponseEntity.ok()
-                        .contentType(MediaType.IMAGE_JPEG)
-                        .body(new UrlResource(Paths.get("uploads/notfound.png").toUri()));
+    /**
+     * Serves a stored image, or its resized variant when {@code size} is given (the original
+     * is returned while the variant is pending). Supports HEAD, conditional requests and a
+     * single byte range; small images come from memory, larger ones are sent with sendfile
+     * when the connector supports it and with FileChannel.transferTo otherwise.
+     */
+    @RequestMapping(value = "/images/{imageName}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void viewImage(
+            @PathVariable String imageName,
+            @RequestParam(required = false) String size,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        if (size != null && !ProductImageVariant.SIZES.contains(size)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unsupported image size: " + size);
+            return;
+        }
+        // Tên file là duy nhất cho mỗi lần upload nên nội dung dưới một URL không bao giờ đổi
+        CacheControl cacheControl = HttpCacheUtils.IMMUTABLE;
+        IProductImageService.StoredImage image = null;
+        if (size != null) {
+            String variantName = productImageService.findVariant(imageName, size);
+            image = variantName != null ? productImageService.getImage(variantName) : null;
+            if (image == null) {
+                // Variant chưa được tạo: trả về ảnh gốc, client phải hỏi lại để nhận variant sau này
+                cacheControl = HttpCacheUtils.PUBLIC_REVALIDATE;
             }
-        } catch (Exception e) {
-            return ResponseEntity.notFound().build();
         }
-    }
+        if (image == null) {
+            image = productImageService.getImage(imageName);
+        }
+        if (image == null) {
+            IProductImageService.StoredImage placeholder = productImageService.getImage(LegacyImageDirectory.PLACEHOLDER_IMAGE);
+            if (placeholder == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            // Ảnh placeholder trả về kèm 404 để CDN/trình duyệt không lưu nó thay cho ảnh thật
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, HttpCacheUtils.PUBLIC_REVALIDATE.getHeaderValue());
+            response.setContentType(placeholder.contentType());
+            writeImage(request, response, placeholder, 0, placeholder.size());
+            return;
+        }
 
-    private String storeFile(MultipartFile file) throws IOException {
-        if (!isImageFile(file) || file.getOriginalFilename() == null) {
-            throw new IOException("Invalid image file format");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified(image.eTag(), image.lastModified())) {
+            return;
         }
-        String filename = StringUtils.cleanPath(file.getOriginalFilename());
-        // Thêm UUID vào trước tên file để đảm bảo tên file là duy nhất
-        String uniqueFilename = UUID.randomUUID().toString() + "_" + filename;
-        // Đường dẫn đến thư mục muốn lưu file
-        Path uploadDir = Paths.get("uploads");
-        // Kiểm tra và tạo thư mục nếu nó không tồn tại
-        if (!Files.exists(uploadDir)) {
-            Files.createDirectories(uploadDir);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(image.contentType());
+
+        long length = image.size();
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !isIfRangeSatisfied(request, image)) {
+            writeImage(request, response, image, 0, length);
+            return;
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            ranges = List.of();
         }
+        // Header Range sai cú pháp hoặc nhiều đoạn: trả về toàn bộ file (RFC 9110 cho phép bỏ qua Range)
+        if (ranges.size() != 1) {
+            writeImage(request, response, image, 0, length);
+            return;
+        }
+        long start = ranges.get(0).getRangeStart(length);
+        long end = ranges.get(0).getRangeEnd(length);
+        if (start >= length || end < start) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            return;
+        }
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        writeImage(request, response, image, start, end - start + 1);
+    }
 
-        // Đường dẫn đầy đủ đến file
-        Path destination = Paths.get(uploadDir.toString(), uniqueFilename);
-        // Sao chép file vào thư mục đích
-        Files.copy(file.getInputStream(), destination, StandardCopyOption.REPLACE_EXISTING);
-        return uniqueFilename;
+    // If-Range: chỉ trả về một đoạn khi bản của client vẫn còn đúng, ngược lại trả về toàn bộ file
+    private static boolean isIfRangeSatisfied(HttpServletRequest request, IProductImageService.StoredImage image) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) return true;
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(image.eTag());
+        }
+        try {
+            return image.lastModified() / 1000 <= request.getDateHeader(HttpHeaders.IF_RANGE) / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
     }
 
-    private boolean isImageFile(MultipartFile file) {
-        String contentType = file.getContentType();
-        return contentType != null && contentType.startsWith("image/");
+    private void writeImage(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            IProductImageService.StoredImage image,
+            long start,
+            long length
+    ) throws IOException {
+        response.setContentLengthLong(length);
+        if (HttpMethod.HEAD.matches(request.getMethod()) || length == 0) return;
+
+        byte[] content = productImageService.getCachedContent(image);
+        if (content != null) {
+            response.getOutputStream().write(content, (int) start, (int) length);
+            return;
+        }
+        // Tomcat gửi file bằng sendfile sau khi controller trả về, dữ liệu không đi qua JVM heap
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, image.path().toString());
+            request.setAttribute(SENDFILE_START, image.offset() + start);
+            request.setAttribute(SENDFILE_END, image.offset() + start + length);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(image.path(), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            // Blob trong pack file bắt đầu tại image.offset()
+            long position = image.offset() + start;
+            long remaining = length;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) break;
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
     }
 
+    /**
+     * Product listing. {@code sort} is one of id, price (price_asc), price_desc, newest, name or
+     * relevance (default when a keyword is given); {@code min_price} / {@code max_price} filter
+     * the price range. Offset paging with {@code page}, or keyset paging with {@code cursor}.
+     */
     @GetMapping("")
     public ResponseEntity<ResponseObject> getProducts(
             @RequestParam(defaultValue = "") String keyword,
             @RequestParam(defaultValue = "0", name = "category_id") Long categoryId,
+            @RequestParam(required = false, name = "min_price") Float minPrice,
+            @RequestParam(required = false, name = "max_price") Float maxPrice,
+            @RequestParam(required = false) String sort,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int limit
-    ) {
-        PageRequest pageRequest = PageRequest.of(page, limit, Sort.by("id").ascending());
-        logger.info("keyword = {}, category_id = {}, page = {}, limit = {}", keyword, categoryId, page, limit);
-        Page<ProductResponse> productPage = productService.getAllProducts(keyword, categoryId, pageRequest);
-
-        int totalPages = productPage.getTotalPages();
-        List<ProductResponse> products = productPage.getContent();
-
-        ProductListResponse productListResponse = ProductListResponse
-                .builder()
-                .products(products)
-                .totalPages(totalPages)
-                .build();
-
-        return ResponseEntity.ok().body(ResponseObject.builder()
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, name = "after_id") Long afterId,
+            @RequestParam(defaultValue = "") String include,
+            WebRequest webRequest
+    ) throws Exception {
+        // include=description,images,facets: mặc định trang danh sách không trả về các trường này
+        Set<String> includes = Arrays.stream(include.split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .collect(Collectors.toSet());
+        // ETag theo version của trang (id, updatedAt lớn nhất, tổng số): kiểm tra trước khi load ảnh
+        BiPredicate<String, LocalDateTime> notModified = (version, lastModified) ->
+                HttpCacheUtils.checkNotModified(webRequest, HttpCacheUtils.eTag(version), lastModified);
+        ProductListResponse productListResponse;
+        try {
+            if ((minPrice != null && minPrice < 0) || (minPrice != null && maxPrice != null && minPrice > maxPrice)) {
+                throw new InvalidParamException("Invalid price range");
+            }
+            ProductFilter filter = new ProductFilter(keyword, categoryId, minPrice, maxPrice);
+            ProductSort productSort = sort != null && !sort.isBlank()
+                    ? ProductSort.fromKey(sort)
+                    : filter.hasKeyword() ? ProductSort.RELEVANCE : ProductSort.ID;
+            // Keyset mode: không dùng OFFSET và không chạy COUNT(*)
+            if (cursor != null || afterId != null) {
+                PageCursor pageCursor = cursor != null && !cursor.isBlank()
+                        ? PageCursor.decode(cursor)
+                        : afterId != null ? PageCursor.afterId(afterId) : null;
+                productListResponse = productService.getProductsAfter(
+                        filter, productSort, pageCursor, Math.max(1, limit), includes, notModified);
+            } else {
+                logger.info("keyword = {}, category_id = {}, sort = {}, page = {}, limit = {}",
+                        keyword, categoryId, productSort.getKey(), page, limit);
+                productListResponse = productService.getAllProducts(
+                        filter, productSort, PageRequest.of(page, limit), includes, notModified);
+            }
+        } catch (InvalidParamException e) {
+            return ResponseEntity.badRequest().body(ResponseObject.builder()
+                    .message(e.getMessage())
+                    .status(HttpStatus.BAD_REQUEST)
+                    .build());
+        }
+        if (productListResponse == null) {
+            return HttpCacheUtils.notModified(HttpCacheUtils.PUBLIC_REVALIDATE);
+        }
+        return ResponseEntity.ok().cacheControl(HttpCacheUtils.PUBLIC_REVALIDATE).body(ResponseObject.builder()
                 .message("Get products successfully")
                 .status(HttpStatus.OK)
                 .data(productListResponse)
@@ -219,27 +431,185 @@ public class ProductController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> getProductById(@PathVariable("id") Long productId) throws Exception {
-        Product existingProduct = productService.getProductById(productId);
-        return ResponseEntity.ok(ResponseObject.builder()
-                .data(ProductResponse.fromProduct(existingProduct))
+    public ResponseEntity<?> getProductById(@PathVariable("id") Long productId, WebRequest webRequest)
+            throws Exception {
+        // Lấy updatedAt từ cache hoặc một câu truy vấn nhẹ, trả 304 trước khi load ảnh / serialize
+        LocalDateTime lastModified = productService.getProductLastModified(productId);
+        if (lastModified != null && HttpCacheUtils.checkNotModified(
+                webRequest, HttpCacheUtils.eTag("product", productId, lastModified), lastModified)) {
+            return HttpCacheUtils.notModified(HttpCacheUtils.PUBLIC_REVALIDATE);
+        }
+        ProductDetailResponse productDetail = productService.getProductDetail(productId);
+        return ResponseEntity.ok().cacheControl(HttpCacheUtils.PUBLIC_REVALIDATE).body(ResponseObject.builder()
+                .data(productDetail)
                 .message("Get detail product successfully")
                 .status(HttpStatus.OK)
                 .build());
     }
 
-    @GetMapping("/by-ids")
-    public ResponseEntity<?> getProductsByIds(@RequestParam("ids") String ids) {
-        List<Long> productIds = Arrays.stream(ids.split(","))
-                .map(Long::parseLong)
-                .collect(Collectors.toList());
-        List<Product> products = productService.findProductsByIds(productIds);
-        return ResponseEntity.ok(ResponseObject.builder()
-                .data(products.stream().map(ProductResponse::fromProduct).toList())
-                .message("Get products successfully")
+    /**
+     * Typeahead: most popular products with a name word starting with {@code prefix},
+     * answered from the in-memory suggest index without touching the database.
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<ResponseObject> suggestProducts(
+            @RequestParam(defaultValue = "") String prefix,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        List<ProductSuggestIndex.Suggestion> suggestions = productSuggestIndex.suggest(prefix, limit);
+        if (suggestions == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ResponseObject.builder()
+                    .message("Product suggestions are not ready yet")
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .build());
+        }
+        // Cho phép browser/CDN cache ngắn hạn vì mỗi phím gõ là một request
+        return ResponseEntity.ok().cacheControl(SUGGEST_CACHE).body(ResponseObject.builder()
+                .message("Get product suggestions successfully")
+                .status(HttpStatus.OK)
+                .data(suggestions)
+                .build());
+    }
+
+    /**
+     * Products most often bought in the same order as the given one, best first. Served from
+     * the in-memory related product index; details are fetched with {@code /by-ids}.
+     */
+    @GetMapping("/{id}/related")
+    public ResponseEntity<ResponseObject> getRelatedProducts(
+            @PathVariable("id") Long productId,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        List<RelatedProductIndex.Related> related = relatedProductService.getRelatedProducts(productId, limit);
+        if (related == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ResponseObject.builder()
+                    .message("Related products are not ready yet")
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .build());
+        }
+        return ResponseEntity.ok().cacheControl(RELATED_CACHE).body(ResponseObject.builder()
+                .message("Get related products successfully")
+                .status(HttpStatus.OK)
+                .data(related)
+                .build());
+    }
+
+    /**
+     * Units of a product currently available to order, from the in-memory stock ledger;
+     * null when the product does not track stock.
+     */
+    @GetMapping("/{id}/stock")
+    public ResponseEntity<ResponseObject> getStock(@PathVariable("id") Long productId) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("product_id", productId);
+        data.put("available", stockService.getAvailable(productId));
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(ResponseObject.builder()
+                .message("Get product stock successfully")
+                .status(HttpStatus.OK)
+                .data(data)
+                .build());
+    }
+
+    @PutMapping("/{id}/stock")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> setStock(
+            @PathVariable("id") Long productId,
+            @RequestParam int quantity
+    ) {
+        try {
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("product_id", productId);
+            data.put("available", stockService.setStock(productId, quantity));
+            return ResponseEntity.ok(ResponseObject.builder()
+                    .message("Update product stock successfully")
+                    .status(HttpStatus.OK)
+                    .data(data)
+                    .build());
+        } catch (DataNotFoundException | InvalidParamException e) {
+            return ResponseEntity.badRequest().body(ResponseObject.builder()
+                    .message(e.getMessage())
+                    .status(HttpStatus.BAD_REQUEST)
+                    .build());
+        }
+    }
+
+    /**
+     * Products with the most units sold in the last {@code days} days, read from the daily
+     * sales materialization; category_id 0 ranks all products.
+     */
+    @GetMapping("/bestsellers")
+    public ResponseEntity<ResponseObject> getBestsellers(
+            @RequestParam(defaultValue = "0", name = "category_id") Long categoryId,
+            @RequestParam(defaultValue = "30") int days,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        List<Bestseller> bestsellers;
+        try {
+            bestsellers = productSalesService.getBestsellers(categoryId, days, limit);
+        } catch (InvalidParamException e) {
+            return ResponseEntity.badRequest().body(ResponseObject.builder()
+                    .message(e.getMessage())
+                    .status(HttpStatus.BAD_REQUEST)
+                    .build());
+        }
+        return ResponseEntity.ok().cacheControl(BESTSELLERS_CACHE).body(ResponseObject.builder()
+                .message("Get bestsellers successfully")
                 .status(HttpStatus.OK)
-                .build()
-        );
+                .data(bestsellers)
+                .build());
+    }
+
+    @GetMapping("/by-ids")
+    public ResponseEntity<ResponseObject> getProductsByIds(@RequestParam("ids") String ids) {
+        List<Long> productIds;
+        try {
+            productIds = Arrays.stream(ids.split(","))
+                    .map(String::trim)
+                    .filter(id -> !id.isEmpty())
+                    .map(Long::parseLong)
+                    .toList();
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body(ResponseObject.builder()
+                    .message("Invalid product ids: " + ids)
+                    .status(HttpStatus.BAD_REQUEST)
+                    .build());
+        }
+        return findProductsByIds(productIds);
+    }
+
+    // Giỏ hàng lớn: gửi danh sách id trong body thay vì query string
+    @PostMapping("/by-ids")
+    public ResponseEntity<ResponseObject> getProductsByIds(
+            @Valid @RequestBody ProductIdsDTO productIdsDTO,
+            BindingResult result
+    ) {
+        if (result.hasErrors()) {
+            List<String> errorMessages = result.getFieldErrors()
+                    .stream()
+                    .map(FieldError::getDefaultMessage)
+                    .toList();
+            return ResponseEntity.badRequest().body(ResponseObject.builder()
+                    .message(String.join("; ", errorMessages))
+                    .status(HttpStatus.BAD_REQUEST)
+                    .build());
+        }
+        return findProductsByIds(productIdsDTO.getIds());
+    }
+
+    private ResponseEntity<ResponseObject> findProductsByIds(List<Long> productIds) {
+        try {
+            ProductBatchResponse productBatch = productService.getProductsByIds(productIds);
+            return ResponseEntity.ok(ResponseObject.builder()
+                    .data(productBatch)
+                    .message("Get products successfully")
+                    .status(HttpStatus.OK)
+                    .build());
+        } catch (InvalidParamException e) {
+            return ResponseEntity.badRequest().body(ResponseObject.builder()
+                    .message(e.getMessage())
+                    .status(HttpStatus.BAD_REQUEST)
+                    .build());
+        }
     }
 
     @PutMapping("/{id}")
@@ -264,6 +634,308 @@ public class ProductController {
                 .build());
     }
 
+    // Import CSV (có header: name,price,thumbnail,description,category_id) hoặc NDJSON.
+    // Upload multipart bị giới hạn bởi spring.servlet.multipart (10MB), file lớn hơn gửi qua importProductsBody
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> importProducts(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(required = false) String format
+    ) throws Exception {
+        String importFormat = format != null && !format.isBlank()
+                ? format.trim().toLowerCase()
+                : resolveImportFormat(file);
+        return importProducts(file.getInputStream(), importFormat);
+    }
+
+    /**
+     * Import with the file as the raw request body ({@code text/csv} or {@code application/x-ndjson}).
+     * The body is read as a stream instead of being buffered as a multipart part, up to
+     * {@code product-import.max-body-size}.
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> importProductsBody(HttpServletRequest request) throws Exception {
+        long contentLength = request.getContentLengthLong();
+        if (contentLength < 0) {
+            return ResponseEntity.status(HttpStatus.LENGTH_REQUIRED).body(ResponseObject.builder()
+                    .message("Content-Length is required")
+                    .status(HttpStatus.LENGTH_REQUIRED)
+                    .build());
+        }
+        if (contentLength > maxImportBodySize.toBytes()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(ResponseObject.builder()
+                    .message("Import file cannot be larger than " + maxImportBodySize.toMegabytes() + "MB")
+                    .status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .build());
+        }
+        String importFormat = request.getContentType().contains("ndjson")
+                ? ProductImportService.FORMAT_NDJSON
+                : ProductImportService.FORMAT_CSV;
+        return importProducts(request.getInputStream(), importFormat);
+    }
+
+    private ResponseEntity<ResponseObject> importProducts(InputStream inputStream, String importFormat)
+            throws IOException {
+        ProductImportReport report;
+        try {
+            report = productImportService.importProducts(inputStream, importFormat);
+        } catch (InvalidParamException e) {
+            return ResponseEntity.badRequest().body(ResponseObject.builder()
+                    .message(e.getMessage())
+                    .status(HttpStatus.BAD_REQUEST)
+                    .build());
+        }
+        return ResponseEntity.ok(ResponseObject.builder()
+                .message("Import products successfully")
+                .status(HttpStatus.OK)
+                .data(report)
+                .build());
+    }
+
+    @GetMapping("/import/{importId}/errors")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<?> downloadImportErrors(@PathVariable String importId) throws Exception {
+        Path report = productImportService.getErrorReport(importId);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"import-" + importId + "-errors.csv\"")
+                .body(new UrlResource(report.toUri()));
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<?> exportProducts(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        String exportFormat = format.trim().toLowerCase();
+        try {
+            productExportService.validateFormat(exportFormat);
+        } catch (InvalidParamException e) {
+            return ResponseEntity.badRequest().body(ResponseObject.builder()
+                    .message(e.getMessage())
+                    .status(HttpStatus.BAD_REQUEST)
+                    .build());
+        }
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        StreamingResponseBody body = outputStream -> {
+            if (gzip) {
+                try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, 64 * 1024)) {
+                    productExportService.exportProducts(gzipOutputStream, exportFormat);
+                }
+            } else {
+                productExportService.exportProducts(outputStream, exportFormat);
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(ProductExportService.FORMAT_CSV.equals(exportFormat)
+                        ? MediaType.parseMediaType("text/csv")
+                        : MediaType.parseMediaType("application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"products." + exportFormat + "\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    private ResponseEntity<ResponseObject> productNotFound(Long productId) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ResponseObject.builder()
+                .message("Cannot find product with id: " + productId)
+                .status(HttpStatus.NOT_FOUND)
+                .build());
+    }
+
+    private String resolveImportFormat(MultipartFile file) {
+        String filename = StringUtils.cleanPath(Objects.requireNonNullElse(file.getOriginalFilename(), ""))
+                .toLowerCase();
+        if (filename.endsWith(".ndjson") || filename.endsWith(".jsonl") || filename.endsWith(".json")) {
+            return ProductImportService.FORMAT_NDJSON;
+        }
+        String contentType = file.getContentType();
+        if (contentType != null && contentType.contains("ndjson")) {
+            return ProductImportService.FORMAT_NDJSON;
+        }
+        return ProductImportService.FORMAT_CSV;
+    }
+
+    @PostMapping("/search-index/rebuild")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> rebuildSearchIndex() {
+        boolean started = productSearchIndex.rebuildAsync();
+        return ResponseEntity.accepted().body(ResponseObject.builder()
+                .message(started ? "Search index rebuild started" : "Search index rebuild is already running")
+                .status(HttpStatus.ACCEPTED)
+                .data(productSearchIndex.getStats())
+                .build());
+    }
+
+    @GetMapping("/search-index")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> getSearchIndexStats() {
+        return ResponseEntity.ok(ResponseObject.builder()
+                .message("Get search index stats successfully")
+                .status(HttpStatus.OK)
+                .data(productSearchIndex.getStats())
+                .build());
+    }
+
+    @GetMapping("/suggest-index")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> getSuggestIndexStats() {
+        return ResponseEntity.ok(ResponseObject.builder()
+                .message("Get suggest index stats successfully")
+                .status(HttpStatus.OK)
+                .data(productSuggestIndex.getStats())
+                .build());
+    }
+
+    @PostMapping("/related/refresh")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> refreshRelatedProducts() {
+        boolean started = relatedProductService.startAsync();
+        return ResponseEntity.accepted().body(ResponseObject.builder()
+                .message(started ? "Related products refresh started" : "Related products refresh is already running")
+                .status(HttpStatus.ACCEPTED)
+                .data(relatedProductService.getLastReport())
+                .build());
+    }
+
+    @PostMapping("/related/stop")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> stopRelatedProductsRefresh() {
+        relatedProductService.stop();
+        return ResponseEntity.ok(ResponseObject.builder()
+                .message("Related products refresh will stop after the current batch")
+                .status(HttpStatus.OK)
+                .data(relatedProductService.getLastReport())
+                .build());
+    }
+
+    @GetMapping("/related/report")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> getRelatedProductsReport() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("report", relatedProductService.getLastReport());
+        data.put("index", relatedProductService.getIndexStats());
+        return ResponseEntity.ok(ResponseObject.builder()
+                .message("Get related products report successfully")
+                .status(HttpStatus.OK)
+                .data(data)
+                .build());
+    }
+
+    @PostMapping("/bestsellers/reconcile")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> reconcileSales() {
+        boolean started = productSalesService.startReconcile();
+        return ResponseEntity.accepted().body(ResponseObject.builder()
+                .message(started ? "Sales reconciliation started" : "Sales reconciliation is already running")
+                .status(HttpStatus.ACCEPTED)
+                .data(productSalesService.getLastReport())
+                .build());
+    }
+
+    @PostMapping("/bestsellers/reconcile/stop")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> stopSalesReconciliation() {
+        productSalesService.stop();
+        return ResponseEntity.ok(ResponseObject.builder()
+                .message("Sales reconciliation will stop after the current batch")
+                .status(HttpStatus.OK)
+                .data(productSalesService.getLastReport())
+                .build());
+    }
+
+    @GetMapping("/bestsellers/reconcile")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> getSalesReconcileReport() {
+        return ResponseEntity.ok(ResponseObject.builder()
+                .message("Get sales reconciliation report successfully")
+                .status(HttpStatus.OK)
+                .data(productSalesService.getLastReport())
+                .build());
+    }
+
+    @PostMapping("/thumbnails/reconcile")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> reconcileThumbnails(
+            @RequestParam(required = false, name = "from_id") Long fromId
+    ) {
+        boolean started = thumbnailReconcileService.startAsync(fromId);
+        return ResponseEntity.accepted().body(ResponseObject.builder()
+                .message(started ? "Thumbnail reconciliation started" : "Thumbnail reconciliation is already running")
+                .status(HttpStatus.ACCEPTED)
+                .data(thumbnailReconcileService.getLastReport())
+                .build());
+    }
+
+    @PostMapping("/thumbnails/reconcile/stop")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> stopThumbnailReconciliation() {
+        thumbnailReconcileService.stop();
+        return ResponseEntity.ok(ResponseObject.builder()
+                .message("Thumbnail reconciliation will stop after the current batch")
+                .status(HttpStatus.OK)
+                .data(thumbnailReconcileService.getLastReport())
+                .build());
+    }
+
+    @GetMapping("/thumbnails/reconcile")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> getThumbnailReconcileReport() {
+        return ResponseEntity.ok(ResponseObject.builder()
+                .message("Get thumbnail reconciliation report successfully")
+                .status(HttpStatus.OK)
+                .data(thumbnailReconcileService.getLastReport())
+                .build());
+    }
+
+    @PostMapping("/image-store/gc")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> collectImageGarbage() {
+        boolean started = imageStoreMaintenanceService.startGarbageCollection();
+        return ResponseEntity.accepted().body(ResponseObject.builder()
+                .message(started ? "Image garbage collection started" : "Image store maintenance is already running")
+                .status(HttpStatus.ACCEPTED)
+                .data(imageStoreMaintenanceService.getLastReport())
+                .build());
+    }
+
+    @PostMapping("/image-store/migrate")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> migrateLegacyImages() {
+        boolean started = imageStoreMaintenanceService.startMigration();
+        return ResponseEntity.accepted().body(ResponseObject.builder()
+                .message(started ? "Image migration started" : "Image store maintenance is already running")
+                .status(HttpStatus.ACCEPTED)
+                .data(imageStoreMaintenanceService.getLastReport())
+                .build());
+    }
+
+    @PostMapping("/image-store/stop")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> stopImageStoreMaintenance() {
+        imageStoreMaintenanceService.stop();
+        return ResponseEntity.ok(ResponseObject.builder()
+                .message("Image store maintenance will stop after the current file")
+                .status(HttpStatus.OK)
+                .data(imageStoreMaintenanceService.getLastReport())
+                .build());
+    }
+
+    @GetMapping("/image-store/report")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ResponseObject> getImageStoreReport() {
+        return ResponseEntity.ok(ResponseObject.builder()
+                .message("Get image store report successfully")
+                .status(HttpStatus.OK)
+                .data(imageStoreMaintenanceService.getLastReport())
+                .build());
+    }
+
     //    @PostMapping("/generateFakeProducts")
     public ResponseEntity<String> generateFakeProducts() {
         Faker faker = new Faker();
@@ -0,0 +1,20 @@
+package com.project.shopapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductIdsDTO {
+    @NotEmpty(message = "Product ids cannot be empty")
+    @JsonProperty("ids")
+    private List<Long> ids;
+}
@@ -0,0 +1,31 @@
+package com.project.shopapp.event;
+
+import com.project.shopapp.model.Product;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ProductChangedEvent {
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    private final Long productId;
+    private final Product product;
+    private final Type type;
+
+    public static ProductChangedEvent created(Product product) {
+        return new ProductChangedEvent(product.getId(), product, Type.CREATED);
+    }
+
+    public static ProductChangedEvent updated(Product product) {
+        return new ProductChangedEvent(product.getId(), product, Type.UPDATED);
+    }
+
+    public static ProductChangedEvent deleted(Product product) {
+        return new ProductChangedEvent(product.getId(), product, Type.DELETED);
+    }
+
+    public boolean isDeleted() {
+        return type == Type.DELETED;
+    }
+}
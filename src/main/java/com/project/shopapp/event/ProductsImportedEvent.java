@@ -0,0 +1,12 @@
+package com.project.shopapp.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Phát ra sau khi import hàng loạt: mọi sản phẩm mới đều có id > afterId
+@Getter
+@AllArgsConstructor
+public class ProductsImportedEvent {
+    private final long afterId;
+    private final int importedCount;
+}
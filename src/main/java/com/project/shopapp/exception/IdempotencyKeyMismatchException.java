@@ -0,0 +1,7 @@
+package com.project.shopapp.exception;
+
+public class IdempotencyKeyMismatchException extends Exception {
+    public IdempotencyKeyMismatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.project.shopapp.exception;
+
+public class OrderQueueFullException extends Exception {
+    public OrderQueueFullException(String message) {
+        super(message);
+    }
+}
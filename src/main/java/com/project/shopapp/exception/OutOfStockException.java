@@ -0,0 +1,7 @@
+package com.project.shopapp.exception;
+
+public class OutOfStockException extends Exception {
+    public OutOfStockException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.project.shopapp.exception;
+
+public class RequestInProgressException extends Exception {
+    public RequestInProgressException(String message) {
+        super(message);
+    }
+}
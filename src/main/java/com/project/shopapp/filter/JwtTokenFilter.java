@@ -75,6 +75,12 @@ public class JwtTokenFilter extends OncePerRequestFilter {
         final List<Pair<String, String>> bypassTokens = Arrays.asList(
                 Pair.of(String.format("%s/roles", apiPrefix), "GET"),
                 Pair.of(String.format("%s/products", apiPrefix), "GET"),
+                Pair.of(String.format("%s/products/suggest", apiPrefix), "GET"),
+                Pair.of(String.format("%s/products/[0-9]+/related", apiPrefix), "GET"),
+                Pair.of(String.format("%s/products/[0-9]+/stock", apiPrefix), "GET"),
+                Pair.of(String.format("%s/products/bestsellers", apiPrefix), "GET"),
+                Pair.of(String.format("%s/products/images/**", apiPrefix), "GET"),
+                Pair.of(String.format("%s/products/images/**", apiPrefix), "HEAD"),
                 Pair.of(String.format("%s/orders", apiPrefix), "GET"),
                 Pair.of(String.format("%s/categories", apiPrefix), "GET"),
                 Pair.of(String.format("%s/users/register", apiPrefix), "POST"),
@@ -0,0 +1,37 @@
+package com.project.shopapp.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Order created for an Idempotency-Key header. The key is stored prefixed with the id of the
+ * authenticated caller, so two users sending the same key do not see each other's orders.
+ */
+@Entity
+@Table(name = "idempotency_keys",
+        indexes = @Index(name = "idx_idempotency_keys_expires_at", columnList = "expires_at"))
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class IdempotencyKey {
+    @Id
+    @Column(name = "idempotency_key", length = 150)
+    private String key;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    // SHA-256 của nội dung request; null với key ghi trước khi có cột này
+    @Column(name = "request_hash", length = 64)
+    private String requestHash;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -1,12 +1,21 @@
 package com.project.shopapp.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 
 import java.util.List;
 
 @Entity
-@Table(name = "products")
+// Mỗi kiểu sắp xếp của trang danh sách có một index (khoá sắp xếp, id), có và không lọc theo danh mục
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_category_price", columnList = "category_id, price, id"),
+        @Index(name = "idx_products_price", columnList = "price, id"),
+        @Index(name = "idx_products_category_created", columnList = "category_id, created_at, id"),
+        @Index(name = "idx_products_created", columnList = "created_at, id"),
+        @Index(name = "idx_products_category_name", columnList = "category_id, name, id"),
+        @Index(name = "idx_products_name", columnList = "name, id")
+})
 @Getter
 @Setter
 @AllArgsConstructor
@@ -30,6 +39,11 @@ public class Product extends BaseEntity {
     @Column(name = "description")
     private String description;
 
+    // Tồn kho do StockService quản lý (null: không theo dõi tồn kho); JPA không được ghi đè
+    @JsonIgnore
+    @Column(name = "quantity", insertable = false, updatable = false)
+    private Integer quantity;
+
     @ManyToOne
     @JoinColumn(name = "category_id")
     private Category category;
@@ -0,0 +1,40 @@
+package com.project.shopapp.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * Number of orders containing both products. Every pair is stored in both directions so the
+ * neighbours of a product are read with the (product_id, order_count) index.
+ */
+@Entity
+@Table(name = "product_co_purchases",
+        indexes = @Index(name = "idx_co_purchase_product_count", columnList = "product_id, order_count"))
+@IdClass(ProductCoPurchase.Key.class)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductCoPurchase {
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Id
+    @Column(name = "related_product_id")
+    private Long relatedProductId;
+
+    @Column(name = "order_count", nullable = false)
+    private Long orderCount;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+        private Long productId;
+        private Long relatedProductId;
+    }
+}
@@ -0,0 +1,55 @@
+package com.project.shopapp.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A resized rendition of a stored image. Variants are keyed by the original's blob name,
+ * so products sharing the same image content also share its variants.
+ */
+@Entity
+@Table(name = "product_image_variants",
+        uniqueConstraints = @UniqueConstraint(name = "uk_variant_source_size", columnNames = {"source_url", "size"}),
+        indexes = @Index(name = "idx_variant_image_url", columnList = "image_url"))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductImageVariant {
+    public static final String THUMBNAIL = "thumbnail";
+    public static final String LIST = "list";
+    public static final String DETAIL = "detail";
+
+    public static final List<String> SIZES = List.of(THUMBNAIL, LIST, DETAIL);
+
+    // Cạnh dài nhất (px) của từng kích thước
+    public static final Map<String, Integer> MAX_DIMENSIONS = Map.of(
+            THUMBNAIL, 200,
+            LIST, 480,
+            DETAIL, 1080
+    );
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "source_url", length = 300, nullable = false)
+    private String sourceUrl;
+
+    @Column(name = "size", length = 20, nullable = false)
+    private String size;
+
+    // Bằng source_url khi ảnh gốc đã nhỏ hơn kích thước này
+    @Column(name = "image_url", length = 300, nullable = false)
+    private String imageUrl;
+
+    private Integer width;
+
+    private Integer height;
+}
@@ -0,0 +1,47 @@
+package com.project.shopapp.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Units of a product sold on one day, cancelled orders excluded. Kept up to date by the order
+ * service in the same transaction as the order; category_id is copied from the product so the
+ * bestseller ranking of a category reads only this table.
+ */
+@Entity
+@Table(name = "product_sales_daily", indexes = {
+        @Index(name = "idx_sales_category_date", columnList = "category_id, sale_date, product_id, quantity"),
+        @Index(name = "idx_sales_date", columnList = "sale_date, product_id, quantity")
+})
+@IdClass(ProductSalesDaily.Key.class)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductSalesDaily {
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Id
+    @Column(name = "sale_date")
+    private LocalDate saleDate;
+
+    @Column(name = "category_id")
+    private Long categoryId;
+
+    @Column(name = "quantity", nullable = false)
+    private Long quantity;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+        private Long productId;
+        private LocalDate saleDate;
+    }
+}
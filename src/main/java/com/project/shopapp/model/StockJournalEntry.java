@@ -0,0 +1,36 @@
+package com.project.shopapp.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A stock change of a tracked product that is not yet applied to products.quantity. Rows are
+ * written by StockService in the same transaction as the order that reserves or releases the
+ * stock, and deleted by the flush that adds them to products.quantity, so committed stock is
+ * always {@code quantity + SUM(delta)}.
+ */
+@Entity
+@Table(name = "stock_journal",
+        indexes = @Index(name = "idx_stock_journal_product", columnList = "product_id"))
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class StockJournalEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    // Âm khi giữ hàng, dương khi trả lại
+    @Column(name = "delta", nullable = false)
+    private Integer delta;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
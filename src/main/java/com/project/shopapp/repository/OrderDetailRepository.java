@@ -2,11 +2,22 @@ package com.project.shopapp.repository;
 
 import com.project.shopapp.model.OrderDetail;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OrderDetailRepository extends JpaRepository<OrderDetail,Long> {
     List<OrderDetail> findByOrderId(Long orderId);
+
+    @Query("SELECT od.product.id AS productId, SUM(od.numberOfProducts) AS quantity " +
+            "FROM OrderDetail od GROUP BY od.product.id")
+    List<ProductQuantity> sumQuantityByProduct();
+
+    @Query("SELECT od.order.id AS orderId, od.product.id AS productId " +
+            "FROM OrderDetail od WHERE od.order.id IN :orderIds")
+    List<OrderLineView> findLinesByOrderIds(@Param("orderIds") Collection<Long> orderIds);
 }
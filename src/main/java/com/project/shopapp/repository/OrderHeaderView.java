@@ -0,0 +1,9 @@
+package com.project.shopapp.repository;
+
+import java.util.Date;
+
+public interface OrderHeaderView {
+    Long getId();
+    Date getOrderDate();
+    String getStatus();
+}
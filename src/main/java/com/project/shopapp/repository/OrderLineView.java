@@ -0,0 +1,6 @@
+package com.project.shopapp.repository;
+
+public interface OrderLineView {
+    Long getOrderId();
+    Long getProductId();
+}
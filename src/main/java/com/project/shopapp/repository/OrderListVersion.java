@@ -0,0 +1,8 @@
+package com.project.shopapp.repository;
+
+import java.time.LocalDateTime;
+
+public interface OrderListVersion {
+    long getCount();
+    LocalDateTime getLastModified();
+}
@@ -3,20 +3,50 @@ package com.project.shopapp.repository;
 import com.project.shopapp.model.Order;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order,Long> {
     List<Order> findByUserId(Long userId);
 
+    @Query("SELECT o.updatedAt FROM Order o WHERE o.id = :id")
+    Optional<LocalDateTime> findUpdatedAtById(@Param("id") Long id);
+
+    @Query("SELECT COUNT(o) AS count, MAX(o.updatedAt) AS lastModified FROM Order o WHERE o.user.id = :userId")
+    OrderListVersion findVersionByUserId(@Param("userId") Long userId);
+
+    // Chi tiết đơn thay đổi thì version (updated_at) của đơn cũng phải đổi
+    @Modifying
+    @Query("UPDATE Order o SET o.updatedAt = :updatedAt WHERE o.id = :id")
+    int touch(@Param("id") Long id, @Param("updatedAt") LocalDateTime updatedAt);
+
     @Query("SELECT o FROM Order o WHERE o.active = true AND (:keyword IS NULL " +
             "OR :keyword = '' " +
             "OR o.fullName LIKE %:keyword% OR o.address LIKE %:keyword% " +
             "OR o.note LIKE %:keyword% " +
             "OR o.email LIKE %:keyword%)")
     Page<Order> findByKeyword(String keyword, Pageable pageable);
+
+    @Query("SELECT o FROM Order o WHERE o.active = true AND o.id > :afterId AND (:keyword IS NULL " +
+            "OR :keyword = '' " +
+            "OR o.fullName LIKE %:keyword% OR o.address LIKE %:keyword% " +
+            "OR o.note LIKE %:keyword% " +
+            "OR o.email LIKE %:keyword%) " +
+            "ORDER BY o.id ASC")
+    Slice<Order> findByKeywordAfterId(@Param("keyword") String keyword,
+                                      @Param("afterId") Long afterId,
+                                      Pageable pageable);
+
+    @Query("SELECT o.id AS id, o.orderDate AS orderDate, o.status AS status " +
+            "FROM Order o WHERE o.id > :afterId ORDER BY o.id ASC")
+    List<OrderHeaderView> findHeadersAfterId(@Param("afterId") Long afterId, Pageable pageable);
 }
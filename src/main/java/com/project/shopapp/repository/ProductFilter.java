@@ -0,0 +1,26 @@
+package com.project.shopapp.repository;
+
+// Điều kiện lọc của trang danh sách sản phẩm; categoryId 0 hoặc null nghĩa là mọi danh mục
+public record ProductFilter(String keyword, Long categoryId, Float minPrice, Float maxPrice) {
+    public static ProductFilter of(String keyword, Long categoryId) {
+        return new ProductFilter(keyword, categoryId, null, null);
+    }
+
+    public boolean hasKeyword() {
+        return keyword != null && !keyword.isBlank();
+    }
+
+    public boolean hasCategory() {
+        return categoryId != null && categoryId != 0;
+    }
+
+    public boolean hasPriceRange() {
+        return minPrice != null || maxPrice != null;
+    }
+
+    public boolean acceptsPrice(Float price) {
+        if (!hasPriceRange()) return true;
+        if (price == null) return false;
+        return (minPrice == null || price >= minPrice) && (maxPrice == null || price <= maxPrice);
+    }
+}
@@ -2,11 +2,27 @@ package com.project.shopapp.repository;
 
 import com.project.shopapp.model.ProductImage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ProductImageRepository extends JpaRepository<ProductImage, Long> {
     List<ProductImage> findByProductId(Long productId);
+
+    long countByProductId(Long productId);
+
+    @Query("SELECT pi.id AS id, pi.product.id AS productId, pi.imageUrl AS imageUrl " +
+            "FROM ProductImage pi WHERE pi.product.id IN :productIds ORDER BY pi.id ASC")
+    List<ProductImageView> findViewsByProductIds(@Param("productIds") Collection<Long> productIds);
+
+    List<ProductImage> findByImageUrl(String imageUrl);
+
+    // Số tham chiếu tới mỗi file ảnh, dùng cho GC của image store
+    @Query("SELECT pi.imageUrl AS imageUrl, COUNT(pi.id) AS referenceCount " +
+            "FROM ProductImage pi WHERE pi.imageUrl IN :imageUrls GROUP BY pi.imageUrl")
+    List<ImageReferenceCount> countReferences(@Param("imageUrls") Collection<String> imageUrls);
 }
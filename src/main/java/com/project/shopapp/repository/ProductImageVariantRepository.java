@@ -0,0 +1,31 @@
+package com.project.shopapp.repository;
+
+import com.project.shopapp.model.ProductImageVariant;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ProductImageVariantRepository extends JpaRepository<ProductImageVariant, Long> {
+    List<ProductImageVariant> findBySourceUrl(String sourceUrl);
+
+    Optional<ProductImageVariant> findBySourceUrlAndSize(String sourceUrl, String size);
+
+    // Không tính variant trỏ về chính ảnh gốc, nếu không ảnh gốc sẽ không bao giờ được GC
+    @Query("SELECT v.imageUrl AS imageUrl, COUNT(v.id) AS referenceCount " +
+            "FROM ProductImageVariant v WHERE v.imageUrl IN :imageUrls AND v.imageUrl <> v.sourceUrl " +
+            "GROUP BY v.imageUrl")
+    List<ImageReferenceCount> countReferences(@Param("imageUrls") Collection<String> imageUrls);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ProductImageVariant v WHERE v.sourceUrl IN :sourceUrls")
+    int deleteBySourceUrlIn(@Param("sourceUrls") Collection<String> sourceUrls);
+}
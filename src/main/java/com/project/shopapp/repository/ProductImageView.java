@@ -0,0 +1,7 @@
+package com.project.shopapp.repository;
+
+public interface ProductImageView {
+    Long getId();
+    Long getProductId();
+    String getImageUrl();
+}
@@ -0,0 +1,7 @@
+package com.project.shopapp.repository;
+
+// Tổng số lượng đã bán của một sản phẩm
+public interface ProductQuantity {
+    Long getProductId();
+    Long getQuantity();
+}
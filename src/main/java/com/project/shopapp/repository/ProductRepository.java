@@ -2,18 +2,22 @@ package com.project.shopapp.repository;
 
 import com.project.shopapp.model.Category;
 import com.project.shopapp.model.Product;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product,Long> {
+public interface ProductRepository extends JpaRepository<Product,Long>, ProductRepositoryCustom {
     boolean existsByName(String name);
     Page<Product> findAll(Pageable pageable);
     List<Product> findByCategory(Category category);
@@ -25,9 +29,47 @@ public interface ProductRepository extends JpaRepository<Product,Long> {
                                  @Param("keyword") String keyword,
                                  Pageable pageable);
 
+    @Query("SELECT p.id AS id, p.name AS name, p.price AS price, p.thumbnail AS thumbnail, " +
+            "CASE WHEN :includeDescription = true THEN p.description ELSE NULL END AS description, " +
+            "p.category.id AS categoryId, p.createdAt AS createdAt, p.updatedAt AS updatedAt " +
+            "FROM Product p WHERE p.id IN :productIds")
+    List<ProductSummary> findSummariesByIds(@Param("productIds") Collection<Long> productIds,
+                                            @Param("includeDescription") boolean includeDescription);
+
     @Query("SELECT p FROM Product p LEFT JOIN FETCH p.productImages WHERE p.id = :productId")
     Optional<Product> getDetailProduct(@Param("productId") Long productId);
 
-    @Query("SELECT p FROM Product p WHERE p.id IN :productIds")
-    List<Product> findProductsByIds(@Param("productIds") List<Long> productIds);
+    @Query("SELECT DISTINCT p FROM Product p LEFT JOIN FETCH p.category LEFT JOIN FETCH p.productImages " +
+            "WHERE p.id IN :productIds")
+    List<Product> findDetailsByIds(@Param("productIds") Collection<Long> productIds);
+
+    // Dùng khi đặt hàng: một câu cho cả giỏ, kèm danh mục để ghi số lượng bán
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.id IN :productIds")
+    List<Product> findWithCategoryByIds(@Param("productIds") Collection<Long> productIds);
+
+    // Khoá dòng sản phẩm để các lượt upload ảnh đồng thời không vượt quá giới hạn số ảnh
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id = :productId")
+    Optional<Product> findByIdForUpdate(@Param("productId") Long productId);
+
+    @Query("SELECT p.updatedAt FROM Product p WHERE p.id = :productId")
+    Optional<LocalDateTime> findUpdatedAtById(@Param("productId") Long productId);
+
+    @Query("SELECT COALESCE(MAX(p.id), 0) FROM Product p")
+    long findMaxId();
+
+    @Query("SELECT p.name FROM Product p")
+    List<String> findAllNames();
+
+    List<Product> findByThumbnail(String thumbnail);
+
+    @Query("SELECT p.thumbnail AS imageUrl, COUNT(p.id) AS referenceCount " +
+            "FROM Product p WHERE p.thumbnail IN :imageUrls GROUP BY p.thumbnail")
+    List<ImageReferenceCount> countThumbnailReferences(@Param("imageUrls") Collection<String> imageUrls);
+
+    @Query("SELECT p.id AS id, p.name AS name FROM Product p WHERE p.id > :lastId ORDER BY p.id ASC")
+    List<ProductNameView> findNamesAfterId(@Param("lastId") Long lastId, Pageable pageable);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.id > :lastId ORDER BY p.id ASC")
+    List<Product> findBatchAfterId(@Param("lastId") Long lastId, Pageable pageable);
 }
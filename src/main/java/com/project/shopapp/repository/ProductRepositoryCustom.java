@@ -0,0 +1,25 @@
+package com.project.shopapp.repository;
+
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.utils.PageCursor;
+import com.project.shopapp.utils.ProductSort;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface ProductRepositoryCustom {
+    /**
+     * Forward-only stream over all products in id order; must be consumed inside a transaction and closed.
+     */
+    Stream<ProductSummary> streamAllSummaries(int fetchSize);
+
+    /**
+     * One page of the product listing ordered by {@code sort} (then by id). With a cursor the rows
+     * strictly after it are returned (keyset paging); otherwise {@code offset} rows are skipped.
+     */
+    List<ProductSummary> findSummaries(ProductFilter filter, ProductSort sort, PageCursor after,
+                                       boolean includeDescription, int offset, int limit)
+            throws InvalidParamException;
+
+    long countSummaries(ProductFilter filter);
+}
@@ -0,0 +1,206 @@
+package com.project.shopapp.repository;
+
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.utils.PageCursor;
+import com.project.shopapp.utils.ProductSort;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.query.Query;
+import org.hibernate.type.StandardBasicTypes;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Stream<ProductSummary> streamAllSummaries(int fetchSize) {
+        // Fetch size Integer.MIN_VALUE: MySQL Connector/J trả từng dòng thay vì load toàn bộ result set
+        return entityManager.createQuery(
+                        "SELECT p.id AS id, p.name AS name, p.price AS price, p.thumbnail AS thumbnail, " +
+                                "p.description AS description, p.category.id AS categoryId, " +
+                                "p.createdAt AS createdAt, p.updatedAt AS updatedAt " +
+                                "FROM Product p ORDER BY p.id ASC", Tuple.class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream()
+                .map(TupleProductSummary::new);
+    }
+
+    @Override
+    public List<ProductSummary> findSummaries(ProductFilter filter, ProductSort sort, PageCursor after,
+                                              boolean includeDescription, int offset, int limit)
+            throws InvalidParamException {
+        StringBuilder jpql = new StringBuilder("SELECT p.id AS id, p.name AS name, p.price AS price, " +
+                "p.thumbnail AS thumbnail, " +
+                (includeDescription ? "p.description" : "NULL") + " AS description, " +
+                "p.category.id AS categoryId, p.createdAt AS createdAt, p.updatedAt AS updatedAt " +
+                "FROM Product p WHERE 1 = 1");
+        Map<String, Object> parameters = new HashMap<>();
+        appendFilter(jpql, parameters, filter);
+        if (after != null) {
+            appendSeek(jpql, parameters, sort, after);
+        }
+        jpql.append(" ORDER BY ").append(orderBy(sort));
+
+        TypedQuery<Tuple> query = entityManager.createQuery(jpql.toString(), Tuple.class)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setFirstResult(after == null ? Math.max(0, offset) : 0)
+                .setMaxResults(limit);
+        bind(query, parameters);
+        return query.getResultList().stream()
+                .<ProductSummary>map(TupleProductSummary::new)
+                .toList();
+    }
+
+    @Override
+    public long countSummaries(ProductFilter filter) {
+        StringBuilder jpql = new StringBuilder("SELECT COUNT(p) FROM Product p WHERE 1 = 1");
+        Map<String, Object> parameters = new HashMap<>();
+        appendFilter(jpql, parameters, filter);
+        TypedQuery<Long> query = entityManager.createQuery(jpql.toString(), Long.class);
+        bind(query, parameters);
+        return query.getSingleResult();
+    }
+
+    // Chỉ thêm điều kiện cho tham số có giá trị để MySQL chọn được index (category_id, price, id)
+    private static void appendFilter(StringBuilder jpql, Map<String, Object> parameters, ProductFilter filter) {
+        if (filter.hasCategory()) {
+            jpql.append(" AND p.category.id = :categoryId");
+            parameters.put("categoryId", filter.categoryId());
+        }
+        if (filter.minPrice() != null) {
+            jpql.append(" AND p.price >= :minPrice");
+            parameters.put("minPrice", exactPrice(filter.minPrice()));
+        }
+        if (filter.maxPrice() != null) {
+            jpql.append(" AND p.price <= :maxPrice");
+            parameters.put("maxPrice", exactPrice(filter.maxPrice()));
+        }
+        if (filter.hasKeyword()) {
+            jpql.append(" AND (p.name LIKE :keyword OR p.description LIKE :keyword)");
+            parameters.put("keyword", "%" + filter.keyword() + "%");
+        }
+    }
+
+    // Điều kiện keyset (key, id) > (giá trị, id) của dòng cuối trang trước, viết dạng OR để dùng được index
+    private static void appendSeek(StringBuilder jpql, Map<String, Object> parameters, ProductSort sort,
+                                   PageCursor after) throws InvalidParamException {
+        parameters.put("lastId", after.getLastId());
+        switch (sort) {
+            case PRICE_ASC, PRICE_DESC -> {
+                String direction = sort == ProductSort.PRICE_ASC ? ">" : "<";
+                Float price = ProductSort.cursorPrice(after);
+                appendNullableSeek(jpql, "p.price", direction, price != null);
+                if (price != null) parameters.put("sortValue", exactPrice(price));
+            }
+            case NEWEST -> {
+                LocalDateTime createdAt = ProductSort.cursorCreatedAt(after);
+                appendNullableSeek(jpql, "p.createdAt", "<", createdAt != null);
+                if (createdAt != null) parameters.put("sortValue", createdAt);
+            }
+            case NAME -> {
+                jpql.append(" AND (p.name > :sortValue OR (p.name = :sortValue AND p.id > :lastId))");
+                parameters.put("sortValue", after.getValue());
+            }
+            case ID, RELEVANCE -> jpql.append(" AND p.id > :lastId");
+        }
+    }
+
+    // NULL theo thứ tự riêng của MySQL (nhỏ hơn mọi giá trị): đứng đầu khi ASC, cuối khi DESC
+    private static void appendNullableSeek(StringBuilder jpql, String column, String direction, boolean hasValue) {
+        boolean ascending = ">".equals(direction);
+        if (hasValue) {
+            jpql.append(" AND (").append(column).append(' ').append(direction).append(" :sortValue")
+                    .append(" OR (").append(column).append(" = :sortValue AND p.id ").append(direction)
+                    .append(" :lastId)");
+            // ASC: các dòng NULL đã đi qua ở các trang trước
+            if (!ascending) jpql.append(" OR ").append(column).append(" IS NULL");
+            jpql.append(')');
+        } else {
+            jpql.append(" AND (").append(column).append(" IS NULL AND p.id ").append(direction).append(" :lastId");
+            // ASC: hết dòng NULL thì tới mọi dòng có giá trị
+            if (ascending) jpql.append(" OR ").append(column).append(" IS NOT NULL");
+            jpql.append(')');
+        }
+    }
+
+    // Không ghi NULLS FIRST/LAST: MySQLDialect giả lập bằng CASE WHEN đứng đầu ORDER BY,
+    // MySQL không đọc được thứ tự từ index (category_id, price, id) và phải filesort cả tập lọc
+    private static String orderBy(ProductSort sort) {
+        return switch (sort) {
+            case PRICE_ASC -> "p.price ASC, p.id ASC";
+            case PRICE_DESC -> "p.price DESC, p.id DESC";
+            case NEWEST -> "p.createdAt DESC, p.id DESC";
+            case NAME -> "p.name ASC, p.id ASC";
+            case ID, RELEVANCE -> "p.id ASC";
+        };
+    }
+
+    // Cột price là FLOAT: so sánh với đúng giá trị double của số float, nếu gửi "199.99"
+    // thì MySQL so sánh 199.990005... với 199.99 và dòng cuối trang bị trả lại ở trang sau
+    private static Double exactPrice(Float price) {
+        return (double) price;
+    }
+
+    private static void bind(TypedQuery<?> query, Map<String, Object> parameters) {
+        Query<?> hibernateQuery = query.unwrap(Query.class);
+        parameters.forEach((name, value) -> {
+            if (value instanceof Double price) {
+                hibernateQuery.setParameter(name, price, StandardBasicTypes.DOUBLE);
+            } else {
+                hibernateQuery.setParameter(name, value);
+            }
+        });
+    }
+
+    private record TupleProductSummary(Tuple tuple) implements ProductSummary {
+        @Override
+        public Long getId() {
+            return tuple.get("id", Long.class);
+        }
+
+        @Override
+        public String getName() {
+            return tuple.get("name", String.class);
+        }
+
+        @Override
+        public Float getPrice() {
+            return tuple.get("price", Float.class);
+        }
+
+        @Override
+        public String getThumbnail() {
+            return tuple.get("thumbnail", String.class);
+        }
+
+        @Override
+        public String getDescription() {
+            return tuple.get("description", String.class);
+        }
+
+        @Override
+        public Long getCategoryId() {
+            return tuple.get("categoryId", Long.class);
+        }
+
+        @Override
+        public LocalDateTime getCreatedAt() {
+            return tuple.get("createdAt", LocalDateTime.class);
+        }
+
+        @Override
+        public LocalDateTime getUpdatedAt() {
+            return tuple.get("updatedAt", LocalDateTime.class);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.project.shopapp.repository;
+
+import java.time.LocalDateTime;
+
+// Chỉ các cột mà trang danh sách sản phẩm trả về, không load entity/association
+public interface ProductSummary {
+    Long getId();
+    String getName();
+    Float getPrice();
+    String getThumbnail();
+    String getDescription();
+    Long getCategoryId();
+    LocalDateTime getCreatedAt();
+    LocalDateTime getUpdatedAt();
+}
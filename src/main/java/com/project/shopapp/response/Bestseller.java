@@ -0,0 +1,7 @@
+package com.project.shopapp.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+// Chi tiết sản phẩm lấy qua /products/by-ids
+public record Bestseller(@JsonProperty("product_id") long productId, long quantity) {
+}
@@ -0,0 +1,19 @@
+package com.project.shopapp.response;
+
+import com.project.shopapp.model.Category;
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class CategoryResponse {
+    Long id;
+    String name;
+
+    public static CategoryResponse fromCategory(Category category) {
+        return CategoryResponse.builder()
+                .id(category.getId())
+                .name(category.getName())
+                .build();
+    }
+}
@@ -0,0 +1,58 @@
+package com.project.shopapp.response;
+
+import com.project.shopapp.model.Category;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Immutable view of all categories. The version is a hash of the content, so it is
+ * identical across restarts and instances as long as the categories are unchanged.
+ */
+@Getter
+public class CategorySnapshot {
+    private final List<CategoryResponse> categories;
+    private final String version;
+
+    private CategorySnapshot(List<CategoryResponse> categories, String version) {
+        this.categories = categories;
+        this.version = version;
+    }
+
+    public static CategorySnapshot of(List<Category> categories) {
+        List<CategoryResponse> sorted = categories.stream()
+                .map(CategoryResponse::fromCategory)
+                .sorted(Comparator.comparing(CategoryResponse::getId))
+                .toList();
+        return new CategorySnapshot(sorted, hash(sorted));
+    }
+
+    public List<CategoryResponse> page(int page, int limit) {
+        // limit <= 0: trả về toàn bộ danh mục
+        if (limit <= 0) return categories;
+        long from = (long) Math.max(0, page) * limit;
+        if (from >= categories.size()) return List.of();
+        return categories.subList((int) from, (int) Math.min(categories.size(), from + limit));
+    }
+
+    public int getTotalElements() {
+        return categories.size();
+    }
+
+    private static String hash(List<CategoryResponse> categories) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (CategoryResponse category : categories) {
+                digest.update((category.getId() + ":" + category.getName() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.project.shopapp.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+public class CoPurchaseReport {
+    private boolean running;
+
+    @JsonProperty("started_at")
+    private LocalDateTime startedAt;
+
+    @JsonProperty("finished_at")
+    private LocalDateTime finishedAt;
+
+    @JsonProperty("start_order_id")
+    private long startOrderId;
+
+    @JsonProperty("last_order_id")
+    private long lastOrderId;
+
+    private long orders;
+
+    // Số cặp (sản phẩm, sản phẩm liên quan) được cộng dồn
+    private long pairs;
+
+    @JsonProperty("refreshed_products")
+    private long refreshedProducts;
+
+    private String error;
+}
@@ -0,0 +1,41 @@
+package com.project.shopapp.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+public class ImageStoreReport {
+    // "gc" hoặc "migration"
+    private String operation;
+
+    private boolean running;
+
+    @JsonProperty("started_at")
+    private LocalDateTime startedAt;
+
+    @JsonProperty("finished_at")
+    private LocalDateTime finishedAt;
+
+    private long scanned;
+
+    private long migrated;
+
+    private long deduplicated;
+
+    private long deleted;
+
+    @JsonProperty("bytes_freed")
+    private long bytesFreed;
+
+    private long failed;
+
+    private String error;
+}
@@ -1,5 +1,6 @@
 package com.project.shopapp.response;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,4 +16,7 @@ public class OrderListResponse {
     private List<OrderResponse> orders;
     private int totalPages;
     private int currentPage;
+
+    @JsonProperty("next_cursor")
+    private String nextCursor;
 }
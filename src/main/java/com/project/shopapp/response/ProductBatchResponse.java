@@ -0,0 +1,22 @@
+package com.project.shopapp.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductBatchResponse {
+    // Theo đúng thứ tự id trong request, đã bỏ id trùng
+    private List<ProductDetailResponse> products;
+
+    // Các id không tồn tại (đã bị xoá) để client cập nhật lại giỏ hàng
+    @JsonProperty("missing_ids")
+    private List<Long> missingIds;
+}
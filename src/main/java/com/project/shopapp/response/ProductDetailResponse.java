@@ -0,0 +1,49 @@
+package com.project.shopapp.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.project.shopapp.model.Product;
+import com.project.shopapp.model.ProductImage;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Immutable snapshot, an toàn khi dùng chung giữa các request (được cache)
+@Value
+@Builder
+public class ProductDetailResponse {
+    Long id;
+    String name;
+    Float price;
+    String thumbnail;
+    String description;
+
+    @JsonProperty("product_images")
+    List<ProductImageResponse> productImages;
+
+    @JsonProperty("category_id")
+    Long categoryId;
+
+    @JsonProperty("created_at")
+    LocalDateTime createdAt;
+
+    @JsonProperty("updated_at")
+    LocalDateTime updatedAt;
+
+    public static ProductDetailResponse fromProduct(Product product, List<ProductImage> productImages) {
+        return ProductDetailResponse.builder()
+                .id(product.getId())
+                .name(product.getName())
+                .price(product.getPrice())
+                .thumbnail(product.getThumbnail())
+                .description(product.getDescription())
+                .productImages(productImages == null ? List.of() : productImages.stream()
+                        .map(ProductImageResponse::fromProductImage)
+                        .toList())
+                .categoryId(product.getCategory() != null ? product.getCategory().getId() : null)
+                .createdAt(product.getCreatedAt())
+                .updatedAt(product.getUpdatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,40 @@
+package com.project.shopapp.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductFacetsResponse {
+    // Số kết quả theo từng danh mục, không áp dụng bộ lọc category_id để client hiển thị các lựa chọn khác
+    private List<CategoryFacet> categories;
+
+    @JsonProperty("price_ranges")
+    private List<PriceRangeFacet> priceRanges;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class CategoryFacet {
+        @JsonProperty("category_id")
+        private Long categoryId;
+        private long count;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class PriceRangeFacet {
+        private Long min;
+        // null: không giới hạn trên
+        private Long max;
+        private long count;
+    }
+}
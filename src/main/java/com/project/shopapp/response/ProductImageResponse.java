@@ -0,0 +1,19 @@
+package com.project.shopapp.response;
+
+import com.project.shopapp.model.ProductImage;
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class ProductImageResponse {
+    Long id;
+    String imageUrl;
+
+    public static ProductImageResponse fromProductImage(ProductImage productImage) {
+        return ProductImageResponse.builder()
+                .id(productImage.getId())
+                .imageUrl(productImage.getImageUrl())
+                .build();
+    }
+}
@@ -0,0 +1,51 @@
+package com.project.shopapp.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductImportReport {
+    @JsonProperty("import_id")
+    private String importId;
+
+    private String format;
+
+    @JsonProperty("total_rows")
+    private long totalRows;
+
+    private long imported;
+
+    private long duplicates;
+
+    private long failed;
+
+    @JsonProperty("elapsed_ms")
+    private long elapsedMs;
+
+    @JsonProperty("rows_per_second")
+    private long rowsPerSecond;
+
+    // Đường dẫn tải file lỗi đầy đủ, null nếu không có dòng nào lỗi
+    @JsonProperty("error_report")
+    private String errorReport;
+
+    // Một vài lỗi đầu tiên để xem nhanh
+    private List<RowError> errors;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class RowError {
+        private long line;
+        private String name;
+        private String error;
+    }
+}
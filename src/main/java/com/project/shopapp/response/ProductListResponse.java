@@ -1,5 +1,7 @@
 package com.project.shopapp.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -14,4 +16,15 @@ import java.util.List;
 public class ProductListResponse {
     private List<ProductResponse> products;
     private int totalPages;
+
+    @JsonProperty("next_cursor")
+    private String nextCursor;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ProductFacetsResponse facets;
+
+    // Từ khoá cuối khớp quá nhiều từ, chỉ một phần được tìm: client nên gõ thêm ký tự
+    @JsonProperty("prefix_truncated")
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean prefixTruncated;
 }
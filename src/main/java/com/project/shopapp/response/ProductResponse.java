@@ -1,11 +1,11 @@
 package com.project.shopapp.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.project.shopapp.model.Product;
-import com.project.shopapp.model.ProductImage;
+import com.project.shopapp.repository.ProductSummary;
 import lombok.*;
 
-import java.util.ArrayList;
 import java.util.List;
 
 @Getter
@@ -18,10 +18,14 @@ public class ProductResponse extends BaseResponse {
     private String name;
     private Float price;
     private String thumbnail;
+
+    // Trang danh sách chỉ trả về description / product_images khi client yêu cầu (include=...)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String description;
 
     @JsonProperty("product_images")
-    private List<ProductImage> productImages = new ArrayList<>();
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<ProductImageResponse> productImages;
 
     @JsonProperty("category_id")
     private Long categoryId;
@@ -33,11 +37,29 @@ public class ProductResponse extends BaseResponse {
                 .price(product.getPrice())
                 .thumbnail(product.getThumbnail())
                 .description(product.getDescription())
-                .productImages(product.getProductImages())
-                .categoryId(product.getCategory().getId())
+                .productImages(product.getProductImages() == null ? null : product.getProductImages()
+                        .stream()
+                        .map(ProductImageResponse::fromProductImage)
+                        .toList())
+                .categoryId(product.getCategory() != null ? product.getCategory().getId() : null)
                 .build();
         productResponse.setCreatedAt(product.getCreatedAt());
         productResponse.setUpdatedAt(product.getUpdatedAt());
         return productResponse;
     }
+
+    public static ProductResponse fromSummary(ProductSummary summary, List<ProductImageResponse> productImages) {
+        ProductResponse productResponse = ProductResponse.builder()
+                .id(summary.getId())
+                .name(summary.getName())
+                .price(summary.getPrice())
+                .thumbnail(summary.getThumbnail())
+                .description(summary.getDescription())
+                .productImages(productImages)
+                .categoryId(summary.getCategoryId())
+                .build();
+        productResponse.setCreatedAt(summary.getCreatedAt());
+        productResponse.setUpdatedAt(summary.getUpdatedAt());
+        return productResponse;
+    }
 }
@@ -0,0 +1,62 @@
+package com.project.shopapp.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+public class SalesReconcileReport {
+    private boolean running;
+
+    @JsonProperty("started_at")
+    private LocalDateTime startedAt;
+
+    @JsonProperty("finished_at")
+    private LocalDateTime finishedAt;
+
+    @JsonProperty("last_product_id")
+    private long lastProductId;
+
+    private long products;
+
+    // Số dòng (sản phẩm, ngày) đã so sánh
+    private long rows;
+
+    @JsonProperty("drift_rows")
+    private long driftRows;
+
+    // Tổng |đúng - đang lưu| của các dòng lệch
+    @JsonProperty("quantity_drift")
+    private long quantityDrift;
+
+    private String error;
+
+    // Chỉ giữ tối đa MAX_REPORTED_DRIFTS dòng lệch gần nhất
+    @Builder.Default
+    private List<Drift> drifts = new ArrayList<>();
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Drift {
+        @JsonProperty("product_id")
+        private Long productId;
+
+        @JsonProperty("sale_date")
+        private LocalDate saleDate;
+
+        private long expected;
+
+        private long actual;
+    }
+}
@@ -0,0 +1,55 @@
+package com.project.shopapp.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+public class ThumbnailReconcileReport {
+    private boolean running;
+
+    @JsonProperty("started_at")
+    private LocalDateTime startedAt;
+
+    @JsonProperty("finished_at")
+    private LocalDateTime finishedAt;
+
+    @JsonProperty("start_id")
+    private long startId;
+
+    @JsonProperty("last_id")
+    private long lastId;
+
+    private long scanned;
+
+    private long fixed;
+
+    private String error;
+
+    // Chỉ giữ tối đa MAX_REPORTED_CHANGES thay đổi gần nhất
+    @Builder.Default
+    private List<Change> changes = new ArrayList<>();
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Change {
+        @JsonProperty("product_id")
+        private Long productId;
+
+        @JsonProperty("old_thumbnail")
+        private String oldThumbnail;
+
+        @JsonProperty("new_thumbnail")
+        private String newThumbnail;
+    }
+}
@@ -5,18 +5,32 @@ import com.project.shopapp.model.Category;
 import com.project.shopapp.model.Product;
 import com.project.shopapp.repository.CategoryRepository;
 import com.project.shopapp.repository.ProductRepository;
+import com.project.shopapp.event.CategoryChangedEvent;
+import com.project.shopapp.response.CategorySnapshot;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.crossstore.ChangeSetPersister;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @RequiredArgsConstructor
 public class CategoryService implements ICategoryService {
+    private static final Logger logger = LoggerFactory.getLogger(CategoryService.class);
     private final CategoryRepository categoryRepository;
     private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Object snapshotLock = new Object();
+    // Tăng mỗi khi danh mục thay đổi để snapshot đang load dở (dữ liệu cũ) không ghi đè bản mới
+    private final AtomicLong generation = new AtomicLong();
+    private volatile CategorySnapshot snapshot;
 
     @Override
     public Category createCategory(CategoryDTO categoryDTO) {
@@ -25,7 +39,9 @@ public class CategoryService implements ICategoryService {
                 .name(categoryDTO.getName())
                 .build();
 
-        return categoryRepository.save(category);
+        Category savedCategory = categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(savedCategory.getId()));
+        return savedCategory;
     }
 
     @Override
@@ -35,8 +51,30 @@ public class CategoryService implements ICategoryService {
     }
 
     @Override
-    public List<Category> getAllCategories() {
-        return categoryRepository.findAll();
+    public CategorySnapshot getCategorySnapshot() {
+        CategorySnapshot current = snapshot;
+        if (current != null) return current;
+        synchronized (snapshotLock) {
+            if (snapshot != null) return snapshot;
+            long startGeneration = generation.get();
+            CategorySnapshot loaded = CategorySnapshot.of(categoryRepository.findAll());
+            if (generation.get() == startGeneration) {
+                snapshot = loaded;
+            }
+            return loaded;
+        }
+    }
+
+    // Chạy sau khi transaction commit: bỏ snapshot cũ rồi load lại ngay
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        generation.incrementAndGet();
+        snapshot = null;
+        try {
+            getCategorySnapshot();
+        } catch (Exception e) {
+            logger.warn("Reloading category snapshot failed, it will be loaded on next read: {}", e.getMessage());
+        }
     }
 
     @Override
@@ -44,6 +82,7 @@ public class CategoryService implements ICategoryService {
         Category existingCategory = getCategoryById(categoryId);
         existingCategory.setName(categoryDTO.getName());
         categoryRepository.save(existingCategory);
+        eventPublisher.publishEvent(new CategoryChangedEvent(categoryId));
         return existingCategory;
     }
 
@@ -58,6 +97,7 @@ public class CategoryService implements ICategoryService {
             throw new IllegalStateException("Cannot delete category with associated products");
         } else {
             categoryRepository.deleteById(id);
+            eventPublisher.publishEvent(new CategoryChangedEvent(id));
             return category;
         }
     }
@@ -0,0 +1,12 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.response.ImageStoreReport;
+
+public interface IImageStoreMaintenanceService {
+    ImageStoreReport collectGarbage();
+    ImageStoreReport migrateLegacyImages();
+    boolean startGarbageCollection();
+    boolean startMigration();
+    void stop();
+    ImageStoreReport getLastReport();
+}
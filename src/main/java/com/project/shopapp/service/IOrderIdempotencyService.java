@@ -0,0 +1,13 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.dto.OrderDTO;
+import com.project.shopapp.model.Order;
+
+public interface IOrderIdempotencyService {
+    record Placement(Order order, boolean replayed) {
+    }
+
+    // callerId: id của user đã đăng nhập, không lấy user_id trong body
+    Placement createOrder(Long callerId, String idempotencyKey, OrderDTO orderDTO) throws Exception;
+    long purgeExpired();
+}
@@ -0,0 +1,14 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.dto.OrderDTO;
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.exception.OrderQueueFullException;
+import com.project.shopapp.model.Order;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface IOrderIngestionService {
+    boolean isEnabled();
+    // Future hoàn thành khi transaction chứa đơn đã commit, hoặc lỗi riêng của đơn này
+    CompletableFuture<Order> submit(OrderDTO orderDTO) throws InvalidParamException, OrderQueueFullException;
+}
@@ -2,19 +2,27 @@ package com.project.shopapp.service;
 
 import com.project.shopapp.dto.OrderDTO;
 import com.project.shopapp.exception.DataNotFoundException;
+import com.project.shopapp.exception.OutOfStockException;
 import com.project.shopapp.model.Order;
+import com.project.shopapp.repository.OrderListVersion;
+import com.project.shopapp.response.KeysetPage;
 import com.project.shopapp.response.OrderResponse;
+import com.project.shopapp.utils.PageCursor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface IOrderService {
     Order createOrder(OrderDTO orderDTO) throws Exception;
     Order getOrderById(Long orderId);
-    Order updateOrder(Long id, OrderDTO orderDTO) throws DataNotFoundException;
+    LocalDateTime getOrderLastModified(Long orderId);
+    OrderListVersion getUserOrdersVersion(Long userId);
+    Order updateOrder(Long id, OrderDTO orderDTO) throws DataNotFoundException, OutOfStockException;
     void deleteOrder(Long id);
     List<OrderResponse> findByUserId(Long userId);
     Page<Order> getOrdersByKeyword(String keyword, Pageable pageable);
+    KeysetPage<Order> getOrdersByKeywordAfter(String keyword, PageCursor cursor, int limit);
     Order updateOrderStatus(Long id, String status) throws DataNotFoundException;
 }
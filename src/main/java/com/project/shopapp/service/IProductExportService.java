@@ -0,0 +1,11 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.exception.InvalidParamException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface IProductExportService {
+    void validateFormat(String format) throws InvalidParamException;
+    long exportProducts(OutputStream outputStream, String format) throws IOException;
+}
@@ -0,0 +1,43 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.exception.InvalidParamException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface IProductImageService {
+    /**
+     * Stores an uploaded image and returns its content-addressed name; the format is detected
+     * from the file signature, not from the client header. Identical uploads share one file.
+     */
+    String storeImage(MultipartFile file) throws IOException, InvalidParamException;
+
+    /**
+     * Metadata of a stored image, or null when the name is invalid or the file does not exist.
+     */
+    StoredImage getImage(String imageName) throws IOException;
+
+    /**
+     * Blob name of the requested variant of an image, or null while it is not generated yet
+     * (or cannot be generated for the image format).
+     */
+    String findVariant(String imageName, String size);
+
+    /**
+     * Content of a small image from the in-memory cache, or null when the image is too large to cache.
+     */
+    byte[] getCachedContent(StoredImage image) throws IOException;
+
+    /**
+     * Drops cached metadata and content of an image whose file was removed.
+     */
+    void evict(String imageName);
+
+    /**
+     * An image is {@code size} bytes of {@code path} starting at {@code offset}
+     * (non-zero when the blob lives inside a pack file).
+     */
+    record StoredImage(String name, Path path, long offset, long size, String contentType, String eTag, long lastModified) {
+    }
+}
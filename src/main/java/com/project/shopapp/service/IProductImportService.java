@@ -0,0 +1,14 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.exception.DataNotFoundException;
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.response.ProductImportReport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+public interface IProductImportService {
+    ProductImportReport importProducts(InputStream inputStream, String format) throws IOException, InvalidParamException;
+    Path getErrorReport(String importId) throws DataNotFoundException;
+}
@@ -0,0 +1,22 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.model.Order;
+import com.project.shopapp.model.OrderDetail;
+import com.project.shopapp.response.Bestseller;
+import com.project.shopapp.response.SalesReconcileReport;
+
+import java.util.List;
+
+public interface IProductSalesService {
+    void recordOrder(Order order, List<OrderDetail> orderDetails);
+    // Các dòng của nhiều đơn, mỗi dòng phải có order đã gán orderDate
+    void recordOrders(List<OrderDetail> orderDetails);
+    void recordCancellation(Order order);
+    void recordReinstatement(Order order);
+    List<Bestseller> getBestsellers(Long categoryId, int days, int limit) throws InvalidParamException;
+    SalesReconcileReport reconcile();
+    boolean startReconcile();
+    void stop();
+    SalesReconcileReport getLastReport();
+}
@@ -3,21 +3,49 @@ package com.project.shopapp.service;
 import com.project.shopapp.dto.ProductDTO;
 import com.project.shopapp.dto.ProductImageDTO;
 import com.project.shopapp.exception.DataNotFoundException;
+import com.project.shopapp.exception.InvalidParamException;
 import com.project.shopapp.model.Product;
 import com.project.shopapp.model.ProductImage;
-import com.project.shopapp.response.ProductResponse;
-import org.springframework.data.domain.Page;
+import com.project.shopapp.repository.ProductFilter;
+import com.project.shopapp.response.ProductBatchResponse;
+import com.project.shopapp.response.ProductDetailResponse;
+import com.project.shopapp.response.ProductListResponse;
+import com.project.shopapp.utils.PageCursor;
+import com.project.shopapp.utils.ProductSort;
 import org.springframework.data.domain.PageRequest;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
+import java.util.function.BiPredicate;
 
 public interface IProductService {
     Product createProduct(ProductDTO productDTO) throws DataNotFoundException;
     Product getProductById(Long id) throws Exception;
-    List<Product> findProductsByIds(List<Long> productIds);
-    Page<ProductResponse> getAllProducts(String keyword, Long categoryId, PageRequest pageRequest);
+    ProductDetailResponse getProductDetail(Long id) throws DataNotFoundException;
+    ProductBatchResponse getProductsByIds(List<Long> productIds) throws InvalidParamException;
+    LocalDateTime getProductLastModified(Long id);
+    boolean existsProduct(Long id);
+    /**
+     * Returns null when {@code notModified} accepts the page version (client copy is current).
+     */
+    ProductListResponse getAllProducts(ProductFilter filter, ProductSort sort, PageRequest pageRequest,
+                                       Set<String> include, BiPredicate<String, LocalDateTime> notModified)
+            throws InvalidParamException;
+    /**
+     * Keyset page after {@code cursor}; the sort of a cursor from a previous page wins over {@code sort}.
+     */
+    ProductListResponse getProductsAfter(ProductFilter filter, ProductSort sort, PageCursor cursor, int limit,
+                                         Set<String> include, BiPredicate<String, LocalDateTime> notModified)
+            throws InvalidParamException;
     Product updateProduct(Long id, ProductDTO productDTO) throws Exception;
     void deleteProduct(Long id);
     boolean existsByName(String name);
     ProductImage createProductImage(Long productId, ProductImageDTO productImageDTO) throws Exception;
+    /**
+     * Attaches the images of one upload; fails without inserting anything when the product
+     * would exceed {@link ProductImage#MAXIMUM_IMAGES_PER_PRODUCT} images.
+     */
+    List<ProductImage> createProductImages(Long productId, List<String> imageUrls)
+            throws DataNotFoundException, InvalidParamException;
 }
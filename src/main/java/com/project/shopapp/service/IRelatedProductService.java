@@ -0,0 +1,16 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.component.RelatedProductIndex;
+import com.project.shopapp.response.CoPurchaseReport;
+
+import java.util.List;
+import java.util.Map;
+
+public interface IRelatedProductService {
+    List<RelatedProductIndex.Related> getRelatedProducts(long productId, int limit);
+    CoPurchaseReport refresh();
+    boolean startAsync();
+    void stop();
+    CoPurchaseReport getLastReport();
+    Map<String, Object> getIndexStats();
+}
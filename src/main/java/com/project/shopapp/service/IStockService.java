@@ -0,0 +1,17 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.exception.DataNotFoundException;
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.exception.OutOfStockException;
+
+import java.util.Map;
+
+public interface IStockService {
+    // Trừ kho ngay; nếu transaction hiện tại rollback thì tự trả lại
+    void reserve(Map<Long, Integer> quantities) throws OutOfStockException;
+    // Trả lại kho sau khi transaction hiện tại commit
+    void release(Map<Long, Integer> quantities);
+    Long getAvailable(Long productId);
+    long setStock(Long productId, int quantity) throws DataNotFoundException, InvalidParamException;
+    int flush();
+}
@@ -0,0 +1,10 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.response.ThumbnailReconcileReport;
+
+public interface IThumbnailReconcileService {
+    ThumbnailReconcileReport reconcile(Long fromId);
+    boolean startAsync(Long fromId);
+    void stop();
+    ThumbnailReconcileReport getLastReport();
+}
@@ -0,0 +1,287 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.component.BlobStore;
+import com.project.shopapp.component.LegacyImageDirectory;
+import com.project.shopapp.event.ProductChangedEvent;
+import com.project.shopapp.model.Product;
+import com.project.shopapp.model.ProductImage;
+import com.project.shopapp.repository.ImageReferenceCount;
+import com.project.shopapp.repository.ProductImageRepository;
+import com.project.shopapp.repository.ProductImageVariantRepository;
+import com.project.shopapp.repository.ProductRepository;
+import com.project.shopapp.response.ImageStoreReport;
+import com.project.shopapp.utils.ImageFormat;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Background maintenance of the image store: deletes blobs no product references any more
+ * and moves files of the old flat upload directory into the content-addressed layout.
+ * A blob is only deleted when it is unreferenced and older than the grace period, so an
+ * upload whose product image row is not committed yet is never collected.
+ */
+@Service
+@RequiredArgsConstructor
+public class ImageStoreMaintenanceService implements IImageStoreMaintenanceService {
+    private static final Logger logger = LoggerFactory.getLogger(ImageStoreMaintenanceService.class);
+    private static final String OPERATION_GC = "gc";
+    private static final String OPERATION_MIGRATION = "migration";
+
+    @Value("${image-store.gc-enabled:true}")
+    private boolean gcEnabled;
+
+    @Value("${image-store.gc-grace-period:1h}")
+    private Duration gracePeriod;
+
+    @Value("${image-store.gc-batch-size:500}")
+    private int batchSize;
+
+    private final BlobStore blobStore;
+    private final LegacyImageDirectory legacyImageDirectory;
+    private final IProductImageService productImageService;
+    private final ProductRepository productRepository;
+    private final ProductImageRepository productImageRepository;
+    private final ProductImageVariantRepository variantRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TaskExecutor backgroundTaskExecutor;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile boolean stopRequested = false;
+    private ImageStoreReport report = new ImageStoreReport();
+
+    @Scheduled(cron = "${image-store.gc-cron:0 30 3 * * *}")
+    public void scheduledGarbageCollection() {
+        if (!gcEnabled) return;
+        collectGarbage();
+    }
+
+    @Override
+    public boolean startGarbageCollection() {
+        return startAsync(this::collectGarbage);
+    }
+
+    @Override
+    public boolean startMigration() {
+        return startAsync(this::migrateLegacyImages);
+    }
+
+    @Override
+    public void stop() {
+        stopRequested = true;
+    }
+
+    @Override
+    public synchronized ImageStoreReport getLastReport() {
+        return report.toBuilder().build();
+    }
+
+    @Override
+    public ImageStoreReport collectGarbage() {
+        return run(OPERATION_GC, () -> {
+            Instant cutoff = Instant.now().minus(gracePeriod);
+            List<String> batch = new ArrayList<>(batchSize);
+            try {
+                blobStore.forEachBlob(blob -> {
+                    if (stopRequested) return;
+                    batch.add(blob);
+                    if (batch.size() >= batchSize) {
+                        collectBatch(batch, cutoff);
+                        batch.clear();
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (!stopRequested) {
+                collectBatch(batch, cutoff);
+                blobStore.maintain(cutoff);
+            }
+        });
+    }
+
+    @Override
+    public ImageStoreReport migrateLegacyImages() {
+        return run(OPERATION_MIGRATION, () -> {
+            for (Path legacy : legacyImageDirectory.listFiles()) {
+                if (stopRequested) break;
+                migrate(legacy);
+            }
+        });
+    }
+
+    private boolean startAsync(Runnable task) {
+        if (running.get()) {
+            return false;
+        }
+        backgroundTaskExecutor.execute(task);
+        return true;
+    }
+
+    private interface Job {
+        void run() throws IOException;
+    }
+
+    private ImageStoreReport run(String operation, Job job) {
+        if (!running.compareAndSet(false, true)) {
+            return getLastReport();
+        }
+        stopRequested = false;
+        try {
+            synchronized (this) {
+                report = ImageStoreReport.builder()
+                        .operation(operation)
+                        .running(true)
+                        .startedAt(LocalDateTime.now())
+                        .build();
+            }
+            job.run();
+        } catch (Exception e) {
+            logger.warn("Image store {} stopped: {}", operation, e.getMessage());
+            synchronized (this) {
+                report.setError(e.getMessage());
+            }
+        } finally {
+            synchronized (this) {
+                report.setRunning(false);
+                report.setFinishedAt(LocalDateTime.now());
+            }
+            running.set(false);
+        }
+        ImageStoreReport finished = getLastReport();
+        logger.info("Image store {} finished: {} scanned, {} migrated, {} deleted, {} bytes freed",
+                operation, finished.getScanned(), finished.getMigrated(), finished.getDeleted(), finished.getBytesFreed());
+        return finished;
+    }
+
+    private void collectBatch(List<String> names, Instant cutoff) {
+        if (names.isEmpty()) return;
+        // Tham chiếu = dòng product_images + sản phẩm dùng file làm thumbnail + variant của ảnh gốc còn dùng
+        Map<String, Long> references = new HashMap<>();
+        for (ImageReferenceCount count : productImageRepository.countReferences(names)) {
+            references.merge(count.getImageUrl(), count.getReferenceCount(), Long::sum);
+        }
+        for (ImageReferenceCount count : productRepository.countThumbnailReferences(names)) {
+            references.merge(count.getImageUrl(), count.getReferenceCount(), Long::sum);
+        }
+        for (ImageReferenceCount count : variantRepository.countReferences(names)) {
+            references.merge(count.getImageUrl(), count.getReferenceCount(), Long::sum);
+        }
+
+        long deleted = 0;
+        long bytesFreed = 0;
+        long failed = 0;
+        List<String> deletedNames = new ArrayList<>();
+        for (String name : names) {
+            if (references.getOrDefault(name, 0L) > 0) continue;
+            try {
+                long freed = blobStore.deleteIfNotModifiedSince(name, cutoff);
+                if (freed < 0) continue;
+                productImageService.evict(name);
+                deletedNames.add(name);
+                deleted++;
+                bytesFreed += freed;
+            } catch (IOException e) {
+                logger.warn("Cannot delete unreferenced image {}: {}", name, e.getMessage());
+                failed++;
+            }
+        }
+        if (!deletedNames.isEmpty()) {
+            // Bỏ các dòng variant của ảnh gốc đã xoá: file variant sẽ bị thu hồi ở lần GC sau
+            variantRepository.deleteBySourceUrlIn(deletedNames);
+        }
+        synchronized (this) {
+            report.setScanned(report.getScanned() + names.size());
+            report.setDeleted(report.getDeleted() + deleted);
+            report.setBytesFreed(report.getBytesFreed() + bytesFreed);
+            report.setFailed(report.getFailed() + failed);
+        }
+    }
+
+    private void migrate(Path legacy) {
+        String oldName = legacy.getFileName().toString();
+        try {
+            byte[] signature;
+            try (InputStream inputStream = Files.newInputStream(legacy)) {
+                signature = inputStream.readNBytes(ImageFormat.SIGNATURE_LENGTH);
+            }
+            ImageFormat format = ImageFormat.detect(signature);
+            if (format == null) {
+                logger.warn("Skipping {}: not a supported image format", oldName);
+                recordMigration(false, false, 0);
+                return;
+            }
+            // Sao chép sang store mới, cập nhật DB rồi mới xoá file cũ: dừng giữa chừng vẫn chạy lại được
+            BlobStore.Blob blob;
+            try (InputStream inputStream = Files.newInputStream(legacy)) {
+                blob = blobStore.store(inputStream, format.getExtension());
+            }
+            transactionTemplate.executeWithoutResult(status -> rehome(oldName, blob.name()));
+            long size = Files.size(legacy);
+            Files.delete(legacy);
+            productImageService.evict(oldName);
+            recordMigration(true, blob.deduplicated(), blob.deduplicated() ? size : 0);
+        } catch (Exception e) {
+            logger.warn("Cannot migrate image {}: {}", oldName, e.getMessage());
+            recordMigration(false, false, 0);
+        }
+    }
+
+    private void rehome(String oldName, String newName) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, Product> changedProducts = new LinkedHashMap<>();
+        List<ProductImage> images = productImageRepository.findByImageUrl(oldName);
+        for (ProductImage image : images) {
+            image.setImageUrl(newName);
+            changedProducts.putIfAbsent(image.getProduct().getId(), image.getProduct());
+        }
+        productImageRepository.saveAll(images);
+        for (Product product : productRepository.findByThumbnail(oldName)) {
+            changedProducts.putIfAbsent(product.getId(), product);
+        }
+        for (Product product : changedProducts.values()) {
+            if (oldName.equals(product.getThumbnail())) {
+                product.setThumbnail(newName);
+            }
+            // URL ảnh đổi nên phải đổi updated_at để ETag/cache của sản phẩm được làm mới
+            product.setUpdatedAt(now);
+            productRepository.save(product);
+            eventPublisher.publishEvent(ProductChangedEvent.updated(product));
+        }
+    }
+
+    private synchronized void recordMigration(boolean migrated, boolean deduplicated, long bytesFreed) {
+        report.setScanned(report.getScanned() + 1);
+        if (migrated) {
+            report.setMigrated(report.getMigrated() + 1);
+        } else {
+            report.setFailed(report.getFailed() + 1);
+        }
+        if (deduplicated) {
+            report.setDeduplicated(report.getDeduplicated() + 1);
+        }
+        report.setBytesFreed(report.getBytesFreed() + bytesFreed);
+    }
+}
@@ -12,6 +12,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Service
@@ -22,6 +23,7 @@ public class OrderDetailService implements IOrderDetailService {
     private final ProductRepository productRepository;
 
     @Override
+    @Transactional
     public OrderDetail createOrderDetail(OrderDetailDTO orderDetailDTO) throws Exception {
         // Tìm xem orderId có tồn tại không
         Order order = orderRepository.findById(orderDetailDTO.getOrderId())
@@ -43,6 +45,7 @@ public class OrderDetailService implements IOrderDetailService {
                 .totalMoney(orderDetailDTO.getTotalMoney())
                 .color(orderDetailDTO.getColor())
                 .build();
+        orderRepository.touch(order.getId(), LocalDateTime.now());
         return orderDetailRepository.save(orderDetail);
     }
 
@@ -53,6 +56,7 @@ public class OrderDetailService implements IOrderDetailService {
     }
 
     @Override
+    @Transactional
     public OrderDetail updateOrderDetail(Long id, OrderDetailDTO orderDetailDTO) throws DataNotFoundException {
         // Tìm xem order detail có tồn tại không
         OrderDetail existingOrderDetail = orderDetailRepository.findById(id)
@@ -64,6 +68,10 @@ public class OrderDetailService implements IOrderDetailService {
         Product product = productRepository.findById(orderDetailDTO.getProductId())
                 .orElseThrow(() -> new DataNotFoundException("Cannot find Product with id: " + orderDetailDTO.getProductId()));
 
+        // Chi tiết có thể được chuyển sang đơn khác: đổi version của cả hai đơn
+        LocalDateTime now = LocalDateTime.now();
+        orderRepository.touch(existingOrderDetail.getOrder().getId(), now);
+        orderRepository.touch(existingOrder.getId(), now);
         existingOrderDetail.setPrice(orderDetailDTO.getPrice());
         existingOrderDetail.setNumberOfProducts(orderDetailDTO.getNumberOfProducts());
         existingOrderDetail.setTotalMoney(orderDetailDTO.getTotalMoney());
@@ -77,6 +85,8 @@ public class OrderDetailService implements IOrderDetailService {
     @Override
     @Transactional
     public void deleteById(Long id) {
+        orderDetailRepository.findById(id).ifPresent(orderDetail ->
+                orderRepository.touch(orderDetail.getOrder().getId(), LocalDateTime.now()));
         orderDetailRepository.deleteById(id);
     }
 
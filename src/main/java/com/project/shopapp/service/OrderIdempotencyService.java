@@ -0,0 +1,277 @@
+package com.project.shopapp.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.project.shopapp.dto.CartItemDTO;
+import com.project.shopapp.dto.OrderDTO;
+import com.project.shopapp.exception.DataNotFoundException;
+import com.project.shopapp.exception.IdempotencyKeyMismatchException;
+import com.project.shopapp.exception.RequestInProgressException;
+import com.project.shopapp.model.IdempotencyKey;
+import com.project.shopapp.model.Order;
+import com.project.shopapp.repository.IdempotencyKeyRepository;
+import com.project.shopapp.repository.OrderRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs {@link IOrderService#createOrder} at most once per Idempotency-Key. The key is recorded
+ * in the order's transaction, so a key exists exactly when its order exists. Replays are served
+ * from a bounded in-memory cache, then from idempotency_keys; a retry that arrives while the
+ * first request is still running waits for its result instead of creating a second order.
+ * A key reused with a different request body is refused rather than replayed.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderIdempotencyService implements IOrderIdempotencyService {
+    private static final Logger logger = LoggerFactory.getLogger(OrderIdempotencyService.class);
+    public static final int MAX_KEY_LENGTH = 100;
+
+    private static final String INSERT_KEY_SQL =
+            "INSERT INTO idempotency_keys (idempotency_key, order_id, request_hash, created_at, expires_at) " +
+                    "VALUES (?, ?, ?, ?, ?)";
+
+    private static final String DELETE_EXPIRED_KEY_SQL =
+            "DELETE FROM idempotency_keys WHERE idempotency_key = ? AND expires_at <= ?";
+
+    private static final String PURGE_EXPIRED_SQL =
+            "DELETE FROM idempotency_keys WHERE expires_at <= ? LIMIT ?";
+
+    @Value("${idempotency.ttl:24h}")
+    private Duration ttl;
+
+    @Value("${idempotency.cache-size:10000}")
+    private long cacheSize;
+
+    // Thời gian tối đa một request trùng key chờ request đầu tiên xử lý xong
+    @Value("${idempotency.wait-timeout:30s}")
+    private Duration waitTimeout;
+
+    @Value("${idempotency.purge-batch-size:1000}")
+    private int purgeBatchSize;
+
+    @Value("${idempotency.purge-pause-ms:100}")
+    private long purgePauseMillis;
+
+    private final IOrderService orderService;
+    private final OrderRepository orderRepository;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private Cache<String, Replay> replays;
+    private final ConcurrentHashMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    private record Replay(String requestHash, Order order) {
+    }
+
+    private record InFlight(String requestHash, CompletableFuture<Order> result) {
+    }
+
+    @PostConstruct
+    void initCache() {
+        replays = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, replays, "idempotency");
+    }
+
+    @Override
+    public Placement createOrder(Long callerId, String idempotencyKey, OrderDTO orderDTO) throws Exception {
+        // Key thuộc về người gọi đã xác thực: user_id trong body do client tự đặt, không dùng để dò key của người khác
+        String key = callerId + ":" + idempotencyKey;
+        String requestHash = requestHash(orderDTO);
+        Replay cached = replays.getIfPresent(key);
+        if (cached != null) {
+            checkSameRequest(cached.requestHash(), requestHash);
+            return new Placement(cached.order(), true);
+        }
+
+        InFlight current = new InFlight(requestHash, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(key, current);
+        if (running != null) {
+            checkSameRequest(running.requestHash(), requestHash);
+            return new Placement(await(running.result()), true);
+        }
+        CompletableFuture<Order> result = current.result();
+        try {
+            Placement placement = execute(key, requestHash, orderDTO);
+            replays.put(key, new Replay(requestHash, placement.order()));
+            result.complete(placement.order());
+            return placement;
+        } catch (Exception e) {
+            // Request đang chờ nhận cùng lỗi; key không được ghi nên client có thể gửi lại
+            result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, current);
+        }
+    }
+
+    private Placement execute(String key, String requestHash, OrderDTO orderDTO) throws Exception {
+        Order replayed = findOrder(key, requestHash);
+        if (replayed != null) {
+            return new Placement(replayed, true);
+        }
+        try {
+            Order order = transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                jdbcTemplate.update(DELETE_EXPIRED_KEY_SQL, key, Timestamp.valueOf(now));
+                Order created;
+                try {
+                    created = orderService.createOrder(orderDTO);
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CreateOrderException(e);
+                }
+                jdbcTemplate.update(INSERT_KEY_SQL, key, created.getId(), requestHash,
+                        Timestamp.valueOf(now), Timestamp.valueOf(now.plus(ttl)));
+                return created;
+            });
+            return new Placement(order, false);
+        } catch (CreateOrderException e) {
+            throw (Exception) e.getCause();
+        } catch (DuplicateKeyException e) {
+            // Instance khác đã tạo đơn cho key này trước: đơn của request này đã bị rollback
+            Order winner = findOrder(key, requestHash);
+            if (winner == null) throw e;
+            return new Placement(winner, true);
+        }
+    }
+
+    private Order findOrder(String key, String requestHash)
+            throws DataNotFoundException, IdempotencyKeyMismatchException {
+        IdempotencyKey stored = idempotencyKeyRepository.findById(key).orElse(null);
+        if (stored == null || !stored.getExpiresAt().isAfter(LocalDateTime.now())) {
+            return null;
+        }
+        if (stored.getRequestHash() != null) {
+            checkSameRequest(stored.getRequestHash(), requestHash);
+        }
+        return orderRepository.findById(stored.getOrderId())
+                .orElseThrow(() -> new DataNotFoundException("Cannot find order with id: " + stored.getOrderId()));
+    }
+
+    private static void checkSameRequest(String storedHash, String requestHash) throws IdempotencyKeyMismatchException {
+        if (!storedHash.equals(requestHash)) {
+            throw new IdempotencyKeyMismatchException("Idempotency-Key was already used with a different request");
+        }
+    }
+
+    /**
+     * SHA-256 of every field of the request, in a fixed order. Cart lines are hashed as sent,
+     * so reordering the cart counts as a different request.
+     */
+    static String requestHash(OrderDTO orderDTO) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder canonical = new StringBuilder();
+        for (Object field : new Object[]{orderDTO.getUserId(), orderDTO.getFullName(), orderDTO.getEmail(),
+                orderDTO.getPhoneNumber(), orderDTO.getStatus(), orderDTO.getAddress(), orderDTO.getNote(),
+                orderDTO.getTotalMoney(), orderDTO.getShippingMethod(), orderDTO.getShippingAddress(),
+                orderDTO.getShippingDate(), orderDTO.getPaymentMethod()}) {
+            appendField(canonical, field);
+        }
+        if (orderDTO.getCartItems() != null) {
+            for (CartItemDTO cartItem : orderDTO.getCartItems()) {
+                appendField(canonical, cartItem == null ? null : cartItem.getProductId());
+                appendField(canonical, cartItem == null ? null : cartItem.getQuantity());
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest(canonical.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Độ dài đứng trước giá trị để "ab"+"c" và "a"+"bc" không cho cùng một chuỗi; null khác chuỗi rỗng
+    private static void appendField(StringBuilder canonical, Object field) {
+        if (field == null) {
+            canonical.append("-;");
+            return;
+        }
+        String value = Objects.toString(field);
+        canonical.append(value.length()).append(':').append(value).append(';');
+    }
+
+    private Order await(CompletableFuture<Order> running) throws Exception {
+        try {
+            return running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } catch (TimeoutException e) {
+            throw new RequestInProgressException("A request with the same Idempotency-Key is still being processed");
+        }
+    }
+
+    @Scheduled(cron = "${idempotency.purge-cron:0 15 * * * *}")
+    public void scheduledPurge() {
+        try {
+            purgeExpired();
+        } catch (Exception e) {
+            logger.warn("Idempotency key purge stopped: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes expired keys in small batches so the purge never holds long locks.
+     */
+    @Override
+    public long purgeExpired() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now());
+        long purged = 0;
+        while (true) {
+            int deleted = jdbcTemplate.update(PURGE_EXPIRED_SQL, cutoff, purgeBatchSize);
+            purged += deleted;
+            if (deleted < purgeBatchSize) break;
+            if (purgePauseMillis > 0) {
+                try {
+                    Thread.sleep(purgePauseMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (purged > 0) {
+            logger.info("Purged {} expired idempotency keys", purged);
+        }
+        return purged;
+    }
+
+    // Chuyển checked exception của createOrder qua TransactionTemplate để transaction vẫn rollback
+    private static class CreateOrderException extends RuntimeException {
+        CreateOrderException(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.dto.OrderDTO;
+import com.project.shopapp.exception.DataNotFoundException;
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.exception.OrderQueueFullException;
+import com.project.shopapp.exception.OutOfStockException;
+import com.project.shopapp.model.Order;
+import com.project.shopapp.model.OrderDetail;
+import com.project.shopapp.model.Product;
+import com.project.shopapp.model.User;
+import com.project.shopapp.repository.ProductRepository;
+import com.project.shopapp.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group-commit path for order creation. Requests are validated on the calling thread and put
+ * on a bounded queue; a few writer threads take whatever has queued up, up to max-batch-size,
+ * and write all of it in one transaction with batched INSERTs. Each caller's future completes
+ * once the transaction holding its order has committed. A request that fails validation or
+ * is out of stock fails alone, but only once the batch has committed; if the whole batch fails,
+ * all of its orders, refused ones included, are retried one by one through
+ * {@link IOrderService#createOrder}.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderIngestionService implements IOrderIngestionService {
+    private static final Logger logger = LoggerFactory.getLogger(OrderIngestionService.class);
+    private static final String GROUP_COMMIT_MODE = "group-commit";
+
+    private static final String INSERT_ORDER_SQL =
+            "INSERT INTO orders (user_id, fullname, email, phone_number, address, note, order_date, status, " +
+            "total_money, shipping_method, shipping_address, shipping_date, payment_method, active, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // sync: mỗi request tự ghi đơn của mình; group-commit: ghi qua hàng đợi theo batch
+    @Value("${order-ingestion.mode:sync}")
+    private String mode;
+
+    @Value("${order-ingestion.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${order-ingestion.writer-threads:2}")
+    private int writerThreads;
+
+    @Value("${order-ingestion.max-batch-size:100}")
+    private int maxBatchSize;
+
+    @Value("${order-ingestion.shutdown-timeout:30s}")
+    private Duration shutdownTimeout;
+
+    private final IOrderService orderService;
+    private final UserRepository userRepository;
+    private final ProductRepository productRepository;
+    private final IProductSalesService productSalesService;
+    private final IStockService stockService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final TaskExecutor orderWriterExecutor;
+
+    private BlockingQueue<PendingOrder> queue;
+    // Đếm ngược khi từng writer dừng, để shutdown biết hàng đợi đã được xử lý hết
+    private CountDownLatch writersStopped;
+    private volatile boolean accepting = false;
+
+    private Timer queueLatency;
+    private Timer commitLatency;
+    private DistributionSummary batchSizes;
+    private Counter rejections;
+    private Counter fallbacks;
+
+    private record PendingOrder(OrderDTO orderDTO, Map<Long, Integer> quantities, long submittedAt,
+                                CompletableFuture<Order> result) {
+    }
+
+    private record WrittenOrder(PendingOrder pending, Order order) {
+    }
+
+    private record RefusedOrder(PendingOrder pending, Exception error) {
+    }
+
+    private record BatchResult(List<WrittenOrder> written, List<RefusedOrder> refused) {
+    }
+
+    @PostConstruct
+    void start() {
+        if (!isEnabled()) return;
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        queueLatency = Timer.builder("orders.ingestion.queue.latency")
+                .description("Time an order waits in the queue before its batch is written")
+                .register(meterRegistry);
+        commitLatency = Timer.builder("orders.ingestion.commit")
+                .description("Time spent writing and committing one batch of orders")
+                .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("orders.ingestion.batch.size")
+                .description("Orders written per transaction")
+                .register(meterRegistry);
+        rejections = Counter.builder("orders.ingestion.rejected")
+                .description("Orders refused because the queue was full")
+                .register(meterRegistry);
+        fallbacks = Counter.builder("orders.ingestion.fallbacks")
+                .description("Batches that failed and were retried one order at a time")
+                .register(meterRegistry);
+        Gauge.builder("orders.ingestion.queue.size", queue, BlockingQueue::size)
+                .register(meterRegistry);
+
+        accepting = true;
+        writersStopped = new CountDownLatch(writerThreads);
+        for (int i = 0; i < writerThreads; i++) {
+            orderWriterExecutor.execute(this::runWriter);
+        }
+        logger.info("Order ingestion in group-commit mode: {} writers, batches of up to {}", writerThreads, maxBatchSize);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return GROUP_COMMIT_MODE.equals(mode);
+    }
+
+    @Override
+    public CompletableFuture<Order> submit(OrderDTO orderDTO) throws InvalidParamException, OrderQueueFullException {
+        if (orderDTO.getUserId() == null) {
+            throw new InvalidParamException("user_id is required");
+        }
+        Map<Long, Integer> quantities = OrderService.mergeCartItems(orderDTO.getCartItems());
+        if (!accepting) {
+            throw new OrderQueueFullException("Order ingestion is not running");
+        }
+        PendingOrder pending = new PendingOrder(orderDTO, quantities, System.nanoTime(), new CompletableFuture<>());
+        if (!queue.offer(pending)) {
+            // Không chờ chỗ trống: client nhận 503 và tự thử lại thay vì giữ thread của request
+            rejections.increment();
+            throw new OrderQueueFullException("Too many orders are waiting, please retry");
+        }
+        return pending.result();
+    }
+
+    private void runWriter() {
+        try {
+            drainQueue();
+        } finally {
+            writersStopped.countDown();
+        }
+    }
+
+    private void drainQueue() {
+        List<PendingOrder> batch = new ArrayList<>(maxBatchSize);
+        while (accepting || !queue.isEmpty()) {
+            try {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                // Lấy hết những gì dồn lại trong lúc batch trước commit
+                queue.drainTo(batch, maxBatchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                logger.error("Order writer failed on a batch of {}", batch.size(), e);
+            } finally {
+                for (PendingOrder pending : batch) {
+                    pending.result().completeExceptionally(new IllegalStateException("Order was not written"));
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingOrder> batch) {
+        long now = System.nanoTime();
+        for (PendingOrder pending : batch) {
+            queueLatency.record(now - pending.submittedAt(), TimeUnit.NANOSECONDS);
+        }
+        batchSizes.record(batch.size());
+        BatchResult result;
+        try {
+            result = commitLatency.record(() -> transactionTemplate.execute(status -> writeBatch(batch)));
+        } catch (RuntimeException e) {
+            // Một đơn lỗi không được kéo cả batch lỗi theo: ghi lại từng đơn riêng
+            logger.warn("Batch of {} orders failed, retrying one by one: {}", batch.size(), e.getMessage());
+            fallbacks.increment();
+            for (PendingOrder pending : batch) {
+                if (pending.result().isDone()) continue;
+                try {
+                    pending.result().complete(orderService.createOrder(pending.orderDTO()));
+                } catch (Exception createError) {
+                    pending.result().completeExceptionally(createError);
+                }
+            }
+            return;
+        }
+        for (WrittenOrder order : result.written()) {
+            order.pending().result().complete(order.order());
+        }
+        // Chỉ báo lỗi sau khi batch commit: hàng mà các đơn cùng batch giữ giờ mới chắc chắn đã bán
+        for (RefusedOrder order : result.refused()) {
+            order.pending().result().completeExceptionally(order.error());
+        }
+    }
+
+    private BatchResult writeBatch(List<PendingOrder> batch) {
+        Set<Long> userIds = new HashSet<>();
+        Set<Long> productIds = new HashSet<>();
+        for (PendingOrder pending : batch) {
+            userIds.add(pending.orderDTO().getUserId());
+            productIds.addAll(pending.quantities().keySet());
+        }
+        Map<Long, User> users = new HashMap<>();
+        for (User user : userRepository.findAllById(userIds)) {
+            users.put(user.getId(), user);
+        }
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productRepository.findWithCategoryByIds(productIds)) {
+            products.put(product.getId(), product);
+        }
+
+        List<WrittenOrder> written = new ArrayList<>(batch.size());
+        List<RefusedOrder> refused = new ArrayList<>();
+        List<OrderService.PreparedOrder> prepared = new ArrayList<>(batch.size());
+        for (PendingOrder pending : batch) {
+            OrderDTO orderDTO = pending.orderDTO();
+            try {
+                User user = users.get(orderDTO.getUserId());
+                if (user == null) {
+                    throw new DataNotFoundException("Cannot find user with id: " + orderDTO.getUserId());
+                }
+                OrderService.PreparedOrder order = OrderService.prepareOrder(orderDTO, user, pending.quantities(), products);
+                // Hết hàng chỉ làm lỗi đơn này; batch rollback thì mọi phần đã giữ được trả lại
+                stockService.reserve(pending.quantities());
+                prepared.add(order);
+                written.add(new WrittenOrder(pending, order.order()));
+            } catch (DataNotFoundException | InvalidParamException | OutOfStockException e) {
+                // Chưa hoàn thành future: hết hàng có thể do đơn khác trong batch giữ, batch rollback thì
+                // đơn này được thử lại cùng các đơn khác
+                refused.add(new RefusedOrder(pending, e));
+            }
+        }
+        if (prepared.isEmpty()) return new BatchResult(written, refused);
+
+        insertOrders(prepared.stream().map(OrderService.PreparedOrder::order).toList());
+        List<OrderDetail> orderDetails = prepared.stream().flatMap(order -> order.orderDetails().stream()).toList();
+        OrderService.insertOrderDetails(jdbcTemplate, orderDetails);
+        productSalesService.recordOrders(orderDetails);
+        return new BatchResult(written, refused);
+    }
+
+    private void insertOrders(List<Order> orders) {
+        LocalDateTime now = LocalDateTime.now();
+        orders.forEach(order -> order.setUpdatedAt(now));
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_ORDER_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        Order order = orders.get(i);
+                        statement.setLong(1, order.getUser().getId());
+                        statement.setString(2, order.getFullName());
+                        statement.setString(3, order.getEmail());
+                        statement.setString(4, order.getPhoneNumber());
+                        statement.setString(5, order.getAddress());
+                        statement.setString(6, order.getNote());
+                        statement.setTimestamp(7, new Timestamp(order.getOrderDate().getTime()));
+                        statement.setString(8, order.getStatus());
+                        statement.setFloat(9, order.getTotalMoney());
+                        statement.setString(10, order.getShippingMethod());
+                        statement.setString(11, order.getShippingAddress());
+                        statement.setDate(12, java.sql.Date.valueOf(order.getShippingDate()));
+                        statement.setString(13, order.getPaymentMethod());
+                        statement.setBoolean(14, order.getActive());
+                        statement.setTimestamp(15, Timestamp.valueOf(order.getUpdatedAt()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return orders.size();
+                    }
+                },
+                keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < orders.size() && i < keys.size(); i++) {
+            Number id = (Number) keys.get(i).values().iterator().next();
+            orders.get(i).setId(id.longValue());
+        }
+    }
+
+    /**
+     * Stops accepting orders and lets the writers finish what is already queued.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (queue == null) return;
+        accepting = false;
+        try {
+            writersStopped.await(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingOrder> left = new ArrayList<>();
+        queue.drainTo(left);
+        for (PendingOrder pending : left) {
+            pending.result().completeExceptionally(new OrderQueueFullException("Order ingestion stopped"));
+        }
+        if (!left.isEmpty()) {
+            logger.warn("{} queued orders were not written before shutdown", left.size());
+        }
+    }
+}
@@ -3,27 +3,43 @@ package com.project.shopapp.service;
 import com.project.shopapp.dto.CartItemDTO;
 import com.project.shopapp.dto.OrderDTO;
 import com.project.shopapp.exception.DataNotFoundException;
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.exception.OutOfStockException;
 import com.project.shopapp.model.Order;
 import com.project.shopapp.model.OrderDetail;
 import com.project.shopapp.model.OrderStatus;
 import com.project.shopapp.model.Product;
 import com.project.shopapp.model.User;
 import com.project.shopapp.repository.OrderDetailRepository;
+import com.project.shopapp.repository.OrderListVersion;
 import com.project.shopapp.repository.OrderRepository;
 import com.project.shopapp.repository.ProductRepository;
 import com.project.shopapp.repository.UserRepository;
+import com.project.shopapp.response.KeysetPage;
 import com.project.shopapp.response.OrderResponse;
+import com.project.shopapp.utils.PageCursor;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -32,7 +48,15 @@ public class OrderService implements IOrderService {
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
     private final OrderDetailRepository orderDetailRepository;
-    private final ModelMapper modelMapper;
+    private final IProductSalesService productSalesService;
+    private final IStockService stockService;
+    private final JdbcTemplate jdbcTemplate;
+
+    // Số lượng tối đa của một sản phẩm trong một đơn (sau khi gộp các dòng trùng)
+    static final int MAX_QUANTITY_PER_PRODUCT = 10_000;
+
+    private static final String INSERT_ORDER_DETAIL_SQL =
+            "INSERT INTO order_details (order_id, product_id, price, number_of_products, total_money) VALUES (?, ?, ?, ?, ?)";
 
     @Override
     @Transactional
@@ -41,14 +65,71 @@ public class OrderService implements IOrderService {
         User user = userRepository.findById(orderDTO.getUserId())
                 .orElseThrow(() -> new DataNotFoundException("Cannot find user with id: " + orderDTO.getUserId()));
 
-        modelMapper.typeMap(OrderDTO.class, Order.class)
-                .addMappings(mapper -> mapper.skip(Order::setId));
+        // Gộp các dòng cùng sản phẩm rồi lấy toàn bộ sản phẩm của giỏ bằng một câu query
+        Map<Long, Integer> quantities = mergeCartItems(orderDTO.getCartItems());
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productRepository.findWithCategoryByIds(quantities.keySet())) {
+            products.put(product.getId(), product);
+        }
+        PreparedOrder prepared = prepareOrder(orderDTO, user, quantities, products);
+        // Giữ hàng trước khi ghi; transaction rollback thì StockService tự trả lại
+        stockService.reserve(quantities);
+
+        orderRepository.save(prepared.order());
+        insertOrderDetails(jdbcTemplate, prepared.orderDetails());
+        productSalesService.recordOrder(prepared.order(), prepared.orderDetails());
+        return prepared.order();
+    }
 
-        Order order = new Order();
-        modelMapper.map(orderDTO, order);
-        order.setUser(user);
-        order.setOrderDate(new Date());
-        order.setStatus(OrderStatus.PENDING);
+    /**
+     * An order and its lines, validated and priced but not yet written.
+     */
+    record PreparedOrder(Order order, List<OrderDetail> orderDetails) {
+    }
+
+    static Map<Long, Integer> mergeCartItems(List<CartItemDTO> cartItems) throws InvalidParamException {
+        if (cartItems == null || cartItems.isEmpty()) {
+            throw new InvalidParamException("Cart is empty");
+        }
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (CartItemDTO cartItem : cartItems) {
+            if (cartItem.getProductId() == null) {
+                throw new InvalidParamException("Cart item without product_id");
+            }
+            if (cartItem.getQuantity() == null || cartItem.getQuantity() <= 0) {
+                throw new InvalidParamException("Invalid quantity for product " + cartItem.getProductId());
+            }
+            // Cộng dồn bằng long: giỏ hàng cố tình gửi số lớn không được làm tràn int
+            long merged = (long) quantities.getOrDefault(cartItem.getProductId(), 0) + cartItem.getQuantity();
+            if (merged > MAX_QUANTITY_PER_PRODUCT) {
+                throw new InvalidParamException("Quantity of product " + cartItem.getProductId()
+                        + " cannot exceed " + MAX_QUANTITY_PER_PRODUCT);
+            }
+            quantities.put(cartItem.getProductId(), (int) merged);
+        }
+        return quantities;
+    }
+
+    /**
+     * Builds an order from the request and the already loaded products of its cart.
+     * {@code products} may hold more products than the cart needs.
+     */
+    static PreparedOrder prepareOrder(OrderDTO orderDTO, User user, Map<Long, Integer> quantities,
+                                      Map<Long, Product> products) throws DataNotFoundException, InvalidParamException {
+        // Chỉ chép các trường khách được phép gửi; id, trạng thái và tiền do server đặt
+        Order order = Order.builder()
+                .user(user)
+                .fullName(orderDTO.getFullName())
+                .email(orderDTO.getEmail())
+                .phoneNumber(orderDTO.getPhoneNumber())
+                .address(orderDTO.getAddress())
+                .note(orderDTO.getNote())
+                .shippingMethod(orderDTO.getShippingMethod())
+                .shippingAddress(orderDTO.getShippingAddress())
+                .paymentMethod(orderDTO.getPaymentMethod())
+                .orderDate(new Date())
+                .status(OrderStatus.PENDING)
+                .build();
 
         // Kiểm tra shipping date phải >= ngày hôm nay
         LocalDate shippingDate = orderDTO.getShippingDate() == null ? LocalDate.now() : orderDTO.getShippingDate();
@@ -57,35 +138,71 @@ public class OrderService implements IOrderService {
         }
         order.setShippingDate(shippingDate);
         order.setActive(true);
-        order.setTotalMoney(orderDTO.getTotalMoney());
 
-        // Tạo danh sah các đối tượng OrderDetail từ cartItems
-        List<OrderDetail> orderDetails = new ArrayList<>();
-        for (CartItemDTO cartItemDTO : orderDTO.getCartItems()) {
-            // Tạo một đối tượng OrderDetail từ CartItemDTO
-            OrderDetail orderDetail = new OrderDetail();
-            orderDetail.setOrder(order);
-
-            // Lấy thông tin sản phẩm từ cartItemDTO
-            Long productId = cartItemDTO.getProductId();
-            int quantity = cartItemDTO.getQuantity();
-
-            // Tìm thông tin sản phẩm từ CSDL
-            Product product = productRepository.findById(productId)
-                    .orElseThrow(() -> new DataNotFoundException("Cannot find product with id: " + productId));
+        List<Long> missingIds = quantities.keySet().stream().filter(id -> !products.containsKey(id)).toList();
+        if (!missingIds.isEmpty()) {
+            throw new DataNotFoundException("Cannot find products with ids: " + missingIds);
+        }
+        List<Long> unpricedIds = quantities.keySet().stream().filter(id -> products.get(id).getPrice() == null).toList();
+        if (!unpricedIds.isEmpty()) {
+            throw new InvalidParamException("Products without a price: " + unpricedIds);
+        }
 
-            // Đặt thông tin cho OrderDetail
-            orderDetail.setProduct(product);
-            orderDetail.setNumberOfProducts(quantity);
-            orderDetail.setPrice(product.getPrice());
+        // Giá và thành tiền tính ở server, không tin total_money client gửi lên
+        List<OrderDetail> orderDetails = new ArrayList<>(quantities.size());
+        double totalMoney = 0;
+        for (Map.Entry<Long, Integer> item : quantities.entrySet()) {
+            Product product = products.get(item.getKey());
+            int quantity = item.getValue();
+            float lineTotal = product.getPrice() * quantity;
+            orderDetails.add(OrderDetail.builder()
+                    .order(order)
+                    .product(product)
+                    .price(product.getPrice())
+                    .numberOfProducts(quantity)
+                    .totalMoney(lineTotal)
+                    .build());
+            totalMoney += lineTotal;
+        }
+        order.setTotalMoney((float) totalMoney);
+        return new PreparedOrder(order, orderDetails);
+    }
 
-            // Thêm OrderDetail vào danh sách
-            orderDetails.add(orderDetail);
+    static Map<Long, Integer> quantitiesOf(List<OrderDetail> orderDetails) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (OrderDetail orderDetail : orderDetails) {
+            quantities.merge(orderDetail.getProduct().getId(), orderDetail.getNumberOfProducts(), Integer::sum);
         }
+        return quantities;
+    }
 
-        orderDetailRepository.saveAll(orderDetails);
-        orderRepository.save(order);
-        return order;
+    // Một batch INSERT cho mọi dòng: với IDENTITY, Hibernate sẽ insert từng dòng một
+    static void insertOrderDetails(JdbcTemplate jdbcTemplate, List<OrderDetail> orderDetails) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_ORDER_DETAIL_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        OrderDetail orderDetail = orderDetails.get(i);
+                        statement.setLong(1, orderDetail.getOrder().getId());
+                        statement.setLong(2, orderDetail.getProduct().getId());
+                        statement.setFloat(3, orderDetail.getPrice());
+                        statement.setInt(4, orderDetail.getNumberOfProducts());
+                        statement.setFloat(5, orderDetail.getTotalMoney());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return orderDetails.size();
+                    }
+                },
+                keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < orderDetails.size() && i < keys.size(); i++) {
+            Number id = (Number) keys.get(i).values().iterator().next();
+            orderDetails.get(i).setId(id.longValue());
+        }
     }
 
     @Override
@@ -93,14 +210,26 @@ public class OrderService implements IOrderService {
         return orderRepository.findById(orderId).orElse(null);
     }
 
+    // Chỉ đọc updated_at để controller trả 304 trước khi load đơn và chi tiết đơn
+    @Override
+    public LocalDateTime getOrderLastModified(Long orderId) {
+        return orderRepository.findUpdatedAtById(orderId).orElse(null);
+    }
+
+    @Override
+    public OrderListVersion getUserOrdersVersion(Long userId) {
+        return orderRepository.findVersionByUserId(userId);
+    }
+
     @Override
     @Transactional
-    public Order updateOrder(Long id, OrderDTO orderDTO) throws DataNotFoundException {
+    public Order updateOrder(Long id, OrderDTO orderDTO) throws DataNotFoundException, OutOfStockException {
         Order order = orderRepository.findById(id)
                 .orElseThrow(() -> new DataNotFoundException("Cannot find order with id: " + id));
 
         User existingUser = userRepository.findById(orderDTO.getUserId())
                 .orElseThrow(() -> new DataNotFoundException("Cannot find user with id: " + id));
+        String previousStatus = order.getStatus();
 
         if (orderDTO.getUserId() != null) {
             User user = new User();
@@ -153,6 +282,16 @@ public class OrderService implements IOrderService {
         }
 
         order.setUser(existingUser);
+        // Đơn bị huỷ (hoặc mở lại) qua API cập nhật cũng phải trừ (hoặc cộng lại) số lượng đã bán
+        boolean wasCancelled = OrderStatus.CANCELLED.equals(previousStatus);
+        boolean isCancelled = OrderStatus.CANCELLED.equals(order.getStatus());
+        if (!wasCancelled && isCancelled) {
+            stockService.release(quantitiesOf(orderDetailRepository.findByOrderId(id)));
+            productSalesService.recordCancellation(order);
+        } else if (wasCancelled && !isCancelled) {
+            stockService.reserve(quantitiesOf(orderDetailRepository.findByOrderId(id)));
+            productSalesService.recordReinstatement(order);
+        }
         return orderRepository.save(order);
     }
 
@@ -179,6 +318,17 @@ public class OrderService implements IOrderService {
         return orderRepository.findByKeyword(keyword, pageable);
     }
 
+    @Override
+    public KeysetPage<Order> getOrdersByKeywordAfter(String keyword, PageCursor cursor, int limit) {
+        long afterId = cursor == null ? 0 : cursor.getLastId();
+        Slice<Order> slice = orderRepository.findByKeywordAfterId(keyword, afterId, PageRequest.of(0, limit));
+        List<Order> orders = slice.getContent();
+        String nextCursor = slice.hasNext() && !orders.isEmpty()
+                ? PageCursor.afterId(orders.get(orders.size() - 1).getId()).encode()
+                : null;
+        return new KeysetPage<>(orders, nextCursor);
+    }
+
     @Override
     @Transactional
     public Order updateOrderStatus(Long id, String status) throws DataNotFoundException {
@@ -212,6 +362,12 @@ public class OrderService implements IOrderService {
             }
         }
 
+        if (status.equals(OrderStatus.CANCELLED)) {
+            // Trả hàng về kho sau khi việc huỷ đơn đã commit
+            stockService.release(quantitiesOf(orderDetailRepository.findByOrderId(id)));
+            productSalesService.recordCancellation(order);
+        }
+
         // Cập nhật trạng thái đơn hàng
         order.setStatus(status);
 
@@ -0,0 +1,161 @@
+package com.project.shopapp.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.repository.ProductRepository;
+import com.project.shopapp.repository.ProductSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+public class ProductExportService implements IProductExportService {
+    private static final Logger logger = LoggerFactory.getLogger(ProductExportService.class);
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_NDJSON = "ndjson";
+    // Cùng tên cột với file import để có thể import lại file export
+    private static final String CSV_HEADER = "id,name,price,thumbnail,description,category_id,created_at,updated_at\n";
+
+    private final ProductRepository productRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final int fetchSize;
+
+    public ProductExportService(ProductRepository productRepository,
+                                ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${product-export.fetch-size:" + Integer.MIN_VALUE + "}") int fetchSize) {
+        this.productRepository = productRepository;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    @Override
+    public void validateFormat(String format) throws InvalidParamException {
+        if (!FORMAT_CSV.equals(format) && !FORMAT_NDJSON.equals(format)) {
+            throw new InvalidParamException("Unsupported export format: " + format);
+        }
+    }
+
+    /**
+     * Streams every product to the output in id order and returns the number of rows written.
+     * Rows are read through a forward-only cursor, so memory use does not depend on catalog size.
+     */
+    @Override
+    public long exportProducts(OutputStream outputStream, String format) throws IOException {
+        long startedAt = System.currentTimeMillis();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 64 * 1024);
+        Long rows;
+        try {
+            // Stream của JPA chỉ dùng được bên trong transaction
+            rows = readOnlyTransactionTemplate.execute(status -> {
+                try (Stream<ProductSummary> products = productRepository.streamAllSummaries(fetchSize)) {
+                    return FORMAT_CSV.equals(format) ? writeCsv(products, writer) : writeNdjson(products, writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        logger.info("Exported {} products as {} in {} ms", rows, format, System.currentTimeMillis() - startedAt);
+        return rows == null ? 0 : rows;
+    }
+
+    private long writeNdjson(Stream<ProductSummary> products, Writer writer) throws IOException {
+        long rows = 0;
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        Iterator<ProductSummary> iterator = products.iterator();
+        while (iterator.hasNext()) {
+            ProductSummary product = iterator.next();
+            generator.writeStartObject();
+            generator.writeNumberField("id", product.getId());
+            generator.writeStringField("name", product.getName());
+            if (product.getPrice() != null) {
+                generator.writeNumberField("price", product.getPrice());
+            } else {
+                generator.writeNullField("price");
+            }
+            generator.writeStringField("thumbnail", product.getThumbnail());
+            generator.writeStringField("description", product.getDescription());
+            if (product.getCategoryId() != null) {
+                generator.writeNumberField("category_id", product.getCategoryId());
+            } else {
+                generator.writeNullField("category_id");
+            }
+            generator.writeStringField("created_at", format(product.getCreatedAt()));
+            generator.writeStringField("updated_at", format(product.getUpdatedAt()));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            rows++;
+        }
+        generator.flush();
+        return rows;
+    }
+
+    private long writeCsv(Stream<ProductSummary> products, Writer writer) throws IOException {
+        long rows = 0;
+        writer.write(CSV_HEADER);
+        Iterator<ProductSummary> iterator = products.iterator();
+        while (iterator.hasNext()) {
+            ProductSummary product = iterator.next();
+            writer.write(String.valueOf(product.getId()));
+            writer.write(',');
+            writeCsvField(writer, product.getName());
+            writer.write(',');
+            writer.write(product.getPrice() != null ? String.valueOf(product.getPrice()) : "");
+            writer.write(',');
+            writeCsvField(writer, product.getThumbnail());
+            writer.write(',');
+            writeCsvField(writer, product.getDescription());
+            writer.write(',');
+            writer.write(product.getCategoryId() != null ? String.valueOf(product.getCategoryId()) : "");
+            writer.write(',');
+            writeCsvField(writer, format(product.getCreatedAt()));
+            writer.write(',');
+            writeCsvField(writer, format(product.getUpdatedAt()));
+            writer.write('\n');
+            rows++;
+        }
+        return rows;
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) return;
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static String format(LocalDateTime dateTime) {
+        return dateTime == null ? null : dateTime.toString();
+    }
+}
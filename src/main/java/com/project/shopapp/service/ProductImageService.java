@@ -0,0 +1,203 @@
+package com.project.shopapp.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.project.shopapp.component.BlobStore;
+import com.project.shopapp.component.ImageVariantPipeline;
+import com.project.shopapp.component.LegacyImageDirectory;
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.model.ProductImageVariant;
+import com.project.shopapp.repository.ProductImageVariantRepository;
+import com.project.shopapp.utils.ImageFormat;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Stores product images in the configured {@link BlobStore}. Blob metadata comes from the
+ * blob name and the store's index; legacy files are hashed once and their metadata cached.
+ */
+@Service
+public class ProductImageService implements IProductImageService {
+    private static final Logger logger = LoggerFactory.getLogger(ProductImageService.class);
+
+    private final BlobStore blobStore;
+    private final LegacyImageDirectory legacyImageDirectory;
+    private final ImageVariantPipeline imageVariantPipeline;
+    private final ProductImageVariantRepository variantRepository;
+    private final long maxCachedFileSize;
+    private final Cache<String, StoredImage> metadataCache;
+    private final Cache<String, byte[]> contentCache;
+    private final Cache<String, Optional<String>> variantCache;
+
+    public ProductImageService(
+            BlobStore blobStore,
+            LegacyImageDirectory legacyImageDirectory,
+            ImageVariantPipeline imageVariantPipeline,
+            ProductImageVariantRepository variantRepository,
+            @Value("${product-image.metadata-cache-size:10000}") long metadataCacheSize,
+            @Value("${product-image.hot-cache-max-bytes:33554432}") long hotCacheMaxBytes,
+            @Value("${product-image.hot-cache-max-file-size:65536}") long maxCachedFileSize,
+            MeterRegistry meterRegistry
+    ) {
+        this.blobStore = blobStore;
+        this.legacyImageDirectory = legacyImageDirectory;
+        this.imageVariantPipeline = imageVariantPipeline;
+        this.variantRepository = variantRepository;
+        this.maxCachedFileSize = maxCachedFileSize;
+        this.metadataCache = Caffeine.newBuilder()
+                .maximumSize(metadataCacheSize)
+                .build();
+        // Giới hạn theo tổng số byte, không theo số lượng ảnh
+        this.contentCache = Caffeine.newBuilder()
+                .maximumWeight(hotCacheMaxBytes)
+                .weigher((String name, byte[] content) -> content.length)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, contentCache, "productImageContent");
+        // Cả kết quả "chưa có variant" cũng được cache, nhưng chỉ trong thời gian ngắn
+        this.variantCache = Caffeine.newBuilder()
+                .maximumSize(metadataCacheSize)
+                .expireAfterWrite(Duration.ofMinutes(1))
+                .build();
+    }
+
+    @Override
+    public String storeImage(MultipartFile file) throws IOException, InvalidParamException {
+        byte[] signature;
+        try (InputStream inputStream = file.getInputStream()) {
+            signature = inputStream.readNBytes(ImageFormat.SIGNATURE_LENGTH);
+        }
+        ImageFormat format = ImageFormat.detect(signature);
+        if (format == null) {
+            throw new InvalidParamException("Invalid image file format");
+        }
+        BlobStore.Blob blob;
+        try (InputStream inputStream = file.getInputStream()) {
+            blob = blobStore.store(inputStream, format.getExtension());
+        }
+        if (blob.deduplicated()) {
+            logger.debug("Image upload reused existing blob {}", blob.name());
+        }
+        imageVariantPipeline.submit(blob.name());
+        return blob.name();
+    }
+
+    @Override
+    public String findVariant(String imageName, String size) {
+        return variantCache.get(imageName + "|" + size, key -> variantRepository
+                        .findBySourceUrlAndSize(imageName, size)
+                        .map(ProductImageVariant::getImageUrl))
+                .orElse(null);
+    }
+
+    @Override
+    public StoredImage getImage(String imageName) throws IOException {
+        if (BlobStore.isBlobName(imageName)) {
+            // Vị trí blob có thể đổi (compact pack) nên không cache, tra cứu luôn rẻ
+            BlobStore.BlobLocation location = blobStore.locate(imageName);
+            if (location == null) return null;
+            // Tên blob đã chứa hash nội dung và đuôi file theo định dạng thật: không cần đọc file
+            ImageFormat format = ImageFormat.fromExtension(imageName.substring(imageName.indexOf('.') + 1));
+            return new StoredImage(
+                    imageName,
+                    location.file(),
+                    location.offset(),
+                    location.size(),
+                    format != null ? format.getContentType() : "application/octet-stream",
+                    "\"" + BlobStore.hashOf(imageName).substring(0, 32) + "\"",
+                    location.lastModified());
+        }
+        Path path = legacyImageDirectory.resolve(imageName);
+        if (path == null) return null;
+        try {
+            return metadataCache.get(imageName, name -> {
+                try {
+                    return Files.isRegularFile(path) ? loadLegacy(path) : null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public byte[] getCachedContent(StoredImage image) throws IOException {
+        if (image.size() > maxCachedFileSize) return null;
+        try {
+            return contentCache.get(image.name(), name -> {
+                try {
+                    return blobStore.read(new BlobStore.BlobLocation(
+                            image.path(), image.offset(), image.size(), image.lastModified()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public void evict(String imageName) {
+        metadataCache.invalidate(imageName);
+        contentCache.invalidate(imageName);
+        for (String size : ProductImageVariant.SIZES) {
+            variantCache.invalidate(imageName + "|" + size);
+        }
+    }
+
+    // Ảnh cũ (chưa chuyển sang store theo hash): nhận diện định dạng và tính hash một lần
+    private StoredImage loadLegacy(Path path) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] signature = null;
+        try (InputStream inputStream = new DigestInputStream(Files.newInputStream(path), digest)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                if (signature == null) {
+                    signature = Arrays.copyOf(buffer, Math.min(read, ImageFormat.SIGNATURE_LENGTH));
+                }
+            }
+        }
+        ImageFormat format = ImageFormat.detect(signature);
+        if (format == null) {
+            logger.warn("Stored image {} has an unknown format", path.getFileName());
+        }
+        return new StoredImage(
+                path.getFileName().toString(),
+                path,
+                0,
+                Files.size(path),
+                format != null ? format.getContentType() : "application/octet-stream",
+                "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"",
+                Files.getLastModifiedTime(path).toMillis());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
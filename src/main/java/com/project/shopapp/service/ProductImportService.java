@@ -0,0 +1,336 @@
+package com.project.shopapp.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.shopapp.dto.ProductDTO;
+import com.project.shopapp.event.ProductsImportedEvent;
+import com.project.shopapp.exception.DataNotFoundException;
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.model.Category;
+import com.project.shopapp.repository.CategoryRepository;
+import com.project.shopapp.repository.ProductRepository;
+import com.project.shopapp.response.ProductImportReport;
+import com.project.shopapp.utils.CsvReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class ProductImportService implements IProductImportService {
+    private static final Logger logger = LoggerFactory.getLogger(ProductImportService.class);
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_NDJSON = "ndjson";
+    private static final int MAX_ERRORS_IN_RESPONSE = 20;
+    private static final int MAX_NAME_LENGTH = 350;
+    private static final int MAX_THUMBNAIL_LENGTH = 300;
+    private static final String INSERT_PRODUCT_SQL =
+            "INSERT INTO products (name, price, thumbnail, description, category_id, created_at, updated_at) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${product-import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${product-import.report-dir:import-reports}")
+    private String reportDir;
+
+    @Override
+    public ProductImportReport importProducts(InputStream inputStream, String format)
+            throws IOException, InvalidParamException {
+        if (!FORMAT_CSV.equals(format) && !FORMAT_NDJSON.equals(format)) {
+            throw new InvalidParamException("Unsupported import format: " + format);
+        }
+        long startedAt = System.currentTimeMillis();
+        String importId = UUID.randomUUID().toString();
+        long maxIdBefore = productRepository.findMaxId();
+
+        try (ImportJob job = new ImportJob(importId);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            if (FORMAT_CSV.equals(format)) {
+                readCsv(reader, job);
+            } else {
+                readNdjson(reader, job);
+            }
+            job.flush();
+
+            long elapsedMs = Math.max(1, System.currentTimeMillis() - startedAt);
+            logger.info("Product import {}: {} rows, {} imported, {} duplicates, {} failed in {} ms",
+                    importId, job.totalRows, job.imported, job.duplicates, job.failed, elapsedMs);
+            if (job.imported > 0) {
+                eventPublisher.publishEvent(new ProductsImportedEvent(maxIdBefore, (int) job.imported));
+            }
+            return ProductImportReport.builder()
+                    .importId(importId)
+                    .format(format)
+                    .totalRows(job.totalRows)
+                    .imported(job.imported)
+                    .duplicates(job.duplicates)
+                    .failed(job.failed)
+                    .elapsedMs(elapsedMs)
+                    .rowsPerSecond(job.totalRows * 1000 / elapsedMs)
+                    .errorReport(job.hasErrorReport() ? importId : null)
+                    .errors(job.sampleErrors)
+                    .build();
+        }
+    }
+
+    @Override
+    public Path getErrorReport(String importId) throws DataNotFoundException {
+        try {
+            // Chỉ chấp nhận UUID để không đọc được file ngoài thư mục báo cáo
+            UUID.fromString(importId);
+        } catch (IllegalArgumentException e) {
+            throw new DataNotFoundException("Cannot find import report: " + importId);
+        }
+        Path report = Paths.get(reportDir, importId + ".csv");
+        if (!Files.exists(report)) {
+            throw new DataNotFoundException("Cannot find import report: " + importId);
+        }
+        return report;
+    }
+
+    private void readCsv(BufferedReader reader, ImportJob job) throws IOException, InvalidParamException {
+        CsvReader csvReader = new CsvReader(reader);
+        List<String> header = csvReader.readRecord();
+        if (header == null) return;
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("name")) {
+            throw new InvalidParamException("CSV header must contain a name column");
+        }
+        List<String> record;
+        while ((record = csvReader.readRecord()) != null) {
+            if (record.size() == 1 && record.get(0).isBlank()) continue;
+            long line = csvReader.getRecordLineNumber();
+            job.totalRows++;
+            ProductDTO productDTO;
+            try {
+                productDTO = ProductDTO.builder()
+                        .name(column(record, columns, "name"))
+                        .price(parseFloat(column(record, columns, "price")))
+                        .thumbnail(column(record, columns, "thumbnail"))
+                        .description(column(record, columns, "description"))
+                        .categoryId(parseLong(column(record, columns, "category_id")))
+                        .build();
+            } catch (NumberFormatException e) {
+                job.reject(line, column(record, columns, "name"), "Invalid number: " + e.getMessage());
+                continue;
+            }
+            job.accept(line, productDTO);
+        }
+    }
+
+    private void readNdjson(BufferedReader reader, ImportJob job) throws IOException {
+        String json;
+        long line = 0;
+        while ((json = reader.readLine()) != null) {
+            line++;
+            if (json.isBlank()) continue;
+            job.totalRows++;
+            ProductDTO productDTO;
+            try {
+                productDTO = objectMapper.readValue(json, ProductDTO.class);
+            } catch (JsonProcessingException e) {
+                job.reject(line, null, "Invalid JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            job.accept(line, productDTO);
+        }
+    }
+
+    private static String column(List<String> record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= record.size()) return null;
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Float parseFloat(String value) {
+        return value == null ? null : Float.parseFloat(value);
+    }
+
+    private static Long parseLong(String value) {
+        return value == null ? null : Long.parseLong(value);
+    }
+
+    private static String nameKey(String name) {
+        // Collation của MySQL không phân biệt hoa thường nên so sánh theo dạng lowercase
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String csvEscape(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * State of a single import: category map, known names, the pending batch and the error report.
+     */
+    private class ImportJob implements Closeable {
+        private final String importId;
+        private final Map<Long, Category> categories;
+        private final Set<String> knownNames = new HashSet<>();
+        private final List<Object[]> batch = new ArrayList<>();
+        private final List<Long> batchLines = new ArrayList<>();
+        private final List<String> batchNames = new ArrayList<>();
+        private final List<ProductImportReport.RowError> sampleErrors = new ArrayList<>();
+        private BufferedWriter errorWriter;
+        private long totalRows;
+        private long imported;
+        private long duplicates;
+        private long failed;
+
+        ImportJob(String importId) {
+            this.importId = importId;
+            this.categories = categoryRepository.findAll()
+                    .stream()
+                    .collect(Collectors.toMap(Category::getId, Function.identity()));
+            for (String name : productRepository.findAllNames()) {
+                if (name != null) knownNames.add(nameKey(name));
+            }
+        }
+
+        void accept(long line, ProductDTO productDTO) throws IOException {
+            String error = validate(productDTO);
+            if (error != null) {
+                reject(line, productDTO.getName(), error);
+                return;
+            }
+            if (!knownNames.add(nameKey(productDTO.getName()))) {
+                duplicates++;
+                writeError(line, productDTO.getName(), "Duplicate product name");
+                return;
+            }
+            batch.add(new Object[]{
+                    productDTO.getName().trim(),
+                    productDTO.getPrice(),
+                    productDTO.getThumbnail(),
+                    productDTO.getDescription(),
+                    productDTO.getCategoryId(),
+                    null,
+                    null
+            });
+            batchLines.add(line);
+            batchNames.add(productDTO.getName());
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private String validate(ProductDTO productDTO) {
+            Set<ConstraintViolation<ProductDTO>> violations = validator.validate(productDTO);
+            if (!violations.isEmpty()) {
+                return violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining("; "));
+            }
+            if (productDTO.getName().trim().length() > MAX_NAME_LENGTH) {
+                return "Name is too long";
+            }
+            if (productDTO.getThumbnail() != null && productDTO.getThumbnail().length() > MAX_THUMBNAIL_LENGTH) {
+                return "Thumbnail is too long";
+            }
+            if (productDTO.getCategoryId() == null || !categories.containsKey(productDTO.getCategoryId())) {
+                return "Cannot find category with id: " + productDTO.getCategoryId();
+            }
+            return null;
+        }
+
+        // Mỗi batch là một transaction riêng: batch lỗi không làm mất các batch đã commit
+        void flush() throws IOException {
+            if (batch.isEmpty()) return;
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            for (Object[] row : batch) {
+                row[5] = now;
+                row[6] = now;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate(INSERT_PRODUCT_SQL, batch));
+                imported += batch.size();
+            } catch (RuntimeException e) {
+                logger.warn("Product import {}: batch of {} rows failed: {}", importId, batch.size(), e.getMessage());
+                for (int i = 0; i < batch.size(); i++) {
+                    knownNames.remove(nameKey(batchNames.get(i)));
+                    reject(batchLines.get(i), batchNames.get(i), "Batch insert failed: " + e.getMessage());
+                }
+            }
+            batch.clear();
+            batchLines.clear();
+            batchNames.clear();
+        }
+
+        void reject(long line, String name, String error) throws IOException {
+            failed++;
+            writeError(line, name, error);
+        }
+
+        private void writeError(long line, String name, String error) throws IOException {
+            if (sampleErrors.size() < MAX_ERRORS_IN_RESPONSE) {
+                sampleErrors.add(new ProductImportReport.RowError(line, name, error));
+            }
+            if (errorWriter == null) {
+                Path dir = Paths.get(reportDir);
+                Files.createDirectories(dir);
+                errorWriter = Files.newBufferedWriter(dir.resolve(importId + ".csv"), StandardCharsets.UTF_8);
+                errorWriter.write("line,name,error\n");
+            }
+            errorWriter.write(line + "," + csvEscape(name) + "," + csvEscape(error) + "\n");
+        }
+
+        boolean hasErrorReport() {
+            return errorWriter != null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (errorWriter != null) {
+                errorWriter.close();
+            }
+        }
+    }
+}
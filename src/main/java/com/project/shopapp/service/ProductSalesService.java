@@ -0,0 +1,374 @@
+package com.project.shopapp.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.model.Order;
+import com.project.shopapp.model.OrderDetail;
+import com.project.shopapp.model.OrderStatus;
+import com.project.shopapp.model.Product;
+import com.project.shopapp.repository.OrderDetailRepository;
+import com.project.shopapp.response.Bestseller;
+import com.project.shopapp.response.SalesReconcileReport;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Maintains product_sales_daily, the units sold per product and day, and ranks bestsellers
+ * from it. Orders add their lines when they are created and subtract them when cancelled, in
+ * the order's own transaction. The reconciliation job recomputes every row from order_details
+ * and reports how far the table had drifted.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductSalesService implements IProductSalesService {
+    private static final Logger logger = LoggerFactory.getLogger(ProductSalesService.class);
+    private static final int MAX_DAYS = 365;
+    private static final int MAX_LIMIT = 100;
+    private static final int MAX_REPORTED_DRIFTS = 500;
+    // Trùng với serverTimezone=UTC của JDBC url: ngày bán tính giống CAST(order_date AS DATE)
+    private static final ZoneOffset SALES_ZONE = ZoneOffset.UTC;
+
+    private static final String ADD_SALES_SQL =
+            "INSERT INTO product_sales_daily (product_id, sale_date, category_id, quantity) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity), category_id = VALUES(category_id)";
+
+    private static final String SET_SALES_SQL =
+            "INSERT INTO product_sales_daily (product_id, sale_date, category_id, quantity) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE quantity = VALUES(quantity), category_id = VALUES(category_id)";
+
+    private static final String DELETE_SALES_SQL =
+            "DELETE FROM product_sales_daily WHERE product_id = ? AND sale_date = ?";
+
+    private static final String BESTSELLERS_SQL =
+            "SELECT product_id, SUM(quantity) AS sold FROM product_sales_daily WHERE sale_date >= ? " +
+            "GROUP BY product_id HAVING SUM(quantity) > 0 ORDER BY sold DESC, product_id LIMIT ?";
+
+    private static final String CATEGORY_BESTSELLERS_SQL =
+            "SELECT product_id, SUM(quantity) AS sold FROM product_sales_daily WHERE category_id = ? AND sale_date >= ? " +
+            "GROUP BY product_id HAVING SUM(quantity) > 0 ORDER BY sold DESC, product_id LIMIT ?";
+
+    private static final String PRODUCTS_AFTER_SQL =
+            "SELECT id, category_id FROM products WHERE id > ? ORDER BY id LIMIT ?";
+
+    // Khoá các dòng của nhóm sản phẩm trước khi đếm lại: đơn hàng đang ghi phải chờ hoặc đã commit.
+    // Chunk chạy ở READ COMMITTED để câu đếm sau đó thấy mọi đơn đã commit trước khi lấy được khoá
+    private static final String LOCK_SALES_SQL =
+            "SELECT product_id, sale_date, category_id, quantity FROM product_sales_daily " +
+            "WHERE product_id IN (%s) FOR UPDATE";
+
+    private static final String COUNT_SALES_SQL =
+            "SELECT od.product_id, CAST(o.order_date AS DATE) AS sale_date, SUM(od.number_of_products) " +
+            "FROM order_details od JOIN orders o ON o.id = od.order_id " +
+            "WHERE od.product_id IN (%s) AND o.order_date IS NOT NULL " +
+            "AND (o.status IS NULL OR o.status <> '" + OrderStatus.CANCELLED + "') " +
+            "GROUP BY od.product_id, CAST(o.order_date AS DATE)";
+
+    @Value("${bestsellers.cache-ttl:60s}")
+    private Duration cacheTtl;
+
+    @Value("${bestsellers.reconcile-enabled:true}")
+    private boolean reconcileEnabled;
+
+    @Value("${bestsellers.reconcile-batch-size:200}")
+    private int reconcileBatchSize;
+
+    private final OrderDetailRepository orderDetailRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final TaskExecutor backgroundTaskExecutor;
+
+    private Cache<RankingKey, List<Bestseller>> rankings;
+    private TransactionTemplate reconcileTransaction;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile boolean stopRequested = false;
+    private SalesReconcileReport report = new SalesReconcileReport();
+
+    private record RankingKey(long categoryId, int days, int limit) {
+    }
+
+    private record SalesKey(long productId, LocalDate saleDate) {
+    }
+
+    private static final Comparator<SalesKey> SALES_KEY_ORDER =
+            Comparator.comparingLong(SalesKey::productId).thenComparing(SalesKey::saleDate);
+
+    private record SalesRow(long productId, LocalDate saleDate, Long categoryId, long quantity) {
+    }
+
+    private record ChunkResult(int products, long lastId, int rows, List<SalesReconcileReport.Drift> drifts) {
+    }
+
+    @PostConstruct
+    void initCache() {
+        // Bảng xếp hạng được phép cũ tối đa cacheTtl, không cần xoá cache khi có đơn mới
+        rankings = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, rankings, "bestsellers");
+        // REPEATABLE READ (mặc định của InnoDB) chụp snapshot ở câu SELECT đầu tiên: câu đếm order_details
+        // sẽ không thấy đơn commit sau đó dù dòng tổng hợp đã được đọc mới nhất bằng FOR UPDATE
+        reconcileTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        reconcileTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    @Override
+    @Transactional
+    public void recordOrder(Order order, List<OrderDetail> orderDetails) {
+        applySales(order, orderDetails, 1);
+    }
+
+    @Override
+    @Transactional
+    public void recordOrders(List<OrderDetail> orderDetails) {
+        Map<SalesKey, SalesRow> rows = new TreeMap<>(SALES_KEY_ORDER);
+        for (OrderDetail detail : orderDetails) {
+            collectSales(rows, detail.getOrder(), List.of(detail), 1);
+        }
+        writeRows(ADD_SALES_SQL, new ArrayList<>(rows.values()));
+    }
+
+    @Override
+    @Transactional
+    public void recordCancellation(Order order) {
+        applySales(order, orderDetailRepository.findByOrderId(order.getId()), -1);
+    }
+
+    @Override
+    @Transactional
+    public void recordReinstatement(Order order) {
+        applySales(order, orderDetailRepository.findByOrderId(order.getId()), 1);
+    }
+
+    @Override
+    public List<Bestseller> getBestsellers(Long categoryId, int days, int limit) throws InvalidParamException {
+        if (days < 1 || days > MAX_DAYS) {
+            throw new InvalidParamException("days must be between 1 and " + MAX_DAYS);
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidParamException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        RankingKey key = new RankingKey(categoryId == null ? 0 : categoryId, days, limit);
+        return rankings.get(key, this::loadBestsellers);
+    }
+
+    @Scheduled(cron = "${bestsellers.reconcile-cron:0 30 4 * * *}")
+    public void scheduledReconcile() {
+        if (!reconcileEnabled) return;
+        reconcile();
+    }
+
+    @Override
+    public boolean startReconcile() {
+        if (running.get()) {
+            return false;
+        }
+        backgroundTaskExecutor.execute(this::reconcile);
+        return true;
+    }
+
+    @Override
+    public void stop() {
+        stopRequested = true;
+    }
+
+    @Override
+    public synchronized SalesReconcileReport getLastReport() {
+        return report.toBuilder().drifts(new ArrayList<>(report.getDrifts())).build();
+    }
+
+    @Override
+    public SalesReconcileReport reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            return getLastReport();
+        }
+        stopRequested = false;
+        try {
+            synchronized (this) {
+                report = SalesReconcileReport.builder()
+                        .running(true)
+                        .startedAt(LocalDateTime.now())
+                        .build();
+            }
+            long lastId = 0;
+            while (!stopRequested) {
+                final long afterId = lastId;
+                ChunkResult chunk = reconcileTransaction.execute(status -> reconcileChunk(afterId));
+                if (chunk == null || chunk.products() == 0) break;
+                lastId = chunk.lastId();
+                recordChunk(chunk);
+            }
+        } catch (Exception e) {
+            logger.warn("Sales reconciliation stopped: {}", e.getMessage());
+            synchronized (this) {
+                report.setError(e.getMessage());
+            }
+        } finally {
+            synchronized (this) {
+                report.setRunning(false);
+                report.setFinishedAt(LocalDateTime.now());
+            }
+            running.set(false);
+        }
+        SalesReconcileReport finished = getLastReport();
+        if (finished.getDriftRows() > 0) {
+            logger.warn("Sales reconciliation fixed {} of {} rows, total quantity drift {}",
+                    finished.getDriftRows(), finished.getRows(), finished.getQuantityDrift());
+        }
+        return finished;
+    }
+
+    private void applySales(Order order, List<OrderDetail> orderDetails, int sign) {
+        Map<SalesKey, SalesRow> rows = new TreeMap<>(SALES_KEY_ORDER);
+        collectSales(rows, order, orderDetails, sign);
+        writeRows(ADD_SALES_SQL, new ArrayList<>(rows.values()));
+    }
+
+    // Gộp theo sản phẩm và ngày rồi ghi theo thứ tự id để hai đơn cùng sản phẩm không khoá chéo nhau
+    private void collectSales(Map<SalesKey, SalesRow> rows, Order order, List<OrderDetail> orderDetails, int sign) {
+        if (order.getOrderDate() == null || orderDetails.isEmpty()) return;
+        LocalDate saleDate = Instant.ofEpochMilli(order.getOrderDate().getTime()).atZone(SALES_ZONE).toLocalDate();
+        for (OrderDetail detail : orderDetails) {
+            Product product = detail.getProduct();
+            Long categoryId = product.getCategory() == null ? null : product.getCategory().getId();
+            long quantity = (long) sign * detail.getNumberOfProducts();
+            rows.merge(new SalesKey(product.getId(), saleDate), new SalesRow(product.getId(), saleDate, categoryId, quantity),
+                    (a, b) -> new SalesRow(a.productId(), saleDate, categoryId, a.quantity() + b.quantity()));
+        }
+    }
+
+    private void writeRows(String sql, List<SalesRow> rows) {
+        if (rows.isEmpty()) return;
+        jdbcTemplate.batchUpdate(sql, rows, rows.size(), (ps, row) -> {
+            ps.setLong(1, row.productId());
+            ps.setDate(2, Date.valueOf(row.saleDate()));
+            ps.setObject(3, row.categoryId());
+            ps.setLong(4, row.quantity());
+        });
+    }
+
+    private List<Bestseller> loadBestsellers(RankingKey key) {
+        Date since = Date.valueOf(LocalDate.now(SALES_ZONE).minusDays(key.days() - 1L));
+        if (key.categoryId() == 0) {
+            return jdbcTemplate.query(BESTSELLERS_SQL,
+                    (rs, i) -> new Bestseller(rs.getLong(1), rs.getLong(2)), since, key.limit());
+        }
+        return jdbcTemplate.query(CATEGORY_BESTSELLERS_SQL,
+                (rs, i) -> new Bestseller(rs.getLong(1), rs.getLong(2)), key.categoryId(), since, key.limit());
+    }
+
+    private ChunkResult reconcileChunk(long afterId) {
+        Map<Long, Long> categories = new HashMap<>();
+        List<Long> productIds = new ArrayList<>();
+        jdbcTemplate.query(PRODUCTS_AFTER_SQL, rs -> {
+            long productId = rs.getLong(1);
+            long categoryId = rs.getLong(2);
+            productIds.add(productId);
+            categories.put(productId, rs.wasNull() ? null : categoryId);
+        }, afterId, reconcileBatchSize);
+        if (productIds.isEmpty()) {
+            return new ChunkResult(0, afterId, 0, List.of());
+        }
+        String placeholders = String.join(",", Collections.nCopies(productIds.size(), "?"));
+        Object[] args = productIds.toArray();
+
+        Map<SalesKey, SalesRow> actual = new HashMap<>();
+        jdbcTemplate.query(String.format(LOCK_SALES_SQL, placeholders), rs -> {
+            SalesRow row = readRow(rs);
+            actual.put(new SalesKey(row.productId(), row.saleDate()), row);
+        }, args);
+        Map<SalesKey, SalesRow> expected = new HashMap<>();
+        jdbcTemplate.query(String.format(COUNT_SALES_SQL, placeholders), rs -> {
+            long productId = rs.getLong(1);
+            LocalDate saleDate = rs.getDate(2).toLocalDate();
+            SalesRow row = new SalesRow(productId, saleDate, categories.get(productId), rs.getLong(3));
+            expected.put(new SalesKey(productId, saleDate), row);
+        }, args);
+
+        List<SalesRow> updates = new ArrayList<>();
+        List<SalesKey> deletes = new ArrayList<>();
+        List<SalesReconcileReport.Drift> drifts = new ArrayList<>();
+        Set<SalesKey> keys = new HashSet<>(actual.keySet());
+        keys.addAll(expected.keySet());
+        for (SalesKey key : keys) {
+            SalesRow stored = actual.get(key);
+            SalesRow counted = expected.get(key);
+            long storedQuantity = stored == null ? 0 : stored.quantity();
+            long countedQuantity = counted == null ? 0 : counted.quantity();
+            if (storedQuantity != countedQuantity) {
+                drifts.add(new SalesReconcileReport.Drift(key.productId(), key.saleDate(), countedQuantity, storedQuantity));
+            }
+            if (counted == null) {
+                deletes.add(key);
+            } else if (stored == null || storedQuantity != countedQuantity
+                    || !Objects.equals(stored.categoryId(), counted.categoryId())) {
+                // Sản phẩm đổi danh mục: cập nhật cả các ngày cũ để xếp hạng theo danh mục hiện tại
+                updates.add(counted);
+            }
+        }
+        writeRows(SET_SALES_SQL, updates);
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_SALES_SQL, deletes, deletes.size(), (ps, key) -> {
+                ps.setLong(1, key.productId());
+                ps.setDate(2, Date.valueOf(key.saleDate()));
+            });
+        }
+        return new ChunkResult(productIds.size(), productIds.get(productIds.size() - 1), keys.size(), drifts);
+    }
+
+    private static SalesRow readRow(ResultSet rs) throws SQLException {
+        long categoryId = rs.getLong(3);
+        Long category = rs.wasNull() ? null : categoryId;
+        return new SalesRow(rs.getLong(1), rs.getDate(2).toLocalDate(), category, rs.getLong(4));
+    }
+
+    private synchronized void recordChunk(ChunkResult chunk) {
+        report.setLastProductId(chunk.lastId());
+        report.setProducts(report.getProducts() + chunk.products());
+        report.setRows(report.getRows() + chunk.rows());
+        report.setDriftRows(report.getDriftRows() + chunk.drifts().size());
+        for (SalesReconcileReport.Drift drift : chunk.drifts()) {
+            report.setQuantityDrift(report.getQuantityDrift() + Math.abs(drift.getExpected() - drift.getActual()));
+        }
+        List<SalesReconcileReport.Drift> drifts = report.getDrifts();
+        drifts.addAll(chunk.drifts());
+        if (drifts.size() > MAX_REPORTED_DRIFTS) {
+            drifts.subList(0, drifts.size() - MAX_REPORTED_DRIFTS).clear();
+        }
+    }
+}
@@ -1,24 +1,56 @@
 package com.project.shopapp.service;
 
+import com.project.shopapp.component.ProductDetailCache;
+import com.project.shopapp.component.ProductSearchIndex;
 import com.project.shopapp.dto.ProductDTO;
 import com.project.shopapp.dto.ProductImageDTO;
+import com.project.shopapp.event.ProductChangedEvent;
 import com.project.shopapp.exception.DataNotFoundException;
 import com.project.shopapp.exception.InvalidParamException;
 import com.project.shopapp.model.Category;
 import com.project.shopapp.model.Product;
 import com.project.shopapp.model.ProductImage;
 import com.project.shopapp.repository.CategoryRepository;
+import com.project.shopapp.repository.ProductFilter;
 import com.project.shopapp.repository.ProductImageRepository;
+import com.project.shopapp.repository.ProductImageView;
 import com.project.shopapp.repository.ProductRepository;
+import com.project.shopapp.repository.ProductSummary;
+import com.project.shopapp.response.ProductBatchResponse;
+import com.project.shopapp.response.ProductDetailResponse;
+import com.project.shopapp.response.ProductFacetsResponse;
+import com.project.shopapp.response.ProductImageResponse;
+import com.project.shopapp.response.ProductListResponse;
 import com.project.shopapp.response.ProductResponse;
+import com.project.shopapp.utils.PageCursor;
+import com.project.shopapp.utils.ProductSort;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -26,6 +58,20 @@ public class ProductService implements IProductService {
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
     private final ProductImageRepository productImageRepository;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductDetailCache productDetailCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+
+    private static final String INSERT_PRODUCT_IMAGE_SQL =
+            "INSERT INTO product_images (product_id, image_url) VALUES (?, ?)";
+
+    public static final String INCLUDE_DESCRIPTION = "description";
+    public static final String INCLUDE_IMAGES = "images";
+    public static final String INCLUDE_FACETS = "facets";
+
+    @Value("${product-cache.max-batch-size:200}")
+    private int maxBatchSize;
 
     @Override
     public Product createProduct(ProductDTO productDTO) throws DataNotFoundException {
@@ -40,29 +86,247 @@ public class ProductService implements IProductService {
                 .description(productDTO.getDescription())
                 .category(existingCategory)
                 .build();
-        return productRepository.save(newProduct);
+        Product savedProduct = productRepository.save(newProduct);
+        eventPublisher.publishEvent(ProductChangedEvent.created(savedProduct));
+        return savedProduct;
     }
 
     @Override
     public Product getProductById(Long productId) throws Exception {
         Optional<Product> optionalProduct = productRepository.getDetailProduct(productId);
         if (optionalProduct.isPresent()) {
-            Product product = optionalProduct.get();
-            validateAndFixThumbnail(product);
-            return product;
+            return optionalProduct.get();
         }
         throw new DataNotFoundException("Cannot find product with id: " + productId);
     }
 
     @Override
-    public List<Product> findProductsByIds(List<Long> productIds) {
-        return productRepository.findProductsByIds(productIds);
+    public ProductDetailResponse getProductDetail(Long productId) throws DataNotFoundException {
+        ProductDetailResponse productDetail = productDetailCache.get(productId, this::loadProductDetail);
+        if (productDetail == null) {
+            throw new DataNotFoundException("Cannot find product with id: " + productId);
+        }
+        return productDetail;
+    }
+
+    @Override
+    public LocalDateTime getProductLastModified(Long productId) {
+        ProductDetailResponse cached = productDetailCache.getIfPresent(productId);
+        if (cached != null) {
+            return cached.getUpdatedAt();
+        }
+        return productRepository.findUpdatedAtById(productId).orElse(null);
+    }
+
+    @Override
+    public boolean existsProduct(Long productId) {
+        return productDetailCache.getIfPresent(productId) != null || productRepository.existsById(productId);
+    }
+
+    private ProductDetailResponse loadProductDetail(Long productId) {
+        return productRepository.getDetailProduct(productId)
+                .map(product -> ProductDetailResponse.fromProduct(product, product.getProductImages()))
+                .orElse(null);
+    }
+
+    @Override
+    public ProductBatchResponse getProductsByIds(List<Long> productIds) throws InvalidParamException {
+        Set<Long> distinctIds = new LinkedHashSet<>();
+        for (Long productId : productIds) {
+            if (productId != null) distinctIds.add(productId);
+        }
+        if (distinctIds.size() > maxBatchSize) {
+            throw new InvalidParamException("Number of product ids must be less than or equal to " + maxBatchSize);
+        }
+        // Lấy từ cache trước, các id chưa có trong cache được load bằng một câu truy vấn duy nhất
+        Map<Long, ProductDetailResponse> productsById = distinctIds.isEmpty()
+                ? Map.of()
+                : productDetailCache.getAll(distinctIds, this::loadProductDetails);
+
+        List<ProductDetailResponse> products = new ArrayList<>(distinctIds.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long productId : distinctIds) {
+            ProductDetailResponse productDetail = productsById.get(productId);
+            if (productDetail != null) {
+                products.add(productDetail);
+            } else {
+                missingIds.add(productId);
+            }
+        }
+        return ProductBatchResponse.builder()
+                .products(products)
+                .missingIds(missingIds)
+                .build();
+    }
+
+    private Map<Long, ProductDetailResponse> loadProductDetails(Set<? extends Long> productIds) {
+        Map<Long, ProductDetailResponse> productDetails = new HashMap<>();
+        for (Product product : productRepository.findDetailsByIds(new ArrayList<>(productIds))) {
+            productDetails.put(product.getId(), ProductDetailResponse.fromProduct(product, product.getProductImages()));
+        }
+        return productDetails;
+    }
+
+    @Override
+    public ProductListResponse getAllProducts(ProductFilter filter, ProductSort sort, PageRequest pageRequest,
+                                              Set<String> include,
+                                              BiPredicate<String, LocalDateTime> notModified)
+            throws InvalidParamException {
+        boolean includeDescription = include.contains(INCLUDE_DESCRIPTION);
+        boolean includeImages = include.contains(INCLUDE_IMAGES);
+        boolean includeFacets = include.contains(INCLUDE_FACETS);
+        // Có keyword thì lấy tập kết quả từ index rồi sắp xếp / phân trang trên tập đó, kể cả khi sắp theo giá, tên...
+        if (filter.hasKeyword()) {
+            ProductSearchIndex.SearchResult result = productSearchIndex.search(
+                    filter, sort, (int) pageRequest.getOffset(), pageRequest.getPageSize(), includeFacets);
+            // Chỉ dùng câu truy vấn LIKE khi index chưa sẵn sàng (đang khởi động / rebuild lần đầu)
+            if (result != null) {
+                List<ProductSummary> summaries = findSummariesInOrder(result.productIds(), includeDescription);
+                if (isNotModified(notModified, summaries, result.totalElements(), null, result.facets())) {
+                    return null;
+                }
+                Page<ProductResponse> productPage = new PageImpl<>(
+                        toProductResponses(summaries, includeImages), pageRequest, result.totalElements());
+                return ProductListResponse.builder()
+                        .products(productPage.getContent())
+                        .totalPages(productPage.getTotalPages())
+                        .facets(result.facets())
+                        .prefixTruncated(result.prefixTruncated())
+                        .build();
+            }
+        }
+        List<ProductSummary> summaries = productRepository.findSummaries(filter, databaseSort(sort), null,
+                includeDescription, (int) pageRequest.getOffset(), pageRequest.getPageSize());
+        Page<ProductSummary> summaryPage = new PageImpl<>(summaries, pageRequest,
+                productRepository.countSummaries(filter));
+        ProductFacetsResponse facets = includeFacets && !filter.hasKeyword()
+                ? productSearchIndex.facets(filter.categoryId())
+                : null;
+        if (isNotModified(notModified, summaryPage.getContent(), summaryPage.getTotalElements(), null, facets)) {
+            return null;
+        }
+        return ProductListResponse.builder()
+                .products(toProductResponses(summaryPage.getContent(), includeImages))
+                .totalPages(summaryPage.getTotalPages())
+                .facets(facets)
+                .build();
     }
 
     @Override
-    public Page<ProductResponse> getAllProducts(String keyword, Long categoryId, PageRequest pageRequest) {
-        Page<Product> productsPage = productRepository.searchProducts(categoryId, keyword, pageRequest);
-        return productsPage.map(ProductResponse::fromProduct);
+    public ProductListResponse getProductsAfter(ProductFilter filter, ProductSort sort, PageCursor cursor, int limit,
+                                                Set<String> include,
+                                                BiPredicate<String, LocalDateTime> notModified)
+            throws InvalidParamException {
+        boolean includeDescription = include.contains(INCLUDE_DESCRIPTION);
+        boolean includeImages = include.contains(INCLUDE_IMAGES);
+        boolean includeFacets = include.contains(INCLUDE_FACETS);
+        // Cursor mang theo kiểu sắp xếp của trang đầu tiên
+        ProductSort cursorSort = cursor != null ? ProductSort.fromKey(cursor.getSort()) : sort;
+        if (filter.hasKeyword()) {
+            ProductSearchIndex.SearchResult result = cursor == null
+                    ? productSearchIndex.search(filter, cursorSort, 0, limit, includeFacets)
+                    : productSearchIndex.searchAfter(filter, cursorSort, cursor, limit, includeFacets);
+            if (result != null) {
+                List<Long> productIds = result.productIds();
+                String nextCursor = !productIds.isEmpty() && result.totalElements() > productIds.size()
+                        ? result.lastCursor().encode()
+                        : null;
+                List<ProductSummary> summaries = findSummariesInOrder(productIds, includeDescription);
+                if (isNotModified(notModified, summaries, result.totalElements(), nextCursor, result.facets())) {
+                    return null;
+                }
+                return ProductListResponse.builder()
+                        .products(toProductResponses(summaries, includeImages))
+                        .nextCursor(nextCursor)
+                        .facets(result.facets())
+                        .prefixTruncated(result.prefixTruncated())
+                        .build();
+            }
+        }
+
+        ProductSort databaseSort = databaseSort(cursorSort);
+        // Lấy thêm một dòng để biết còn trang sau hay không, không cần COUNT
+        List<ProductSummary> rows = productRepository.findSummaries(
+                filter, databaseSort, cursor, includeDescription, 0, limit + 1);
+        boolean hasNext = rows.size() > limit;
+        List<ProductSummary> summaries = hasNext ? rows.subList(0, limit) : rows;
+        String nextCursor = hasNext
+                ? databaseSort.cursorAfter(summaries.get(summaries.size() - 1)).encode()
+                : null;
+        ProductFacetsResponse facets = includeFacets && !filter.hasKeyword()
+                ? productSearchIndex.facets(filter.categoryId())
+                : null;
+        if (isNotModified(notModified, summaries, -1, nextCursor, facets)) {
+            return null;
+        }
+        return ProductListResponse.builder()
+                .products(toProductResponses(summaries, includeImages))
+                .nextCursor(nextCursor)
+                .facets(facets)
+                .build();
+    }
+
+    // Không có điểm liên quan trong DB: khi index chưa sẵn sàng thì sắp theo id
+    private static ProductSort databaseSort(ProductSort sort) {
+        return sort == ProductSort.RELEVANCE ? ProductSort.ID : sort;
+    }
+
+    // Version của một trang: id các sản phẩm, updatedAt lớn nhất, tổng số kết quả và facet.
+    // Được kiểm tra trước khi load ảnh và serialize để trả về 304 sớm nhất có thể.
+    private static boolean isNotModified(BiPredicate<String, LocalDateTime> notModified,
+                                         List<ProductSummary> summaries, long total, String nextCursor,
+                                         ProductFacetsResponse facets) {
+        if (notModified == null) return false;
+        StringBuilder version = new StringBuilder();
+        LocalDateTime lastModified = null;
+        for (ProductSummary summary : summaries) {
+            version.append(summary.getId()).append(',');
+            LocalDateTime updatedAt = summary.getUpdatedAt();
+            if (updatedAt != null && (lastModified == null || updatedAt.isAfter(lastModified))) {
+                lastModified = updatedAt;
+            }
+        }
+        version.append('|').append(lastModified)
+                .append('|').append(total)
+                .append('|').append(nextCursor)
+                .append('|').append(facets != null ? facets.hashCode() : 0);
+        return notModified.test(version.toString(), lastModified);
+    }
+
+    private List<ProductSummary> findSummariesInOrder(List<Long> productIds, boolean includeDescription) {
+        if (productIds.isEmpty()) return List.of();
+        Map<Long, ProductSummary> summariesById = productRepository.findSummariesByIds(productIds, includeDescription)
+                .stream()
+                .collect(Collectors.toMap(ProductSummary::getId, Function.identity()));
+        return productIds.stream()
+                .map(summariesById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // Ảnh của cả trang được load bằng một câu IN duy nhất thay vì lazy-load từng sản phẩm
+    private List<ProductResponse> toProductResponses(List<ProductSummary> summaries, boolean includeImages) {
+        if (summaries.isEmpty()) return List.of();
+        Map<Long, List<ProductImageResponse>> imagesByProductId = includeImages
+                ? findImagesByProductIds(summaries.stream().map(ProductSummary::getId).toList())
+                : null;
+        return summaries.stream()
+                .map(summary -> ProductResponse.fromSummary(summary, imagesByProductId == null
+                        ? null
+                        : imagesByProductId.getOrDefault(summary.getId(), List.of())))
+                .toList();
+    }
+
+    private Map<Long, List<ProductImageResponse>> findImagesByProductIds(List<Long> productIds) {
+        Map<Long, List<ProductImageResponse>> imagesByProductId = new HashMap<>();
+        for (ProductImageView image : productImageRepository.findViewsByProductIds(productIds)) {
+            imagesByProductId.computeIfAbsent(image.getProductId(), id -> new ArrayList<>())
+                    .add(ProductImageResponse.builder()
+                            .id(image.getId())
+                            .imageUrl(image.getImageUrl())
+                            .build());
+        }
+        return imagesByProductId;
     }
 
     @Override
@@ -93,7 +357,9 @@ public class ProductService implements IProductService {
             }
 
             validateAndFixThumbnail(existingProduct);
-            return productRepository.save(existingProduct);
+            Product savedProduct = productRepository.save(existingProduct);
+            eventPublisher.publishEvent(ProductChangedEvent.updated(savedProduct));
+            return savedProduct;
         }
         return null;
     }
@@ -101,7 +367,10 @@ public class ProductService implements IProductService {
     @Override
     public void deleteProduct(Long id) {
         Optional<Product> optionalProduct = productRepository.findById(id);
-        optionalProduct.ifPresent(productRepository::delete);
+        optionalProduct.ifPresent(product -> {
+            productRepository.delete(product);
+            eventPublisher.publishEvent(ProductChangedEvent.deleted(product));
+        });
     }
 
     @Override
@@ -111,25 +380,70 @@ public class ProductService implements IProductService {
 
     @Override
     public ProductImage createProductImage(Long productId, ProductImageDTO productImageDTO) throws Exception {
-        Product existingProduct = productRepository.findById(productId)
-                .orElseThrow(() ->
-                        new DataNotFoundException("Cannot find product with id: " + productImageDTO.getProductId()));
-        ProductImage newProductImage = ProductImage.builder()
-                .product(existingProduct)
-                .imageUrl(productImageDTO.getImageUrl())
-                .build();
+        return createProductImages(productId, List.of(productImageDTO.getImageUrl())).get(0);
+    }
 
-        // Không cho insert quá 5 ảnh cho 1 sản phẩm
-        int size = productImageRepository.findByProductId(productId).size();
-        if (size > ProductImage.MAXIMUM_IMAGES_PER_PRODUCT) {
+    /**
+     * Attaches all images of one upload in a single transaction: the product row is locked,
+     * the limit is checked with one COUNT, the rows are inserted in one JDBC batch and the
+     * product (thumbnail, updated_at) is written once.
+     */
+    @Override
+    @Transactional
+    public List<ProductImage> createProductImages(Long productId, List<String> imageUrls)
+            throws DataNotFoundException, InvalidParamException {
+        Product existingProduct = productRepository.findByIdForUpdate(productId)
+                .orElseThrow(() -> new DataNotFoundException("Cannot find product with id: " + productId));
+        if (imageUrls.isEmpty()) {
+            return List.of();
+        }
+
+        // Không cho một sản phẩm có quá 5 ảnh, tính cả ảnh đã có
+        long existingImages = productImageRepository.countByProductId(productId);
+        if (existingImages + imageUrls.size() > ProductImage.MAXIMUM_IMAGES_PER_PRODUCT) {
             throw new InvalidParamException("Number of images must be less than or equal to " + ProductImage.MAXIMUM_IMAGES_PER_PRODUCT);
         }
 
-        if (existingProduct.getThumbnail() == null ) {
-            existingProduct.setThumbnail(newProductImage.getImageUrl());
+        List<ProductImage> productImages = insertProductImages(existingProduct, imageUrls);
+
+        if (existingProduct.getThumbnail() == null) {
+            existingProduct.setThumbnail(imageUrls.get(0));
         }
+        // Cập nhật updatedAt để ETag / Last-Modified của sản phẩm thay đổi theo danh sách ảnh
+        existingProduct.setUpdatedAt(LocalDateTime.now());
+        productRepository.save(existingProduct);
+        eventPublisher.publishEvent(ProductChangedEvent.updated(existingProduct));
+        return productImages;
+    }
+
+    private List<ProductImage> insertProductImages(Product product, List<String> imageUrls) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_PRODUCT_IMAGE_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        statement.setLong(1, product.getId());
+                        statement.setString(2, imageUrls.get(i));
+                    }
 
-        return productImageRepository.save(newProductImage);
+                    @Override
+                    public int getBatchSize() {
+                        return imageUrls.size();
+                    }
+                },
+                keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<ProductImage> productImages = new ArrayList<>(imageUrls.size());
+        for (int i = 0; i < imageUrls.size(); i++) {
+            Number id = i < keys.size() ? (Number) keys.get(i).values().iterator().next() : null;
+            productImages.add(ProductImage.builder()
+                    .id(id == null ? null : id.longValue())
+                    .product(product)
+                    .imageUrl(imageUrls.get(i))
+                    .build());
+        }
+        return productImages;
     }
 
     private void validateAndFixThumbnail(Product product) {
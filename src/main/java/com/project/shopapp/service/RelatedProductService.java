@@ -0,0 +1,335 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.component.RelatedProductIndex;
+import com.project.shopapp.model.JobCheckpoint;
+import com.project.shopapp.model.OrderStatus;
+import com.project.shopapp.repository.JobCheckpointRepository;
+import com.project.shopapp.repository.OrderDetailRepository;
+import com.project.shopapp.repository.OrderHeaderView;
+import com.project.shopapp.repository.OrderLineView;
+import com.project.shopapp.repository.OrderRepository;
+import com.project.shopapp.response.CoPurchaseReport;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Counts how often two products are bought in the same order. Only orders after the stored
+ * checkpoint are read, one transaction per batch, and their pairs are added to
+ * product_co_purchases; afterwards the top neighbours of the touched products are reloaded
+ * into {@link RelatedProductIndex}, so requests never hit the database.
+ */
+@Service
+@RequiredArgsConstructor
+public class RelatedProductService implements IRelatedProductService {
+    private static final Logger logger = LoggerFactory.getLogger(RelatedProductService.class);
+    private static final String JOB_NAME = "product-co-purchases";
+    private static final int LOAD_CHUNK_SIZE = 1000;
+
+    private static final String UPSERT_PAIR_SQL =
+            "INSERT INTO product_co_purchases (product_id, related_product_id, order_count) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE order_count = order_count + VALUES(order_count)";
+
+    private static final String PRODUCT_IDS_AFTER_SQL =
+            "SELECT DISTINCT product_id FROM product_co_purchases WHERE product_id > ? " +
+            "ORDER BY product_id LIMIT ?";
+
+    // Top-N của nhiều sản phẩm trong một câu, dùng index (product_id, order_count)
+    private static final String TOP_NEIGHBORS_SQL =
+            "SELECT product_id, related_product_id, order_count FROM (" +
+            " SELECT product_id, related_product_id, order_count, ROW_NUMBER() OVER (" +
+            "  PARTITION BY product_id ORDER BY order_count DESC, related_product_id) AS position" +
+            " FROM product_co_purchases WHERE product_id IN (%s)" +
+            ") ranked WHERE position <= ? ORDER BY product_id, position";
+
+    @Value("${related-products.enabled:true}")
+    private boolean enabled;
+
+    @Value("${related-products.batch-size:500}")
+    private int batchSize;
+
+    // Đơn quá nhiều sản phẩm (mua sỉ) tạo ra n^2 cặp mà không nói lên điều gì
+    @Value("${related-products.max-products-per-order:20}")
+    private int maxProductsPerOrder;
+
+    @Value("${related-products.neighbors:20}")
+    private int neighbors;
+
+    // Chỉ đọc đơn cũ hơn khoảng này: id được cấp trước khi commit nên đơn mới có thể chưa thấy được
+    @Value("${related-products.settle-delay:5m}")
+    private Duration settleDelay;
+
+    private final OrderRepository orderRepository;
+    private final OrderDetailRepository orderDetailRepository;
+    private final JobCheckpointRepository jobCheckpointRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RelatedProductIndex relatedProductIndex;
+    private final TaskExecutor backgroundTaskExecutor;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile boolean stopRequested = false;
+    // Lần chạy lỗi có thể đã commit batch mà chưa cập nhật index => lần sau nạp lại toàn bộ
+    private volatile boolean reloadRequired = false;
+    private CoPurchaseReport report = new CoPurchaseReport();
+
+    private record Pair(long productId, long relatedProductId) {
+    }
+
+    private record BatchResult(int orders, long lastId, int pairs, Set<Long> productIds) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) return;
+        startAsync();
+    }
+
+    @Scheduled(cron = "${related-products.cron:0 */10 * * * *}")
+    public void scheduledRefresh() {
+        if (!enabled) return;
+        refresh();
+    }
+
+    @Override
+    public List<RelatedProductIndex.Related> getRelatedProducts(long productId, int limit) {
+        return relatedProductIndex.get(productId, Math.min(limit, neighbors));
+    }
+
+    @Override
+    public boolean startAsync() {
+        if (running.get()) {
+            return false;
+        }
+        backgroundTaskExecutor.execute(this::refresh);
+        return true;
+    }
+
+    @Override
+    public void stop() {
+        stopRequested = true;
+    }
+
+    @Override
+    public synchronized CoPurchaseReport getLastReport() {
+        return report.toBuilder().build();
+    }
+
+    @Override
+    public Map<String, Object> getIndexStats() {
+        return relatedProductIndex.getStats();
+    }
+
+    @Override
+    public CoPurchaseReport refresh() {
+        if (!running.compareAndSet(false, true)) {
+            return getLastReport();
+        }
+        stopRequested = false;
+        try {
+            long lastId = jobCheckpointRepository.findById(JOB_NAME).map(JobCheckpoint::getLastId).orElse(0L);
+            startReport(lastId);
+            if (!relatedProductIndex.isReady() || reloadRequired) {
+                loadAll();
+                reloadRequired = false;
+            }
+
+            long cutoff = System.currentTimeMillis() - settleDelay.toMillis();
+            Set<Long> touched = new TreeSet<>();
+            while (!stopRequested) {
+                BatchResult batch = transactionTemplate.execute(status -> processBatch(cutoff));
+                if (batch == null || batch.orders() == 0) break;
+                touched.addAll(batch.productIds());
+                recordBatch(batch);
+            }
+            // Cập nhật cả khi bị dừng: các batch đã commit phải thấy được trên index
+            refreshNeighbors(touched);
+        } catch (Exception e) {
+            logger.warn("Co-purchase refresh stopped: {}", e.getMessage());
+            reloadRequired = true;
+            synchronized (this) {
+                report.setError(e.getMessage());
+            }
+        } finally {
+            synchronized (this) {
+                report.setRunning(false);
+                report.setFinishedAt(LocalDateTime.now());
+            }
+            running.set(false);
+        }
+        CoPurchaseReport finished = getLastReport();
+        if (finished.getOrders() > 0) {
+            logger.info("Co-purchase refresh read {} orders, {} pairs, {} products refreshed",
+                    finished.getOrders(), finished.getPairs(), finished.getRefreshedProducts());
+        }
+        return finished;
+    }
+
+    private BatchResult processBatch(long cutoff) {
+        // Khoá checkpoint: instance khác chạy cùng lúc sẽ chờ rồi đọc lastId mới, không cộng trùng
+        JobCheckpoint checkpoint = jobCheckpointRepository.findForUpdate(JOB_NAME)
+                .orElseGet(() -> JobCheckpoint.builder().jobName(JOB_NAME).lastId(0L).build());
+        long afterId = checkpoint.getLastId();
+
+        List<OrderHeaderView> headers = orderRepository.findHeadersAfterId(afterId, PageRequest.of(0, batchSize));
+        List<Long> orderIds = new ArrayList<>(headers.size());
+        long lastId = afterId;
+        int scanned = 0;
+        for (OrderHeaderView header : headers) {
+            if (header.getOrderDate() != null && header.getOrderDate().getTime() > cutoff) break;
+            lastId = header.getId();
+            scanned++;
+            if (!OrderStatus.CANCELLED.equals(header.getStatus())) {
+                orderIds.add(header.getId());
+            }
+        }
+        if (scanned == 0) {
+            return new BatchResult(0, afterId, 0, Set.of());
+        }
+
+        Map<Long, Set<Long>> productsByOrder = new HashMap<>();
+        if (!orderIds.isEmpty()) {
+            for (OrderLineView line : orderDetailRepository.findLinesByOrderIds(orderIds)) {
+                productsByOrder.computeIfAbsent(line.getOrderId(), id -> new TreeSet<>()).add(line.getProductId());
+            }
+        }
+        Map<Pair, Integer> counts = new TreeMap<>((a, b) -> a.productId() != b.productId()
+                ? Long.compare(a.productId(), b.productId())
+                : Long.compare(a.relatedProductId(), b.relatedProductId()));
+        Set<Long> touched = new TreeSet<>();
+        for (Set<Long> products : productsByOrder.values()) {
+            if (products.size() < 2 || products.size() > maxProductsPerOrder) continue;
+            for (Long productId : products) {
+                for (Long relatedProductId : products) {
+                    if (productId.equals(relatedProductId)) continue;
+                    counts.merge(new Pair(productId, relatedProductId), 1, Integer::sum);
+                }
+            }
+            touched.addAll(products);
+        }
+
+        // Ghi theo thứ tự khoá chính để hai transaction không khoá chéo nhau
+        List<Map.Entry<Pair, Integer>> rows = new ArrayList<>(counts.entrySet());
+        jdbcTemplate.batchUpdate(UPSERT_PAIR_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<Pair, Integer> row = rows.get(i);
+                ps.setLong(1, row.getKey().productId());
+                ps.setLong(2, row.getKey().relatedProductId());
+                ps.setLong(3, row.getValue());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+
+        checkpoint.setLastId(lastId);
+        jobCheckpointRepository.save(checkpoint);
+        return new BatchResult(scanned, lastId, rows.size(), touched);
+    }
+
+    private void loadAll() {
+        RelatedProductIndex.Builder builder = relatedProductIndex.newBuilder();
+        long afterId = 0;
+        while (true) {
+            List<Long> productIds = jdbcTemplate.queryForList(PRODUCT_IDS_AFTER_SQL, Long.class, afterId, LOAD_CHUNK_SIZE);
+            if (productIds.isEmpty()) break;
+            loadNeighbors(productIds).forEach(builder::add);
+            afterId = productIds.get(productIds.size() - 1);
+        }
+        relatedProductIndex.replace(builder);
+        logger.info("Related product index loaded: {}", relatedProductIndex.getStats());
+    }
+
+    private void refreshNeighbors(Set<Long> productIds) {
+        if (productIds.isEmpty()) return;
+        TreeMap<Long, RelatedProductIndex.Neighbors> changes = new TreeMap<>();
+        List<Long> chunk = new ArrayList<>(LOAD_CHUNK_SIZE);
+        for (Long productId : productIds) {
+            chunk.add(productId);
+            if (chunk.size() == LOAD_CHUNK_SIZE) {
+                changes.putAll(loadNeighbors(chunk));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            changes.putAll(loadNeighbors(chunk));
+        }
+        relatedProductIndex.update(changes);
+        synchronized (this) {
+            report.setRefreshedProducts(report.getRefreshedProducts() + productIds.size());
+        }
+    }
+
+    // Trả về theo thứ tự product_id tăng dần, sản phẩm không còn cặp nào có danh sách rỗng
+    private Map<Long, RelatedProductIndex.Neighbors> loadNeighbors(List<Long> productIds) {
+        String placeholders = String.join(",", Collections.nCopies(productIds.size(), "?"));
+        Object[] args = new Object[productIds.size() + 1];
+        for (int i = 0; i < productIds.size(); i++) {
+            args[i] = productIds.get(i);
+        }
+        args[productIds.size()] = neighbors;
+
+        Map<Long, List<long[]>> rowsByProduct = new LinkedHashMap<>();
+        for (Long productId : productIds) {
+            rowsByProduct.put(productId, new ArrayList<>());
+        }
+        jdbcTemplate.query(String.format(TOP_NEIGHBORS_SQL, placeholders), rs -> {
+            rowsByProduct.get(rs.getLong(1)).add(new long[]{rs.getLong(2), rs.getLong(3)});
+        }, args);
+
+        Map<Long, RelatedProductIndex.Neighbors> result = new TreeMap<>();
+        rowsByProduct.forEach((productId, rows) -> {
+            long[] relatedIds = new long[rows.size()];
+            int[] orderCounts = new int[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                relatedIds[i] = rows.get(i)[0];
+                orderCounts[i] = (int) Math.min(Integer.MAX_VALUE, rows.get(i)[1]);
+            }
+            result.put(productId, new RelatedProductIndex.Neighbors(relatedIds, orderCounts));
+        });
+        return result;
+    }
+
+    private synchronized void startReport(long startId) {
+        report = CoPurchaseReport.builder()
+                .running(true)
+                .startedAt(LocalDateTime.now())
+                .startOrderId(startId)
+                .lastOrderId(startId)
+                .build();
+    }
+
+    private synchronized void recordBatch(BatchResult batch) {
+        report.setLastOrderId(batch.lastId());
+        report.setOrders(report.getOrders() + batch.orders());
+        report.setPairs(report.getPairs() + batch.pairs());
+    }
+}
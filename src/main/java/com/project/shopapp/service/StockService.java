@@ -0,0 +1,295 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.component.StockLedger;
+import com.project.shopapp.exception.DataNotFoundException;
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.exception.OutOfStockException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reserves stock for orders against the in-memory {@link StockLedger} and keeps the committed
+ * stock in the database. Every reservation or release of a tracked product is written to
+ * stock_journal in the transaction of the order that causes it, so it commits or rolls back
+ * with the order; a background flush folds journal rows into products.quantity in batches.
+ * Committed stock is always products.quantity plus the journal, and that is what the ledger
+ * is loaded from once the application is ready, so a crash loses no committed reservation.
+ * Orders are refused until the ledger is loaded. A null quantity means the product does not
+ * track stock. Only one instance may serve orders for tracked products.
+ */
+@Service
+@RequiredArgsConstructor
+public class StockService implements IStockService {
+    private static final Logger logger = LoggerFactory.getLogger(StockService.class);
+
+    private static final String LOAD_STOCK_SQL =
+            "SELECT p.id, p.quantity + COALESCE(SUM(j.delta), 0) FROM products p " +
+            "LEFT JOIN stock_journal j ON j.product_id = p.id " +
+            "WHERE p.quantity IS NOT NULL GROUP BY p.id, p.quantity";
+
+    private static final String INSERT_JOURNAL_SQL =
+            "INSERT INTO stock_journal (product_id, delta, created_at) VALUES (?, ?, ?)";
+
+    private static final String PENDING_JOURNAL_SQL =
+            "SELECT id, product_id, delta FROM stock_journal ORDER BY id LIMIT ?";
+
+    private static final String DELETE_JOURNAL_SQL =
+            "DELETE FROM stock_journal WHERE id = ?";
+
+    private static final String DELETE_PRODUCT_JOURNAL_SQL =
+            "DELETE FROM stock_journal WHERE product_id = ?";
+
+    private static final String ADD_STOCK_SQL =
+            "UPDATE products SET quantity = quantity + ? WHERE id = ?";
+
+    private static final String SET_STOCK_SQL =
+            "UPDATE products SET quantity = ? WHERE id = ?";
+
+    private static final String PRODUCT_EXISTS_SQL =
+            "SELECT COUNT(*) FROM products WHERE id = ?";
+
+    @Value("${stock.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    private final StockLedger stockLedger;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    // Flush, đặt tồn kho và nạp lại không được chạy song song
+    private final Object flushLock = new Object();
+    private Counter shortages;
+    private Timer flushTime;
+
+    private record JournalRow(long id, long productId, int delta) {
+    }
+
+    @PostConstruct
+    void init() {
+        shortages = Counter.builder("stock.shortages")
+                .description("Orders refused because a product did not have enough stock")
+                .register(meterRegistry);
+        flushTime = Timer.builder("stock.flush")
+                .description("Time spent folding the stock journal into products")
+                .register(meterRegistry);
+        Gauge.builder("stock.tracked.products", stockLedger, StockLedger::size)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reloadQuietly();
+    }
+
+    // Nạp tồn kho đã commit (quantity + journal chưa flush); trước khi nạp xong mọi đơn đều bị từ chối
+    private void reloadQuietly() {
+        synchronized (flushLock) {
+            try {
+                Map<Long, Long> quantities = new HashMap<>();
+                jdbcTemplate.query(LOAD_STOCK_SQL, rs -> {
+                    quantities.put(rs.getLong(1), rs.getLong(2));
+                });
+                stockLedger.load(quantities);
+                logger.info("Loaded stock of {} products", quantities.size());
+            } catch (Exception e) {
+                logger.warn("Could not load stock, will retry: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void reserve(Map<Long, Integer> quantities) throws OutOfStockException {
+        if (!stockLedger.isReady()) {
+            throw new OutOfStockException("Stock is not loaded yet, please retry");
+        }
+        Map<Long, Integer> reserved = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            if (!stockLedger.tryReserve(line.getKey(), line.getValue())) {
+                releaseNow(reserved);
+                shortages.increment();
+                throw new OutOfStockException("Not enough stock for product " + line.getKey());
+            }
+            reserved.put(line.getKey(), line.getValue());
+        }
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        if (inTransaction) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    // Đơn không được ghi: trả lại phần đã giữ (dòng journal rollback cùng đơn)
+                    if (status != STATUS_COMMITTED) releaseNow(reserved);
+                }
+            });
+        }
+        try {
+            writeJournal(reserved, -1);
+        } catch (RuntimeException e) {
+            if (!inTransaction) releaseNow(reserved);
+            throw e;
+        }
+    }
+
+    @Override
+    public void release(Map<Long, Integer> quantities) {
+        writeJournal(quantities, 1);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            releaseNow(quantities);
+            return;
+        }
+        Map<Long, Integer> released = new LinkedHashMap<>(quantities);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                releaseNow(released);
+            }
+        });
+    }
+
+    private void releaseNow(Map<Long, Integer> quantities) {
+        quantities.forEach(stockLedger::release);
+    }
+
+    // Ghi trong transaction hiện tại (của đơn hàng); sản phẩm không theo dõi tồn kho thì bỏ qua
+    private void writeJournal(Map<Long, Integer> quantities, int sign) {
+        List<Object[]> rows = new ArrayList<>(quantities.size());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        quantities.forEach((productId, quantity) -> {
+            if (stockLedger.isTracked(productId)) {
+                rows.add(new Object[]{productId, sign * quantity, now});
+            }
+        });
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_JOURNAL_SQL, rows);
+        }
+    }
+
+    @Override
+    public Long getAvailable(Long productId) {
+        return stockLedger.getAvailable(productId);
+    }
+
+    /**
+     * Sets the available stock of a product and writes it through immediately, discarding the
+     * product's journal. A product that did not track stock starts tracking it.
+     */
+    @Override
+    public long setStock(Long productId, int quantity) throws DataNotFoundException, InvalidParamException {
+        if (quantity < 0) {
+            throw new InvalidParamException("Stock quantity cannot be negative");
+        }
+        if (!stockLedger.isReady()) {
+            throw new InvalidParamException("Stock is not loaded yet, please retry");
+        }
+        synchronized (flushLock) {
+            Integer exists = jdbcTemplate.queryForObject(PRODUCT_EXISTS_SQL, Integer.class, productId);
+            if (exists == null || exists == 0) {
+                throw new DataNotFoundException("Cannot find product with id: " + productId);
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update(DELETE_PRODUCT_JOURNAL_SQL, productId);
+                jdbcTemplate.update(SET_STOCK_SQL, quantity, productId);
+            });
+            stockLedger.set(productId, quantity);
+        }
+        return stockLedger.getAvailable(productId);
+    }
+
+    @Scheduled(fixedDelayString = "${stock.flush-interval-ms:1000}")
+    public void scheduledFlush() {
+        if (!stockLedger.isReady()) {
+            reloadQuietly();
+            return;
+        }
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.warn("Stock flush failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Folds committed journal rows into products.quantity, oldest first. Each batch adds the
+     * rows to their products (in product id order) and deletes exactly those rows in one
+     * transaction, so a row is applied once; a batch that fails stays for the next flush.
+     * Returns the number of journal rows applied.
+     */
+    @Override
+    public int flush() {
+        synchronized (flushLock) {
+            return flushJournal();
+        }
+    }
+
+    private int flushJournal() {
+        long start = System.nanoTime();
+        int applied = 0;
+        while (true) {
+            int written;
+            try {
+                written = transactionTemplate.execute(status -> flushBatch());
+            } catch (RuntimeException e) {
+                logger.warn("Stock flush stopped after {} journal rows: {}", applied, e.getMessage());
+                break;
+            }
+            applied += written;
+            if (written < flushBatchSize) break;
+        }
+        if (applied > 0) {
+            flushTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return applied;
+    }
+
+    private int flushBatch() {
+        // Chỉ thấy dòng của đơn đã commit; dòng của đơn đang chạy được flush lần sau
+        List<JournalRow> rows = jdbcTemplate.query(PENDING_JOURNAL_SQL,
+                (rs, i) -> new JournalRow(rs.getLong(1), rs.getLong(2), rs.getInt(3)), flushBatchSize);
+        if (rows.isEmpty()) return 0;
+        Map<Long, Long> deltas = new TreeMap<>();
+        for (JournalRow row : rows) {
+            deltas.merge(row.productId(), (long) row.delta(), Long::sum);
+        }
+        List<Object[]> updates = new ArrayList<>(deltas.size());
+        deltas.forEach((productId, delta) -> {
+            if (delta != 0) updates.add(new Object[]{delta, productId});
+        });
+        jdbcTemplate.batchUpdate(ADD_STOCK_SQL, updates);
+        jdbcTemplate.batchUpdate(DELETE_JOURNAL_SQL, rows.stream().map(row -> new Object[]{row.id()}).toList());
+        return rows.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!stockLedger.isReady()) return;
+        int applied = flush();
+        if (applied > 0) {
+            logger.info("Flushed {} stock journal rows on shutdown", applied);
+        }
+    }
+}
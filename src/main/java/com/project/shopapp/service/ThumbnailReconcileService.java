@@ -0,0 +1,197 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.event.ProductChangedEvent;
+import com.project.shopapp.model.JobCheckpoint;
+import com.project.shopapp.model.Product;
+import com.project.shopapp.repository.JobCheckpointRepository;
+import com.project.shopapp.repository.ProductImageRepository;
+import com.project.shopapp.repository.ProductImageView;
+import com.project.shopapp.repository.ProductRepository;
+import com.project.shopapp.response.ThumbnailReconcileReport;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Repairs products whose thumbnail does not point at one of their images.
+ * Scans by id in small batches, one transaction per batch, and stores the last
+ * processed id so an interrupted run resumes where it stopped.
+ */
+@Service
+@RequiredArgsConstructor
+public class ThumbnailReconcileService implements IThumbnailReconcileService {
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailReconcileService.class);
+    private static final String JOB_NAME = "thumbnail-reconciler";
+    private static final int MAX_REPORTED_CHANGES = 500;
+
+    @Value("${thumbnail-reconciler.enabled:true}")
+    private boolean enabled;
+
+    @Value("${thumbnail-reconciler.batch-size:500}")
+    private int batchSize;
+
+    // Nghỉ giữa các batch để không chiếm DB trong giờ cao điểm
+    @Value("${thumbnail-reconciler.pause-ms:200}")
+    private long pauseMillis;
+
+    private final ProductRepository productRepository;
+    private final ProductImageRepository productImageRepository;
+    private final JobCheckpointRepository jobCheckpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TaskExecutor backgroundTaskExecutor;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile boolean stopRequested = false;
+    private ThumbnailReconcileReport report = new ThumbnailReconcileReport();
+
+    private record BatchResult(int scanned, long lastId, List<ThumbnailReconcileReport.Change> changes) {
+    }
+
+    @Scheduled(cron = "${thumbnail-reconciler.cron:0 0 */6 * * *}")
+    public void scheduledReconcile() {
+        if (!enabled) return;
+        reconcile(null);
+    }
+
+    @Override
+    public boolean startAsync(Long fromId) {
+        if (running.get()) {
+            return false;
+        }
+        backgroundTaskExecutor.execute(() -> reconcile(fromId));
+        return true;
+    }
+
+    @Override
+    public void stop() {
+        stopRequested = true;
+    }
+
+    @Override
+    public ThumbnailReconcileReport reconcile(Long fromId) {
+        if (!running.compareAndSet(false, true)) {
+            return getLastReport();
+        }
+        stopRequested = false;
+        try {
+            long lastId = fromId != null
+                    ? fromId
+                    : jobCheckpointRepository.findById(JOB_NAME).map(JobCheckpoint::getLastId).orElse(0L);
+            startReport(lastId);
+
+            while (!stopRequested) {
+                final long afterId = lastId;
+                BatchResult batch = transactionTemplate.execute(status -> reconcileBatch(afterId));
+                if (batch == null || batch.scanned() == 0) {
+                    // Đã quét hết bảng => lần chạy sau bắt đầu lại từ đầu
+                    transactionTemplate.executeWithoutResult(status -> saveCheckpoint(0L));
+                    break;
+                }
+                lastId = batch.lastId();
+                recordBatch(batch);
+                if (pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("Thumbnail reconciliation stopped: {}", e.getMessage());
+            synchronized (this) {
+                report.setError(e.getMessage());
+            }
+        } finally {
+            synchronized (this) {
+                report.setRunning(false);
+                report.setFinishedAt(LocalDateTime.now());
+            }
+            running.set(false);
+        }
+        ThumbnailReconcileReport finished = getLastReport();
+        if (finished.getFixed() > 0) {
+            logger.info("Thumbnail reconciliation fixed {} of {} products", finished.getFixed(), finished.getScanned());
+        }
+        return finished;
+    }
+
+    @Override
+    public synchronized ThumbnailReconcileReport getLastReport() {
+        return report.toBuilder().changes(new ArrayList<>(report.getChanges())).build();
+    }
+
+    private BatchResult reconcileBatch(long afterId) {
+        List<Product> products = productRepository.findBatchAfterId(afterId, PageRequest.of(0, batchSize));
+        if (products.isEmpty()) {
+            return new BatchResult(0, afterId, List.of());
+        }
+
+        List<Long> productIds = products.stream().map(Product::getId).toList();
+        Map<Long, List<String>> imageUrlsByProduct = productImageRepository.findViewsByProductIds(productIds)
+                .stream()
+                .collect(Collectors.groupingBy(ProductImageView::getProductId, LinkedHashMap::new,
+                        Collectors.mapping(ProductImageView::getImageUrl, Collectors.toList())));
+
+        List<ThumbnailReconcileReport.Change> changes = new ArrayList<>();
+        for (Product product : products) {
+            List<String> imageUrls = imageUrlsByProduct.getOrDefault(product.getId(), List.of());
+            String currentThumbnail = product.getThumbnail();
+            if (currentThumbnail != null && imageUrls.contains(currentThumbnail)) continue;
+
+            String expectedThumbnail = imageUrls.isEmpty() ? null : imageUrls.get(0);
+            if (Objects.equals(currentThumbnail, expectedThumbnail)) continue;
+
+            product.setThumbnail(expectedThumbnail);
+            productRepository.save(product);
+            eventPublisher.publishEvent(ProductChangedEvent.updated(product));
+            changes.add(new ThumbnailReconcileReport.Change(product.getId(), currentThumbnail, expectedThumbnail));
+        }
+
+        long lastId = productIds.get(productIds.size() - 1);
+        saveCheckpoint(lastId);
+        return new BatchResult(products.size(), lastId, changes);
+    }
+
+    private void saveCheckpoint(Long lastId) {
+        JobCheckpoint checkpoint = jobCheckpointRepository.findById(JOB_NAME)
+                .orElseGet(() -> JobCheckpoint.builder().jobName(JOB_NAME).build());
+        checkpoint.setLastId(lastId);
+        jobCheckpointRepository.save(checkpoint);
+    }
+
+    private synchronized void startReport(long startId) {
+        report = ThumbnailReconcileReport.builder()
+                .running(true)
+                .startedAt(LocalDateTime.now())
+                .startId(startId)
+                .lastId(startId)
+                .build();
+    }
+
+    private synchronized void recordBatch(BatchResult batch) {
+        report.setLastId(batch.lastId());
+        report.setScanned(report.getScanned() + batch.scanned());
+        report.setFixed(report.getFixed() + batch.changes().size());
+        List<ThumbnailReconcileReport.Change> changes = report.getChanges();
+        changes.addAll(batch.changes());
+        if (changes.size() > MAX_REPORTED_CHANGES) {
+            changes.subList(0, changes.size() - MAX_REPORTED_CHANGES).clear();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.project.shopapp.utils;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Helpers for conditional GET: strong ETags built from entity versions and
+ * If-None-Match / If-Modified-Since evaluation before the body is built.
+ */
+public class HttpCacheUtils {
+    // Dữ liệu công khai: client/proxy được lưu nhưng phải hỏi lại server trước khi dùng
+    public static final CacheControl PUBLIC_REVALIDATE = CacheControl.noCache().cachePublic();
+    // Dữ liệu của từng user (đơn hàng): không cho proxy dùng chung lưu lại
+    public static final CacheControl PRIVATE_REVALIDATE = CacheControl.noCache().cachePrivate();
+    // Nội dung không bao giờ đổi dưới cùng một URL (ảnh sản phẩm): cache lâu, không cần hỏi lại
+    public static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+
+    /**
+     * Strong ETag (quoted) from a hash of the given version parts.
+     */
+    public static String eTag(Object... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Evaluates the request preconditions and writes ETag / Last-Modified to the response.
+     * Returns true when the client copy is still current and a 304 should be sent.
+     */
+    public static boolean checkNotModified(WebRequest webRequest, String eTag, LocalDateTime lastModified) {
+        long lastModifiedMillis = lastModified == null
+                ? -1
+                : lastModified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return webRequest.checkNotModified(eTag, lastModifiedMillis);
+    }
+
+    // ETag và Last-Modified đã được checkNotModified ghi vào response
+    public static <T> ResponseEntity<T> notModified(CacheControl cacheControl) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .cacheControl(cacheControl)
+                .build();
+    }
+}
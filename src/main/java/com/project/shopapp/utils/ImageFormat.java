@@ -0,0 +1,60 @@
+package com.project.shopapp.utils;
+
+import java.util.Locale;
+
+/**
+ * Image formats accepted for product images, recognised by their file signature.
+ */
+public enum ImageFormat {
+    JPEG("jpg", "image/jpeg"),
+    PNG("png", "image/png"),
+    GIF("gif", "image/gif"),
+    WEBP("webp", "image/webp");
+
+    // Số byte đầu file cần đọc để nhận diện định dạng
+    public static final int SIGNATURE_LENGTH = 12;
+
+    private final String extension;
+    private final String contentType;
+
+    ImageFormat(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    // Nhận diện theo magic bytes ở đầu file
+    public static ImageFormat detect(byte[] signature) {
+        if (startsWith(signature, 0, 0xFF, 0xD8, 0xFF)) return JPEG;
+        if (startsWith(signature, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) return PNG;
+        if (startsWith(signature, 0, 'G', 'I', 'F', '8')) return GIF;
+        if (startsWith(signature, 0, 'R', 'I', 'F', 'F') && startsWith(signature, 8, 'W', 'E', 'B', 'P')) {
+            return WEBP;
+        }
+        return null;
+    }
+
+    public static ImageFormat fromExtension(String extension) {
+        if (extension == null) return null;
+        String value = extension.toLowerCase(Locale.ROOT);
+        for (ImageFormat format : values()) {
+            if (format.extension.equals(value)) return format;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, int... expected) {
+        if (data == null || data.length < offset + expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if ((data[offset + i] & 0xFF) != expected[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,59 @@
+package com.project.shopapp.utils;
+
+import com.project.shopapp.exception.InvalidParamException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for keyset pagination: the sort mode, the sort key
+ * value of the last row and the id of the last row as tie-breaker.
+ */
+@Getter
+@AllArgsConstructor
+public class PageCursor {
+    public static final String SORT_ID = "id";
+    public static final String SORT_RELEVANCE = "relevance";
+
+    private static final char SEPARATOR = '|';
+
+    private final String sort;
+    private final String value;
+    private final long lastId;
+
+    public static PageCursor afterId(long lastId) {
+        return new PageCursor(SORT_ID, "", lastId);
+    }
+
+    public String encode() {
+        String raw = sort + SEPARATOR + value + SEPARATOR + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String token) throws InvalidParamException {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int first = raw.indexOf(SEPARATOR);
+            int last = raw.lastIndexOf(SEPARATOR);
+            if (first < 0 || first == last) {
+                throw new InvalidParamException("Invalid cursor");
+            }
+            return new PageCursor(
+                    raw.substring(0, first),
+                    raw.substring(first + 1, last),
+                    Long.parseLong(raw.substring(last + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidParamException("Invalid cursor");
+        }
+    }
+
+    public long valueAsLong() throws InvalidParamException {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidParamException("Invalid cursor");
+        }
+    }
+}
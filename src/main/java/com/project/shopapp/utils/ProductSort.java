@@ -0,0 +1,83 @@
+package com.project.shopapp.utils;
+
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.repository.ProductSummary;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Sort modes of the product listing. Every mode ends with the product id as tie-breaker,
+ * so (sort key, id) is unique and can be used as a keyset cursor. Products without a price
+ * (or creation time) come last in both directions.
+ */
+public enum ProductSort {
+    ID(PageCursor.SORT_ID),
+    PRICE_ASC("price_asc"),
+    PRICE_DESC("price_desc"),
+    NEWEST("newest"),
+    NAME("name"),
+    // Chỉ có ý nghĩa khi có keyword, điểm lấy từ search index
+    RELEVANCE(PageCursor.SORT_RELEVANCE);
+
+    private final String key;
+
+    ProductSort(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Parses the {@code sort} request parameter; "price" is accepted as a shorthand for price_asc.
+     */
+    public static ProductSort fromKey(String key) throws InvalidParamException {
+        if ("price".equals(key)) return PRICE_ASC;
+        for (ProductSort sort : values()) {
+            if (sort.key.equals(key)) return sort;
+        }
+        throw new InvalidParamException("Unsupported sort: " + key);
+    }
+
+    /**
+     * Value of the sort key of a row, stored in the cursor of the next page. A missing price or
+     * creation time is stored as an empty value; those rows sort after all others.
+     */
+    public String cursorValue(ProductSummary summary) {
+        return cursorValue(summary.getPrice(), summary.getCreatedAt(), summary.getName());
+    }
+
+    public String cursorValue(Float price, LocalDateTime createdAt, String name) {
+        return switch (this) {
+            case PRICE_ASC, PRICE_DESC -> price == null ? "" : String.valueOf(price);
+            case NEWEST -> createdAt == null ? "" : String.valueOf(createdAt);
+            case NAME -> name;
+            case ID, RELEVANCE -> "";
+        };
+    }
+
+    public PageCursor cursorAfter(ProductSummary summary) {
+        return new PageCursor(key, cursorValue(summary), summary.getId());
+    }
+
+    // Giá trị rỗng trong cursor: dòng cuối trang trước không có giá
+    public static Float cursorPrice(PageCursor cursor) throws InvalidParamException {
+        if (cursor.getValue().isEmpty()) return null;
+        try {
+            return Float.parseFloat(cursor.getValue());
+        } catch (NumberFormatException e) {
+            throw new InvalidParamException("Invalid cursor");
+        }
+    }
+
+    public static LocalDateTime cursorCreatedAt(PageCursor cursor) throws InvalidParamException {
+        if (cursor.getValue().isEmpty()) return null;
+        try {
+            return LocalDateTime.parse(cursor.getValue());
+        } catch (DateTimeParseException e) {
+            throw new InvalidParamException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.project.shopapp.controller;
+
+import com.project.shopapp.component.JwtTokenUtils;
+import com.project.shopapp.exception.OrderQueueFullException;
+import com.project.shopapp.repository.UserRepository;
+import com.project.shopapp.service.IOrderIngestionService;
+import jakarta.servlet.Filter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shopapp-orders;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "thumbnail-reconciler.enabled=false",
+        "related-products.enabled=false",
+        "related-products.settle-delay=0s",
+        "bestsellers.reconcile-enabled=false",
+        "order-ingestion.mode=group-commit",
+        "stock.flush-interval-ms=3600000",
+        "logging.level.org.springframework.security=INFO"
+})
+class OrderControllerTests {
+    private static final long PRODUCT = 24_001;
+
+    @Value("${api.prefix}")
+    private String apiPrefix;
+
+    @Autowired
+    private WebApplicationContext context;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JwtTokenUtils jwtTokenUtils;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private MockMvc mockMvc;
+    private String token;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate.update("MERGE INTO roles (id, name) KEY (id) VALUES (1, 'USER')");
+        jdbcTemplate.update("MERGE INTO users (id, phone_number, password, role_id, is_active) KEY (id) " +
+                "VALUES (1, '1', 'x', 1, TRUE)");
+        jdbcTemplate.update("MERGE INTO products (id, name, price) KEY (id) VALUES (?, 'Controller test', 100)", PRODUCT);
+        // Dựng MockMvc từ context sẵn có (kèm filter bảo mật) để các lớp test dùng chung một context
+        mockMvc = MockMvcBuilders.webAppContextSetup(context)
+                .addFilters(context.getBean("springSecurityFilterChain", Filter.class))
+                .build();
+        token = jwtTokenUtils.generateToken(userRepository.findById(1L).orElseThrow());
+    }
+
+    @Test
+    void groupCommitOrderIsAnsweredOnAsyncDispatch() throws Exception {
+        MvcResult result = mockMvc.perform(createOrder(PRODUCT, null))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "false"));
+    }
+
+    @Test
+    void synchronousOrderIsAnsweredWithoutAsyncDispatch() throws Exception {
+        // Request có Idempotency-Key luôn đi đường đồng bộ, kể cả khi bật group commit
+        mockMvc.perform(createOrder(PRODUCT, "controller-sync"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isOk());
+        mockMvc.perform(createOrder(PRODUCT + 1, "controller-bad-product"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void fullQueueIsAnswered503() throws Exception {
+        IOrderIngestionService fullQueue = mock(IOrderIngestionService.class);
+        when(fullQueue.isEnabled()).thenReturn(true);
+        when(fullQueue.submit(any())).thenThrow(new OrderQueueFullException("Too many orders are waiting, please retry"));
+        OrderController controller = AopTestUtils.getUltimateTargetObject(context.getBean(OrderController.class));
+        Object ingestion = ReflectionTestUtils.getField(controller, "orderIngestionService");
+        ReflectionTestUtils.setField(controller, "orderIngestionService", fullQueue);
+        try {
+            mockMvc.perform(createOrder(PRODUCT, null))
+                    .andExpect(request().asyncNotStarted())
+                    .andExpect(status().isServiceUnavailable());
+        } finally {
+            ReflectionTestUtils.setField(controller, "orderIngestionService", ingestion);
+        }
+    }
+
+    private MockHttpServletRequestBuilder createOrder(long productId, String idempotencyKey) {
+        MockHttpServletRequestBuilder request = post(apiPrefix + "/orders")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"phone_number\": \"0912345678\", \"address\": \"Hanoi\", " +
+                        "\"cart_items\": [{\"product_id\": " + productId + ", \"quantity\": 1}]}");
+        if (idempotencyKey != null) {
+            request.header("Idempotency-Key", idempotencyKey);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,188 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.dto.CartItemDTO;
+import com.project.shopapp.dto.OrderDTO;
+import com.project.shopapp.exception.IdempotencyKeyMismatchException;
+import com.project.shopapp.model.IdempotencyKey;
+import com.project.shopapp.model.Order;
+import com.project.shopapp.repository.IdempotencyKeyRepository;
+import com.project.shopapp.repository.OrderRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderIdempotencyServiceTests {
+    private final IOrderService orderService = mock(IOrderService.class);
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final IdempotencyKeyRepository idempotencyKeyRepository = mock(IdempotencyKeyRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private OrderIdempotencyService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new OrderIdempotencyService(orderService, orderRepository, idempotencyKeyRepository, jdbcTemplate,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "ttl", Duration.ofHours(24));
+        ReflectionTestUtils.setField(service, "cacheSize", 100L);
+        ReflectionTestUtils.setField(service, "waitTimeout", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(service, "purgeBatchSize", 2);
+        ReflectionTestUtils.setField(service, "purgePauseMillis", 0L);
+        service.initCache();
+        when(idempotencyKeyRepository.findById(any())).thenReturn(Optional.empty());
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void retryArrivingWhileTheFirstRequestRunsWaitsForItsOrder() throws Exception {
+        Order order = order(1L);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(orderService.createOrder(any())).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return order;
+        });
+
+        Future<IOrderIdempotencyService.Placement> first = executor.submit(() -> service.createOrder(1L, "k", request(2)));
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        Future<IOrderIdempotencyService.Placement> retry = executor.submit(() -> service.createOrder(1L, "k", request(2)));
+        Thread.sleep(100);
+        assertFalse(retry.isDone(), "The retry must wait for the first request");
+        // Cùng key nhưng giỏ hàng khác bị từ chối ngay, không chờ
+        assertThrows(IdempotencyKeyMismatchException.class, () -> service.createOrder(1L, "k", request(3)));
+        release.countDown();
+
+        assertSame(order, first.get(10, TimeUnit.SECONDS).order());
+        assertFalse(first.get().replayed());
+        assertSame(order, retry.get(10, TimeUnit.SECONDS).order());
+        assertTrue(retry.get().replayed());
+        verify(orderService, times(1)).createOrder(any());
+
+        // Lần gửi lại sau đó lấy từ cache
+        assertTrue(service.createOrder(1L, "k", request(2)).replayed());
+        assertThrows(IdempotencyKeyMismatchException.class, () -> service.createOrder(1L, "k", request(3)));
+        verify(orderService, times(1)).createOrder(any());
+    }
+
+    @Test
+    void losingTheKeyInsertReturnsTheWinningOrder() throws Exception {
+        Order ours = order(1L);
+        Order winner = order(2L);
+        when(orderService.createOrder(any())).thenReturn(ours);
+        when(jdbcTemplate.update(startsWith("INSERT INTO idempotency_keys"), any(Object[].class)))
+                .thenThrow(new DuplicateKeyException("duplicate idempotency_key"));
+        when(idempotencyKeyRepository.findById("1:k"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(storedKey(winner.getId(), OrderIdempotencyService.requestHash(request(2)))));
+        when(orderRepository.findById(winner.getId())).thenReturn(Optional.of(winner));
+
+        IOrderIdempotencyService.Placement placement = service.createOrder(1L, "k", request(2));
+
+        assertSame(winner, placement.order());
+        assertTrue(placement.replayed());
+    }
+
+    @Test
+    void storedKeyWithAnotherRequestIsRefused() throws Exception {
+        when(idempotencyKeyRepository.findById("1:k"))
+                .thenReturn(Optional.of(storedKey(7L, OrderIdempotencyService.requestHash(request(2)))));
+        when(orderRepository.findById(7L)).thenReturn(Optional.of(order(7L)));
+
+        assertThrows(IdempotencyKeyMismatchException.class, () -> service.createOrder(1L, "k", request(5)));
+        assertEquals(7L, service.createOrder(1L, "k", request(2)).order().getId());
+        verify(orderService, never()).createOrder(any());
+    }
+
+    @Test
+    void keysAreScopedByTheCallerNotTheBodyUserId() throws Exception {
+        when(idempotencyKeyRepository.findById("1:k"))
+                .thenReturn(Optional.of(storedKey(7L, OrderIdempotencyService.requestHash(request(2)))));
+        when(orderService.createOrder(any())).thenReturn(order(8L));
+
+        // User 2 gửi user_id = 1 trong body: không thấy, cũng không dò được key của user 1
+        IOrderIdempotencyService.Placement placement = service.createOrder(2L, "k", request(5));
+
+        assertEquals(8L, placement.order().getId());
+        assertFalse(placement.replayed());
+        verify(orderRepository, never()).findById(7L);
+    }
+
+    @Test
+    void requestHashCoversEveryField() {
+        assertEquals(OrderIdempotencyService.requestHash(request(2)), OrderIdempotencyService.requestHash(request(2)));
+        assertNotEquals(OrderIdempotencyService.requestHash(request(2)), OrderIdempotencyService.requestHash(request(3)));
+        OrderDTO otherAddress = request(2);
+        otherAddress.setAddress("Da Nang");
+        assertNotEquals(OrderIdempotencyService.requestHash(request(2)), OrderIdempotencyService.requestHash(otherAddress));
+    }
+
+    @Test
+    void purgeDeletesInBatchesUntilABatchIsNotFull() {
+        when(jdbcTemplate.update(startsWith("DELETE FROM idempotency_keys WHERE expires_at"), any(Object[].class)))
+                .thenReturn(2, 2, 1);
+
+        assertEquals(5, service.purgeExpired());
+        verify(jdbcTemplate, times(3))
+                .update(startsWith("DELETE FROM idempotency_keys WHERE expires_at"), any(Object[].class));
+    }
+
+    private static OrderDTO request(int quantity) {
+        OrderDTO orderDTO = new OrderDTO();
+        orderDTO.setUserId(1L);
+        orderDTO.setPhoneNumber("0912345678");
+        orderDTO.setAddress("Hanoi");
+        orderDTO.setCartItems(List.of(new CartItemDTO(1L, quantity)));
+        return orderDTO;
+    }
+
+    private static Order order(Long id) {
+        Order order = new Order();
+        order.setId(id);
+        return order;
+    }
+
+    private static IdempotencyKey storedKey(Long orderId, String requestHash) {
+        return IdempotencyKey.builder()
+                .key("1:k")
+                .orderId(orderId)
+                .requestHash(requestHash)
+                .createdAt(LocalDateTime.now())
+                .expiresAt(LocalDateTime.now().plusHours(1))
+                .build();
+    }
+}
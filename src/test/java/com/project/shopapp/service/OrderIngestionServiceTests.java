@@ -0,0 +1,213 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.dto.CartItemDTO;
+import com.project.shopapp.dto.OrderDTO;
+import com.project.shopapp.exception.DataNotFoundException;
+import com.project.shopapp.exception.OrderQueueFullException;
+import com.project.shopapp.model.Order;
+import com.project.shopapp.repository.ProductRepository;
+import com.project.shopapp.repository.UserRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shopapp-orders;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "thumbnail-reconciler.enabled=false",
+        "related-products.enabled=false",
+        "related-products.settle-delay=0s",
+        "bestsellers.reconcile-enabled=false",
+        "order-ingestion.mode=group-commit",
+        "stock.flush-interval-ms=3600000",
+        "logging.level.org.springframework.security=INFO"
+})
+class OrderIngestionServiceTests {
+    private static final long PRODUCT = 25_001;
+    private static final long LAST_UNIT = 25_002;
+    private static final long MISSING_PRODUCT = 25_999;
+
+    @Autowired
+    private IOrderService orderService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private IProductSalesService productSalesService;
+    @Autowired
+    private IStockService stockService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Writer không tự chạy: test quyết định lúc nào batch được ghi
+    private final List<Runnable> writers = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("MERGE INTO roles (id, name) KEY (id) VALUES (1, 'USER')");
+        jdbcTemplate.update("MERGE INTO users (id, phone_number, password, role_id, is_active) KEY (id) " +
+                "VALUES (1, '1', 'x', 1, TRUE)");
+        jdbcTemplate.update("MERGE INTO products (id, name, price) KEY (id) VALUES (?, 'Ingestion test', 100)", PRODUCT);
+        jdbcTemplate.update("MERGE INTO products (id, name, price) KEY (id) VALUES (?, 'Last unit', 100)", LAST_UNIT);
+    }
+
+    @Test
+    void queuedOrdersAreWrittenInOneBatchAndABadOneFailsAlone() throws Exception {
+        OrderIngestionService ingestion = ingestion(10);
+        List<CompletableFuture<Order>> accepted = List.of(
+                ingestion.submit(request(PRODUCT, "A")),
+                ingestion.submit(request(PRODUCT, "B")),
+                ingestion.submit(request(PRODUCT, "C")));
+        CompletableFuture<Order> unknownProduct = ingestion.submit(request(MISSING_PRODUCT, "D"));
+
+        runWriter();
+        ingestion.shutdown();
+
+        for (CompletableFuture<Order> future : accepted) {
+            assertOrderStored(future.get(5, TimeUnit.SECONDS));
+        }
+        ExecutionException error = assertThrows(ExecutionException.class, () -> unknownProduct.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(DataNotFoundException.class, error.getCause());
+        DistributionSummary batchSizes = meterRegistry.get("orders.ingestion.batch.size").summary();
+        assertEquals(1, batchSizes.count());
+        assertEquals(4, batchSizes.max());
+        assertEquals(0, meterRegistry.get("orders.ingestion.fallbacks").counter().count());
+    }
+
+    @Test
+    void failedBatchFallsBackToOneOrderAtATime() throws Exception {
+        OrderIngestionService ingestion = ingestion(10);
+        CompletableFuture<Order> first = ingestion.submit(request(PRODUCT, "A"));
+        // fullname dài quá cột: INSERT của cả batch lỗi, không phải lỗi kiểm tra của riêng đơn này
+        CompletableFuture<Order> tooLong = ingestion.submit(request(PRODUCT, "x".repeat(101)));
+        CompletableFuture<Order> last = ingestion.submit(request(PRODUCT, "C"));
+
+        runWriter();
+        ingestion.shutdown();
+
+        assertOrderStored(first.get(5, TimeUnit.SECONDS));
+        assertOrderStored(last.get(5, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> tooLong.get(5, TimeUnit.SECONDS));
+        assertEquals(1, meterRegistry.get("orders.ingestion.fallbacks").counter().count());
+    }
+
+    @Test
+    void orderRefusedForStockHeldByABatchThatRollsBackIsRetried() throws Exception {
+        stockService.setStock(LAST_UNIT, 1);
+        OrderIngestionService ingestion = ingestion(10);
+        // Đơn đầu giữ đơn vị cuối cùng rồi làm cả batch lỗi; đơn sau bị từ chối vì hết hàng trong batch đó
+        CompletableFuture<Order> failing = ingestion.submit(request(LAST_UNIT, "x".repeat(101)));
+        CompletableFuture<Order> refusedInBatch = ingestion.submit(request(LAST_UNIT, "B"));
+
+        runWriter();
+        ingestion.shutdown();
+
+        assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+        Order retried = refusedInBatch.get(5, TimeUnit.SECONDS);
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM order_details WHERE order_id = ? AND product_id = ?",
+                Integer.class, retried.getId(), LAST_UNIT));
+        assertEquals(0L, stockService.getAvailable(LAST_UNIT));
+    }
+
+    @Test
+    void fullQueueRefusesInsteadOfBlocking() throws Exception {
+        OrderIngestionService ingestion = ingestion(1);
+        CompletableFuture<Order> queued = ingestion.submit(request(PRODUCT, "A"));
+
+        assertThrows(OrderQueueFullException.class, () -> ingestion.submit(request(PRODUCT, "B")));
+        assertEquals(1, meterRegistry.get("orders.ingestion.rejected").counter().count());
+
+        // Không có writer nào chạy: hết shutdown-timeout thì đơn còn trong hàng đợi bị báo lỗi
+        ingestion.shutdown();
+        ExecutionException error = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(OrderQueueFullException.class, error.getCause());
+    }
+
+    @Test
+    void shutdownWritesWhatIsAlreadyQueued() throws Exception {
+        OrderIngestionService ingestion = ingestion(10);
+        List<CompletableFuture<Order>> queued = List.of(
+                ingestion.submit(request(PRODUCT, "A")),
+                ingestion.submit(request(PRODUCT, "B")),
+                ingestion.submit(request(PRODUCT, "C")));
+
+        CompletableFuture<Void> stopped = CompletableFuture.runAsync(ingestion::shutdown);
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (Boolean.TRUE.equals(ReflectionTestUtils.getField(ingestion, "accepting"))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThrows(OrderQueueFullException.class, () -> ingestion.submit(request(PRODUCT, "D")));
+        // Writer bắt đầu sau khi đã ngừng nhận đơn vẫn phải ghi hết hàng đợi
+        runWriter();
+        stopped.get(5, TimeUnit.SECONDS);
+
+        for (CompletableFuture<Order> future : queued) {
+            assertOrderStored(future.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private OrderIngestionService ingestion(int queueCapacity) {
+        OrderIngestionService ingestion = new OrderIngestionService(orderService, userRepository, productRepository,
+                productSalesService, stockService, jdbcTemplate, transactionTemplate, meterRegistry, writers::add);
+        ReflectionTestUtils.setField(ingestion, "mode", "group-commit");
+        ReflectionTestUtils.setField(ingestion, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(ingestion, "writerThreads", 1);
+        ReflectionTestUtils.setField(ingestion, "maxBatchSize", 100);
+        ReflectionTestUtils.setField(ingestion, "shutdownTimeout", Duration.ofMillis(200));
+        ingestion.start();
+        return ingestion;
+    }
+
+    private void runWriter() {
+        assertEquals(1, writers.size());
+        Thread writer = new Thread(writers.get(0), "test-order-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void assertOrderStored(Order order) {
+        assertTrue(order.getId() != null && order.getId() > 0);
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM order_details WHERE order_id = ? AND product_id = ?",
+                Integer.class, order.getId(), PRODUCT));
+    }
+
+    private static OrderDTO request(long productId, String fullName) {
+        OrderDTO orderDTO = new OrderDTO();
+        orderDTO.setUserId(1L);
+        orderDTO.setFullName(fullName);
+        orderDTO.setPhoneNumber("0912345678");
+        orderDTO.setAddress("Hanoi");
+        orderDTO.setCartItems(List.of(new CartItemDTO(productId, 1)));
+        return orderDTO;
+    }
+}
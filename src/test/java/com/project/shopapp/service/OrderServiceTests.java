@@ -0,0 +1,102 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.dto.CartItemDTO;
+import com.project.shopapp.dto.OrderDTO;
+import com.project.shopapp.exception.DataNotFoundException;
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.model.Order;
+import com.project.shopapp.model.OrderDetail;
+import com.project.shopapp.model.OrderStatus;
+import com.project.shopapp.model.Product;
+import com.project.shopapp.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderServiceTests {
+    @Test
+    void mergesLinesOfTheSameProduct() throws InvalidParamException {
+        Map<Long, Integer> quantities = OrderService.mergeCartItems(List.of(
+                new CartItemDTO(1L, 2), new CartItemDTO(2L, 1), new CartItemDTO(1L, 3)));
+
+        assertEquals(Map.of(1L, 5, 2L, 1), quantities);
+    }
+
+    @Test
+    void rejectsQuantitiesThatWouldOverflow() {
+        // Hai dòng Integer.MAX_VALUE từng làm Math.addExact ném ArithmeticException (500)
+        assertThrows(InvalidParamException.class, () -> OrderService.mergeCartItems(List.of(
+                new CartItemDTO(1L, Integer.MAX_VALUE), new CartItemDTO(1L, Integer.MAX_VALUE))));
+        assertThrows(InvalidParamException.class, () -> OrderService.mergeCartItems(List.of(
+                new CartItemDTO(1L, OrderService.MAX_QUANTITY_PER_PRODUCT), new CartItemDTO(1L, 1))));
+    }
+
+    @Test
+    void prepareOrderCopiesClientFieldsAndSetsServerOwnedOnes() throws Exception {
+        User user = new User();
+        user.setId(1L);
+        Product phone = Product.builder().name("Phone").price(100f).build();
+        phone.setId(1L);
+        Product cable = Product.builder().name("Cable").price(2.5f).build();
+        cable.setId(2L);
+        OrderDTO orderDTO = OrderDTO.builder()
+                .userId(1L)
+                .fullName("Nguyen Van A")
+                .email("a@example.com")
+                .phoneNumber("0912345678")
+                .address("Hanoi")
+                .note("Call first")
+                .shippingMethod("express")
+                .shippingAddress("Hanoi")
+                .shippingDate(LocalDate.now().plusDays(1))
+                .paymentMethod("cod")
+                // Các trường do server quyết định, client gửi lên phải bị bỏ qua
+                .status(OrderStatus.DELIVERED)
+                .totalMoney(1f)
+                .build();
+
+        OrderService.PreparedOrder prepared = OrderService.prepareOrder(orderDTO, user,
+                Map.of(1L, 2, 2L, 4), Map.of(1L, phone, 2L, cable));
+
+        Order order = prepared.order();
+        assertSame(user, order.getUser());
+        assertEquals("Nguyen Van A", order.getFullName());
+        assertEquals("a@example.com", order.getEmail());
+        assertEquals("0912345678", order.getPhoneNumber());
+        assertEquals("Hanoi", order.getAddress());
+        assertEquals("Call first", order.getNote());
+        assertEquals("express", order.getShippingMethod());
+        assertEquals("Hanoi", order.getShippingAddress());
+        assertEquals(LocalDate.now().plusDays(1), order.getShippingDate());
+        assertEquals("cod", order.getPaymentMethod());
+        assertNull(order.getId());
+        assertEquals(OrderStatus.PENDING, order.getStatus());
+        assertTrue(order.getActive());
+        assertEquals(210f, order.getTotalMoney());
+        assertEquals(List.of(200f, 10f), prepared.orderDetails().stream()
+                .sorted((a, b) -> Long.compare(a.getProduct().getId(), b.getProduct().getId()))
+                .map(OrderDetail::getTotalMoney).toList());
+    }
+
+    @Test
+    void prepareOrderRejectsUnknownProductsAndPastShippingDates() {
+        Product phone = Product.builder().name("Phone").price(100f).build();
+        phone.setId(1L);
+        OrderDTO unknownProduct = OrderDTO.builder().phoneNumber("0912345678").build();
+        OrderDTO pastDate = OrderDTO.builder().phoneNumber("0912345678")
+                .shippingDate(LocalDate.now().minusDays(1)).build();
+
+        assertThrows(DataNotFoundException.class, () -> OrderService.prepareOrder(unknownProduct, new User(),
+                Map.of(2L, 1), Map.of(1L, phone)));
+        assertThrows(DataNotFoundException.class, () -> OrderService.prepareOrder(pastDate, new User(),
+                Map.of(1L, 1), Map.of(1L, phone)));
+    }
+}
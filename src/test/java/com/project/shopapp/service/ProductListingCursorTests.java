@@ -0,0 +1,132 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.component.ProductSearchIndex;
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.model.Product;
+import com.project.shopapp.repository.ProductFilter;
+import com.project.shopapp.repository.ProductRepository;
+import com.project.shopapp.response.ProductListResponse;
+import com.project.shopapp.response.ProductResponse;
+import com.project.shopapp.utils.PageCursor;
+import com.project.shopapp.utils.ProductSort;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:product-cursor;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "thumbnail-reconciler.enabled=false",
+        "related-products.enabled=false"
+})
+class ProductListingCursorTests {
+    // null: sản phẩm chưa có giá
+    private static final Float[] PRICES = {300f, 100f, null, 200f, null, 100f, null};
+
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Product> products = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        // Đợi lần rebuild lúc khởi động chạy xong, nếu không rebuild() bên dưới sẽ bị bỏ qua
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((!productSearchIndex.isReady() || productSearchIndex.isRebuilding())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        if (productRepository.count() == 0) {
+            for (int i = 0; i < PRICES.length; i++) {
+                productRepository.save(Product.builder()
+                        .name("Phone " + i)
+                        .price(PRICES[i])
+                        .build());
+            }
+            // Một số sản phẩm cũ không có created_at
+            jdbcTemplate.update("UPDATE products SET created_at = NULL WHERE name IN ('Phone 1', 'Phone 4')");
+        }
+        products.clear();
+        products.addAll(productRepository.findAll());
+        // Sản phẩm được lưu thẳng qua repository: rebuild để index thấy chúng
+        productSearchIndex.rebuild();
+    }
+
+    @Test
+    void priceCursorPagesThroughProductsWithoutPrice() throws InvalidParamException {
+        for (String keyword : List.of("", "phone")) {
+            assertEquals(expected(Comparator.comparing(Product::getPrice,
+                            Comparator.nullsFirst(Comparator.<Float>naturalOrder()))
+                            .thenComparing(Product::getId)),
+                    pageThrough(keyword, ProductSort.PRICE_ASC), "price_asc, keyword '" + keyword + "'");
+            assertEquals(expected(Comparator.comparing(Product::getPrice,
+                            Comparator.nullsLast(Comparator.<Float>reverseOrder()))
+                            .thenComparing(Product::getId, Comparator.reverseOrder())),
+                    pageThrough(keyword, ProductSort.PRICE_DESC), "price_desc, keyword '" + keyword + "'");
+        }
+    }
+
+    @Test
+    void newestCursorPagesThroughProductsWithoutCreationTime() throws InvalidParamException {
+        for (String keyword : List.of("", "phone")) {
+            assertEquals(expected(Comparator.comparing(Product::getCreatedAt,
+                            Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+                            .thenComparing(Product::getId, Comparator.reverseOrder())),
+                    pageThrough(keyword, ProductSort.NEWEST), "newest, keyword '" + keyword + "'");
+        }
+    }
+
+    @Test
+    void keywordWithPriceSortIsAnsweredFromTheIndex() {
+        ProductSearchIndex.SearchResult result = productSearchIndex.search(
+                ProductFilter.of("phone", 0L), ProductSort.PRICE_ASC, 0, 3, false);
+
+        assertEquals(PRICES.length, result.totalElements());
+        assertEquals(expected(Comparator.comparing(Product::getPrice,
+                        Comparator.nullsFirst(Comparator.<Float>naturalOrder()))
+                        .thenComparing(Product::getId)).subList(0, 3),
+                result.productIds());
+    }
+
+    private List<Long> expected(Comparator<Product> order) {
+        return products.stream().sorted(order).map(Product::getId).toList();
+    }
+
+    // Đi hết các trang 2 sản phẩm theo next_cursor
+    private List<Long> pageThrough(String keyword, ProductSort sort) throws InvalidParamException {
+        List<Long> ids = new ArrayList<>();
+        PageCursor cursor = null;
+        for (int page = 0; page <= PRICES.length; page++) {
+            ProductListResponse response = productService.getProductsAfter(
+                    ProductFilter.of(keyword, 0L), sort, cursor, 2, Set.of(), null);
+            response.getProducts().stream().map(ProductResponse::getId).forEach(ids::add);
+            if (response.getNextCursor() == null) {
+                return ids;
+            }
+            cursor = PageCursor.decode(response.getNextCursor());
+        }
+        return fail("Paging did not terminate for " + sort.getKey());
+    }
+}
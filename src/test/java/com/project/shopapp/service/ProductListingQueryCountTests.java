@@ -0,0 +1,121 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.component.ProductSearchIndex;
+import com.project.shopapp.exception.InvalidParamException;
+import com.project.shopapp.model.Category;
+import com.project.shopapp.model.Product;
+import com.project.shopapp.model.ProductImage;
+import com.project.shopapp.repository.CategoryRepository;
+import com.project.shopapp.repository.ProductFilter;
+import com.project.shopapp.repository.ProductImageRepository;
+import com.project.shopapp.repository.ProductRepository;
+import com.project.shopapp.response.ProductListResponse;
+import com.project.shopapp.utils.ProductSort;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:product-listing;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "thumbnail-reconciler.enabled=false"
+})
+class ProductListingQueryCountTests {
+    private static final int PRODUCT_COUNT = 30;
+
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ProductImageRepository productImageRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        // Đợi lần rebuild index lúc khởi động chạy xong để không lẫn câu SQL vào thống kê
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((!productSearchIndex.isReady() || productSearchIndex.isRebuilding())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        if (productRepository.count() == 0) {
+            Category category = categoryRepository.save(Category.builder().name("Phones").build());
+            for (int i = 1; i <= PRODUCT_COUNT; i++) {
+                Product product = productRepository.save(Product.builder()
+                        .name("Product " + i)
+                        .price(100f * i)
+                        .description("Description " + i)
+                        .category(category)
+                        .build());
+                for (int j = 1; j <= 2; j++) {
+                    productImageRepository.save(ProductImage.builder()
+                            .product(product)
+                            .imageUrl("image-" + i + "-" + j + ".jpg")
+                            .build());
+                }
+            }
+        }
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    void statementCountDoesNotGrowWithPageSize() throws InvalidParamException {
+        long smallPage = countStatements(5);
+        long largePage = countStatements(25);
+
+        assertEquals(smallPage, largePage);
+        // page + count + một câu IN cho ảnh
+        assertTrue(largePage <= 3, "Expected at most 3 statements but was " + largePage);
+    }
+
+    @Test
+    void descriptionAndImagesAreOmittedUnlessRequested() throws InvalidParamException {
+        ProductListResponse page = productService.getAllProducts(
+                ProductFilter.of("", 0L), ProductSort.ID, PageRequest.of(0, 5, Sort.by("id").ascending()), Set.of(), null);
+
+        assertEquals(5, page.getProducts().size());
+        page.getProducts().forEach(product -> {
+            assertNull(product.getDescription());
+            assertNull(product.getProductImages());
+        });
+    }
+
+    private long countStatements(int pageSize) throws InvalidParamException {
+        statistics.clear();
+        ProductListResponse page = productService.getAllProducts(
+                ProductFilter.of("", 0L), ProductSort.ID, PageRequest.of(0, pageSize, Sort.by("id").ascending()),
+                Set.of(ProductService.INCLUDE_DESCRIPTION, ProductService.INCLUDE_IMAGES), null);
+        long statements = statistics.getPrepareStatementCount();
+
+        assertEquals(pageSize, page.getProducts().size());
+        page.getProducts().forEach(product -> assertEquals(2, product.getProductImages().size()));
+        return statements;
+    }
+}
@@ -0,0 +1,103 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.dto.CartItemDTO;
+import com.project.shopapp.dto.OrderDTO;
+import com.project.shopapp.model.Order;
+import com.project.shopapp.model.OrderStatus;
+import com.project.shopapp.response.Bestseller;
+import com.project.shopapp.response.SalesReconcileReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shopapp-orders;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "thumbnail-reconciler.enabled=false",
+        "related-products.enabled=false",
+        "related-products.settle-delay=0s",
+        "bestsellers.reconcile-enabled=false",
+        "order-ingestion.mode=group-commit",
+        "stock.flush-interval-ms=3600000",
+        "logging.level.org.springframework.security=INFO"
+})
+class ProductSalesServiceTests {
+    private static final long PHONES = 20_001;
+    private static final long LAPTOPS = 20_002;
+    private static final long PHONE_A = 20_001;
+    private static final long PHONE_B = 20_002;
+    private static final long LAPTOP = 20_003;
+
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private ProductSalesService productSalesService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("MERGE INTO roles (id, name) KEY (id) VALUES (1, 'USER')");
+        jdbcTemplate.update("MERGE INTO users (id, phone_number, password, role_id, is_active) KEY (id) " +
+                "VALUES (1, '1', 'x', 1, TRUE)");
+        jdbcTemplate.update("MERGE INTO categories (id, name) KEY (id) VALUES (?, 'Phones')", PHONES);
+        jdbcTemplate.update("MERGE INTO categories (id, name) KEY (id) VALUES (?, 'Laptops')", LAPTOPS);
+        jdbcTemplate.update("MERGE INTO products (id, name, price, category_id) KEY (id) VALUES (?, 'Phone A', 100, ?)",
+                PHONE_A, PHONES);
+        jdbcTemplate.update("MERGE INTO products (id, name, price, category_id) KEY (id) VALUES (?, 'Phone B', 200, ?)",
+                PHONE_B, PHONES);
+        jdbcTemplate.update("MERGE INTO products (id, name, price, category_id) KEY (id) VALUES (?, 'Laptop', 900, ?)",
+                LAPTOP, LAPTOPS);
+    }
+
+    @Test
+    void ordersAndCancellationsKeepDailySalesInStepAndReconcileRepairsDrift() throws Exception {
+        placeOrder(new CartItemDTO(PHONE_A, 3), new CartItemDTO(PHONE_B, 1), new CartItemDTO(LAPTOP, 2));
+        Order bulk = placeOrder(new CartItemDTO(PHONE_B, 5));
+
+        assertEquals(3, sold(PHONE_A));
+        assertEquals(6, sold(PHONE_B));
+        assertEquals(List.of(new Bestseller(PHONE_B, 6), new Bestseller(PHONE_A, 3)),
+                productSalesService.getBestsellers(PHONES, 30, 10));
+
+        // Huỷ đơn trừ lại số lượng đã bán trong cùng transaction
+        orderService.updateOrderStatus(bulk.getId(), OrderStatus.CANCELLED);
+        assertEquals(1, sold(PHONE_B));
+
+        // Bảng tổng hợp bị lệch (ví dụ sửa tay) được đếm lại từ order_details
+        jdbcTemplate.update("UPDATE product_sales_daily SET quantity = 42 WHERE product_id = ?", PHONE_A);
+        SalesReconcileReport report = productSalesService.reconcile();
+
+        assertTrue(report.getDriftRows() >= 1, "Expected the edited row to be reported as drift");
+        assertEquals(3, sold(PHONE_A));
+        assertEquals(1, sold(PHONE_B));
+        assertEquals(2, sold(LAPTOP));
+    }
+
+    private Order placeOrder(CartItemDTO... cartItems) throws Exception {
+        OrderDTO orderDTO = new OrderDTO();
+        orderDTO.setUserId(1L);
+        orderDTO.setFullName("Sales Test");
+        orderDTO.setPhoneNumber("0912345678");
+        orderDTO.setAddress("Hanoi");
+        orderDTO.setCartItems(List.of(cartItems));
+        return orderService.createOrder(orderDTO);
+    }
+
+    private long sold(long productId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity), 0) FROM product_sales_daily WHERE product_id = ?", Long.class, productId);
+    }
+}
@@ -0,0 +1,104 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.component.RelatedProductIndex;
+import com.project.shopapp.model.Order;
+import com.project.shopapp.model.OrderStatus;
+import com.project.shopapp.model.User;
+import com.project.shopapp.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shopapp-orders;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "thumbnail-reconciler.enabled=false",
+        "related-products.enabled=false",
+        "related-products.settle-delay=0s",
+        "bestsellers.reconcile-enabled=false",
+        "order-ingestion.mode=group-commit",
+        "stock.flush-interval-ms=3600000",
+        "logging.level.org.springframework.security=INFO"
+})
+class RelatedProductServiceTests {
+    // Mỗi lớp test dùng một dải id sản phẩm riêng vì database được dùng chung
+    private static final long PHONE = 19_001;
+    private static final long CASE = 19_002;
+    private static final long CHARGER = 19_003;
+    private static final long CABLE = 19_004;
+    private static final long BULK = 19_100;
+
+    @Autowired
+    private RelatedProductService relatedProductService;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("MERGE INTO roles (id, name) KEY (id) VALUES (1, 'USER')");
+        jdbcTemplate.update("MERGE INTO users (id, phone_number, password, role_id, is_active) KEY (id) " +
+                "VALUES (1, '1', 'x', 1, TRUE)");
+        LongStream.concat(LongStream.of(PHONE, CASE, CHARGER, CABLE), LongStream.range(BULK, BULK + 21))
+                .forEach(id -> jdbcTemplate.update(
+                        "MERGE INTO products (id, name, price) KEY (id) VALUES (?, ?, 100)", id, "Product " + id));
+    }
+
+    @Test
+    void countsProductsBoughtTogetherOnce() {
+        placeOrder(OrderStatus.PENDING, PHONE, CASE, CHARGER);
+        placeOrder(OrderStatus.DELIVERED, PHONE, CASE);
+        // Đơn đã huỷ và đơn mua sỉ (quá 20 sản phẩm) không được tính
+        placeOrder(OrderStatus.CANCELLED, PHONE, CHARGER);
+        placeOrder(OrderStatus.PENDING, LongStream.concat(LongStream.of(CABLE), LongStream.range(BULK, BULK + 20))
+                .toArray());
+        relatedProductService.refresh();
+
+        assertEquals(List.of(new RelatedProductIndex.Related(CASE, 2), new RelatedProductIndex.Related(CHARGER, 1)),
+                relatedProductService.getRelatedProducts(PHONE, 10));
+        assertEquals(List.of(new RelatedProductIndex.Related(PHONE, 2), new RelatedProductIndex.Related(CHARGER, 1)),
+                relatedProductService.getRelatedProducts(CASE, 10));
+        assertTrue(relatedProductService.getRelatedProducts(CABLE, 10).isEmpty());
+
+        // Lần chạy sau chỉ đọc đơn mới sau checkpoint, không cộng lại đơn cũ
+        relatedProductService.refresh();
+        placeOrder(OrderStatus.PENDING, PHONE, CHARGER);
+        relatedProductService.refresh();
+
+        assertEquals(List.of(new RelatedProductIndex.Related(CASE, 2), new RelatedProductIndex.Related(CHARGER, 2)),
+                relatedProductService.getRelatedProducts(PHONE, 10));
+        assertEquals(List.of(new RelatedProductIndex.Related(CASE, 2)),
+                relatedProductService.getRelatedProducts(PHONE, 1));
+    }
+
+    private void placeOrder(String status, long... productIds) {
+        User user = new User();
+        user.setId(1L);
+        Order order = orderRepository.save(Order.builder()
+                .user(user)
+                .phoneNumber("1")
+                .orderDate(new Date(System.currentTimeMillis() - 60_000))
+                .status(status)
+                .active(true)
+                .build());
+        for (long productId : productIds) {
+            jdbcTemplate.update("INSERT INTO order_details (order_id, product_id, price, number_of_products, " +
+                    "total_money) VALUES (?, ?, 100, 1, 100)", order.getId(), productId);
+        }
+    }
+}
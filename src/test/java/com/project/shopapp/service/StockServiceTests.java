@@ -0,0 +1,206 @@
+package com.project.shopapp.service;
+
+import com.project.shopapp.component.StockLedger;
+import com.project.shopapp.exception.OutOfStockException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shopapp-orders;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "thumbnail-reconciler.enabled=false",
+        "related-products.enabled=false",
+        "related-products.settle-delay=0s",
+        "bestsellers.reconcile-enabled=false",
+        "order-ingestion.mode=group-commit",
+        "stock.flush-interval-ms=3600000",
+        "logging.level.org.springframework.security=INFO"
+})
+class StockServiceTests {
+    private static final long HOT = 26_001;
+    private static final long LIMITED = 26_002;
+    private static final long ROLLBACK = 26_003;
+    private static final long FLUSHED = 26_004;
+    private static final long RESTARTED = 26_005;
+
+    @Autowired
+    private StockService stockService;
+    @Autowired
+    private StockLedger stockLedger;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        for (long productId : new long[]{HOT, LIMITED, ROLLBACK, FLUSHED, RESTARTED}) {
+            jdbcTemplate.update("MERGE INTO products (id, name, price) KEY (id) VALUES (?, ?, 100)",
+                    productId, "Stock " + productId);
+        }
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        stockService.setStock(HOT, 100);
+        stockService.setStock(LIMITED, 50);
+        int threads = 32;
+        int attemptsPerThread = 10;
+        AtomicInteger reserved = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                boolean hotFirst = t % 2 == 0;
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < attemptsPerThread; i++) {
+                        // Hai thứ tự dòng khác nhau: giữ hàng không được deadlock hay giữ lại phần đã lấy
+                        Map<Long, Integer> cart = new LinkedHashMap<>();
+                        cart.put(hotFirst ? HOT : LIMITED, 1);
+                        cart.put(hotFirst ? LIMITED : HOT, 1);
+                        try {
+                            stockService.reserve(cart);
+                            reserved.incrementAndGet();
+                        } catch (OutOfStockException e) {
+                            // hết hàng là kết quả hợp lệ
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(50, reserved.get());
+        assertEquals(0L, stockService.getAvailable(LIMITED));
+        assertEquals(50L, stockService.getAvailable(HOT));
+    }
+
+    @Test
+    void rolledBackOrderGivesItsStockBack() throws Exception {
+        stockService.setStock(ROLLBACK, 5);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            reserve(ROLLBACK, 3);
+            assertEquals(2L, stockService.getAvailable(ROLLBACK));
+            status.setRollbackOnly();
+        });
+        assertEquals(5L, stockService.getAvailable(ROLLBACK));
+
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            reserve(ROLLBACK, 4);
+            throw new IllegalStateException("order insert failed");
+        }));
+        assertEquals(5L, stockService.getAvailable(ROLLBACK));
+
+        transactionTemplate.executeWithoutResult(status -> reserve(ROLLBACK, 3));
+        assertEquals(2L, stockService.getAvailable(ROLLBACK));
+        assertThrows(OutOfStockException.class, () -> stockService.reserve(Map.of(ROLLBACK, 3)));
+        // Chỉ đơn đã commit để lại dòng journal
+        assertEquals(-3, journal(ROLLBACK));
+    }
+
+    @Test
+    void restartRebuildsStockFromCommittedReservations() throws Exception {
+        stockService.setStock(RESTARTED, 10);
+        transactionTemplate.executeWithoutResult(status -> reserve(RESTARTED, 4));
+        transactionTemplate.executeWithoutResult(status -> stockService.release(Map.of(RESTARTED, 1)));
+        // Chưa flush: database vẫn ghi 10, phần giữ hàng chỉ nằm trong journal
+        assertEquals(10, persisted(RESTARTED));
+        assertEquals(-3, journal(RESTARTED));
+
+        // Process chết trước lần flush: ledger mất hết, khởi động lại phải tính từ quantity + journal
+        stockLedger.load(Map.of());
+        stockService.onApplicationReady();
+        assertEquals(7L, stockService.getAvailable(RESTARTED));
+
+        stockService.flush();
+        assertEquals(7, persisted(RESTARTED));
+        assertEquals(0, journal(RESTARTED));
+        stockLedger.load(Map.of());
+        stockService.onApplicationReady();
+        assertEquals(7L, stockService.getAvailable(RESTARTED));
+    }
+
+    @Test
+    void flushWritesEachChangeExactlyOnce() throws Exception {
+        stockService.setStock(FLUSHED, 10);
+        assertEquals(10, persisted(FLUSHED));
+
+        stockService.reserve(Map.of(FLUSHED, 3));
+        // Write-behind: database chỉ thay đổi khi flush
+        assertEquals(10, persisted(FLUSHED));
+        stockService.flush();
+        assertEquals(7, persisted(FLUSHED));
+        stockService.flush();
+        assertEquals(7, persisted(FLUSHED));
+
+        // Nhiều flush chạy cùng lúc vẫn chỉ ghi phần chênh lệch một lần
+        stockService.reserve(Map.of(FLUSHED, 2));
+        stockService.release(Map.of(FLUSHED, 1));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> flushes = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                flushes.add(executor.submit(stockService::flush));
+            }
+            for (Future<Integer> flush : flushes) {
+                flush.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(6, persisted(FLUSHED));
+        assertEquals(6L, stockService.getAvailable(FLUSHED));
+    }
+
+    private void reserve(long productId, int quantity) {
+        try {
+            stockService.reserve(Map.of(productId, quantity));
+        } catch (OutOfStockException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long journal(long productId) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(delta), 0) FROM stock_journal WHERE product_id = ?",
+                Long.class, productId);
+    }
+
+    private long persisted(long productId) {
+        Long quantity = jdbcTemplate.queryForObject("SELECT quantity FROM products WHERE id = ?", Long.class, productId);
+        assertTrue(quantity != null, "Product " + productId + " should track stock");
+        return quantity;
+    }
+}